@@ -0,0 +1,98 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+package fr.treeptik.cloudunit.dto;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Export of an application requested by a user, downloaded later with its id.
+ * Nothing is staged : the archive is produced while it is downloaded.
+ */
+public class ExportJob {
+
+    public enum Status {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    private final String id;
+
+    private final String applicationName;
+
+    private final String userLogin;
+
+    private final boolean parallelGzip;
+
+    private final Date creationDate = new Date();
+
+    private volatile Status status = Status.PENDING;
+
+    private volatile long bytesWritten;
+
+    public ExportJob(String id, String applicationName, String userLogin, boolean parallelGzip) {
+        this.id = id;
+        this.applicationName = applicationName;
+        this.userLogin = userLogin;
+        this.parallelGzip = parallelGzip;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getApplicationName() {
+        return applicationName;
+    }
+
+    @JsonIgnore
+    public String getUserLogin() {
+        return userLogin;
+    }
+
+    public boolean isParallelGzip() {
+        return parallelGzip;
+    }
+
+    public Date getCreationDate() {
+        return creationDate;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public void setBytesWritten(long bytesWritten) {
+        this.bytesWritten = bytesWritten;
+    }
+
+    /**
+     * @return the name of the archive sent to the client
+     */
+    @JsonIgnore
+    public String getFileName() {
+        return applicationName + ".tar.gz";
+    }
+
+}
@@ -0,0 +1,54 @@
+package fr.treeptik.cloudunit.dto;
+
+/**
+ * A compressed segment of a log file archived on the manager
+ */
+public class LogArchiveUnit {
+
+    private final String container;
+
+    private final String source;
+
+    private final long from;
+
+    private final long to;
+
+    private final long size;
+
+    public LogArchiveUnit(String container, String source, long from, long to, long size) {
+        this.container = container;
+        this.source = source;
+        this.from = from;
+        this.to = to;
+        this.size = size;
+    }
+
+    public String getContainer() {
+        return container;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return the end of the previous segment of the same file in milliseconds, 0 for the first one
+     */
+    public long getFrom() {
+        return from;
+    }
+
+    /**
+     * @return the last modification of the segment in milliseconds
+     */
+    public long getTo() {
+        return to;
+    }
+
+    /**
+     * @return the compressed size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+}
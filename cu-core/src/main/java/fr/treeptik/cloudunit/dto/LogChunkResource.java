@@ -0,0 +1,31 @@
+package fr.treeptik.cloudunit.dto;
+
+import java.util.List;
+
+/**
+ * Log lines read from a cursor, with the cursor to send back to get the next lines
+ */
+final public class LogChunkResource {
+
+    private final List<LogResource> logs;
+    private final String cursor;
+
+    public LogChunkResource(List<LogResource> logs, String cursor) {
+        if (logs == null) {
+            throw new IllegalArgumentException("Logs cannot be null");
+        }
+        this.logs = logs;
+        this.cursor = cursor;
+    }
+
+    public List<LogResource> getLogs() {
+        return logs;
+    }
+
+    /**
+     * @return null when the source cannot be read from a cursor
+     */
+    public String getCursor() {
+        return cursor;
+    }
+}
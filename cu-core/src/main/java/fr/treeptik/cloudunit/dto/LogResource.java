@@ -7,8 +7,20 @@ final public class LogResource {
 
     private final String source;
     private final String message;
+    private final String timestamp;
+    private final String level;
+    private final String logger;
 
     public LogResource(String source, String message) {
+        this(source, message, null, null, null);
+    }
+
+    /**
+     * @param timestamp the timestamp as written in the line, or null
+     * @param level     the normalized level (TRACE, DEBUG, INFO, WARN, ERROR), or null
+     * @param logger    the logger or category, or null
+     */
+    public LogResource(String source, String message, String timestamp, String level, String logger) {
         if (source == null) {
             throw new IllegalArgumentException("Source cannot be null");
         }
@@ -16,6 +28,9 @@ final public class LogResource {
             throw new IllegalArgumentException("Message cannot be null");
         }
         this.message = message;
+        this.timestamp = timestamp;
+        this.level = level;
+        this.logger = logger;
         if (source != null && source.contains("/")) {
             this.source = source.substring(source.lastIndexOf("/") + 1);
         } else {
@@ -31,6 +46,18 @@ final public class LogResource {
         return source;
     }
 
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public String getLevel() {
+        return level;
+    }
+
+    public String getLogger() {
+        return logger;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
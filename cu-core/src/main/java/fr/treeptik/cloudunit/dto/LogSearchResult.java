@@ -0,0 +1,47 @@
+package fr.treeptik.cloudunit.dto;
+
+/**
+ * A log line found in the log index of an application
+ */
+final public class LogSearchResult {
+
+    private final long timestamp;
+    private final String container;
+    private final String source;
+    private final String message;
+
+    public LogSearchResult(long timestamp, String container, String source, String message) {
+        if (container == null) {
+            throw new IllegalArgumentException("Container cannot be null");
+        }
+        if (source == null) {
+            throw new IllegalArgumentException("Source cannot be null");
+        }
+        if (message == null) {
+            throw new IllegalArgumentException("Message cannot be null");
+        }
+        this.timestamp = timestamp;
+        this.container = container;
+        this.source = source;
+        this.message = message;
+    }
+
+    /**
+     * @return the time the line was collected, in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getContainer() {
+        return container;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,58 @@
+package fr.treeptik.cloudunit.dto;
+
+/**
+ * Aggregations of a metric over a step of the history
+ */
+public class MetricPointResource {
+
+    private final long timestamp;
+
+    private final int count;
+
+    private final float min;
+
+    private final float max;
+
+    private final float avg;
+
+    private final float p95;
+
+    public MetricPointResource(long timestamp, int count, float min, float max, float avg, float p95) {
+        this.timestamp = timestamp;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.avg = avg;
+        this.p95 = p95;
+    }
+
+    /**
+     * @return the start of the step in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the number of samples aggregated
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    public float getAvg() {
+        return avg;
+    }
+
+    public float getP95() {
+        return p95;
+    }
+}
@@ -22,14 +22,38 @@ public class SourceUnit {
 
     private String name;
 
+    private Long size;
+
+    private Long lastModified;
+
     public SourceUnit(String name) {
         this.name = name;
     }
 
+    public SourceUnit(String name, Long size, Long lastModified) {
+        this.name = name;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
     public String getName() {
         return name;
     }
 
+    /**
+     * @return the size in bytes, null if unknown
+     */
+    public Long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the last modification time in milliseconds, null if unknown
+     */
+    public Long getLastModified() {
+        return lastModified;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
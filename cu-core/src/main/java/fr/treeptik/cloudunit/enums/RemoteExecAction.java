@@ -47,6 +47,26 @@ public enum RemoteExecAction {
                 .reduce(getCommand(), (a, kv) -> a.replaceAll(kv.getKey(), kv.getValue()), String::concat);
     }
 
+    /**
+     * Find the action a command was built from, by the part of its template before the parameters
+     *
+     * @return null if the command is not one of the actions
+     */
+    public static RemoteExecAction fromCommand(String command) {
+        if (command == null) {
+            return null;
+        }
+        for (RemoteExecAction action : values()) {
+            int parameters = action.command.indexOf(" CU_");
+            String prefix = parameters < 0 ? action.command : action.command.substring(0, parameters);
+            if (command.startsWith(prefix)
+                    && (command.length() == prefix.length() || command.charAt(prefix.length()) == ' ')) {
+                return action;
+            }
+        }
+        return null;
+    }
+
     public String[] getCommandBash() {
         String[] commandBash = new String[2];
         commandBash[0] = "bash";
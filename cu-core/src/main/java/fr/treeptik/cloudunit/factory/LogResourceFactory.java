@@ -1,31 +1,300 @@
 package fr.treeptik.cloudunit.factory;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import fr.treeptik.cloudunit.dto.LogResource;
 
 /**
  * Created by nicolas on 20/09/2016.
+ *
+ * Lines are parsed with index arithmetic on the output : the only copies are the line,
+ * its timestamp and its logger. The timestamp, level and logger are extracted for the
+ * Tomcat, JBoss/Wildfly and Spring Boot formats.
  */
 public class LogResourceFactory {
 
-    private static LogResource fromStdout(String line) {
-        LogResource logResource = new LogResource("stdout", line);
-        return logResource;
-    }
+    private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr", "May", "Jun",
+            "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+    // level as written, level as exposed
+    private static final String[][] LEVELS = {
+            { "INFO", "INFO" }, { "WARN", "WARN" }, { "ERROR", "ERROR" }, { "DEBUG", "DEBUG" },
+            { "TRACE", "TRACE" }, { "WARNING", "WARN" }, { "SEVERE", "ERROR" }, { "FATAL", "ERROR" },
+            { "CONFIG", "INFO" }, { "FINE", "DEBUG" }, { "FINER", "TRACE" }, { "FINEST", "TRACE" } };
 
     public static List<LogResource> fromOutput(String outputShell) {
-        if (outputShell == null) return new ArrayList<>();
-        if(outputShell.trim().length()<=3) return new ArrayList<>();
-        outputShell = outputShell.trim();
-        List<LogResource> logResources = Arrays.stream(outputShell.split("\\n"))
-                .map(LogResourceFactory::fromStdout)
-                .collect(Collectors.toList());
-        Collections.reverse(logResources);
+        return fromOutput(outputShell, "stdout");
+    }
+
+    /**
+     * Parse an output, the last line first. The lines of a stack trace get the level and
+     * the logger of the line starting the entry.
+     */
+    public static List<LogResource> fromOutput(String outputShell, String source) {
+        List<LogResource> logResources = new ArrayList<>();
+        if (outputShell == null || trimmedLength(outputShell) <= 3) {
+            return logResources;
+        }
+        Fields fields = new Fields();
+        // lines read before the start of their entry, the most recent first
+        List<String> entryLines = new ArrayList<>();
+        int end = outputShell.length();
+        while (end >= 0) {
+            int newline = end > 0 ? outputShell.lastIndexOf('\n', end - 1) : -1;
+            int start = newline + 1;
+            int lineEnd = end > start && outputShell.charAt(end - 1) == '\r' ? end - 1 : end;
+            end = newline;
+            if (isBlank(outputShell, start, lineEnd)) {
+                continue;
+            }
+            String line = outputShell.substring(start, lineEnd);
+            parse(line, fields);
+            if (fields.isEntryStart()) {
+                for (String entryLine : entryLines) {
+                    logResources.add(new LogResource(source, entryLine, null, fields.level, fields.logger));
+                }
+                entryLines.clear();
+                logResources.add(new LogResource(source, line, fields.timestamp, fields.level, fields.logger));
+            } else if (!entryLines.isEmpty() || isContinuation(line)) {
+                entryLines.add(line);
+            } else {
+                logResources.add(new LogResource(source, line));
+            }
+        }
+        for (String entryLine : entryLines) {
+            logResources.add(new LogResource(source, entryLine));
+        }
         return logResources;
     }
+
+    /**
+     * Parse a single line, as they come when following a log
+     */
+    public static LogResource fromLine(String source, String line) {
+        Fields fields = new Fields();
+        parse(line, fields);
+        return new LogResource(source, line, fields.timestamp, fields.level, fields.logger);
+    }
+
+    private static void parse(String line, Fields fields) {
+        fields.timestamp = null;
+        fields.level = null;
+        fields.logger = null;
+        int n = line.length();
+        if (n == 0 || Character.isWhitespace(line.charAt(0))) {
+            return;
+        }
+        int end = tokenEnd(line, 0);
+        // java.util.logging second line : "INFO: message"
+        if (line.charAt(end - 1) == ':') {
+            String level = level(line, 0, end - 1);
+            if (level != null) {
+                fields.level = level;
+                return;
+            }
+        }
+        int timestampEnd = -1;
+        boolean julHeader = false;
+        if (isIsoDate(line, 0, end) || isTomcatDate(line, 0, end)) {
+            // 2016-09-20 10:15:30.123 (Spring Boot, Wildfly) or 20-Sep-2016 10:15:30.123 (Tomcat)
+            int next = skipSpaces(line, end);
+            int nextEnd = tokenEnd(line, next);
+            timestampEnd = isTime(line, next, nextEnd) ? nextEnd : end;
+        } else if (isIsoDateTime(line, 0, end) || isTime(line, 0, end)) {
+            // 2016-09-20T10:15:30.123Z or 10:15:30,123 (Wildfly console)
+            timestampEnd = end;
+        } else if (isMonth(line, 0, end)) {
+            // Sep 20, 2016 10:15:30 AM org.apache.catalina.startup.Catalina start
+            timestampEnd = julTimestampEnd(line, end);
+            julHeader = true;
+        }
+        if (timestampEnd < 0) {
+            return;
+        }
+        fields.timestamp = line.substring(0, timestampEnd);
+        int start = skipSpaces(line, timestampEnd);
+        end = tokenEnd(line, start);
+        if (julHeader) {
+            if (end > start) {
+                fields.logger = line.substring(start, end);
+            }
+            return;
+        }
+        fields.level = level(line, start, end);
+        if (fields.level == null) {
+            return;
+        }
+        start = skipSpaces(line, end);
+        end = tokenEnd(line, start);
+        if (start >= n) {
+            return;
+        }
+        if (line.charAt(start) == '[') {
+            int close = line.indexOf(']', start);
+            if (close < 0) {
+                return;
+            }
+            int next = skipSpaces(line, close + 1);
+            if (next < n && line.charAt(next) == '(') {
+                // Wildfly : LEVEL [category] (thread) message
+                fields.logger = line.substring(start + 1, close);
+            } else {
+                // Tomcat : LEVEL [thread] logger.method message
+                fields.logger = token(line, next);
+            }
+        } else if (isDigits(line, start, end)) {
+            // Spring Boot : LEVEL pid --- [thread] logger : message
+            int close = line.indexOf(']', end);
+            if (close >= 0) {
+                fields.logger = token(line, skipSpaces(line, close + 1));
+            }
+        }
+    }
+
+    private static int julTimestampEnd(String line, int monthEnd) {
+        int start = skipSpaces(line, monthEnd);
+        int end = tokenEnd(line, start);
+        if (end == start || line.charAt(end - 1) != ',') {
+            return -1;
+        }
+        start = skipSpaces(line, end);
+        end = tokenEnd(line, start);
+        if (end - start != 4 || !isDigits(line, start, end)) {
+            return -1;
+        }
+        start = skipSpaces(line, end);
+        end = tokenEnd(line, start);
+        if (!isTime(line, start, end)) {
+            return -1;
+        }
+        int next = skipSpaces(line, end);
+        int nextEnd = tokenEnd(line, next);
+        if (nextEnd - next == 2 && (line.startsWith("AM", next) || line.startsWith("PM", next))) {
+            return nextEnd;
+        }
+        return end;
+    }
+
+    private static boolean isContinuation(String line) {
+        return Character.isWhitespace(line.charAt(0)) || line.startsWith("Caused by:")
+                || line.startsWith("Suppressed:");
+    }
+
+    private static String level(String line, int start, int end) {
+        for (String[] level : LEVELS) {
+            if (level[0].length() == end - start && line.startsWith(level[0], start)) {
+                return level[1];
+            }
+        }
+        return null;
+    }
+
+    private static String token(String line, int start) {
+        int end = tokenEnd(line, start);
+        return end > start ? line.substring(start, end) : null;
+    }
+
+    private static int skipSpaces(String line, int index) {
+        while (index < line.length() && line.charAt(index) == ' ') {
+            index++;
+        }
+        return index;
+    }
+
+    private static int tokenEnd(String line, int index) {
+        while (index < line.length() && !Character.isWhitespace(line.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isDigits(String line, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (!Character.isDigit(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 2016-09-20
+    private static boolean isIsoDate(String line, int start, int end) {
+        return end - start == 10 && isDigits(line, start, start + 4) && line.charAt(start + 4) == '-'
+                && isDigits(line, start + 5, start + 7) && line.charAt(start + 7) == '-'
+                && isDigits(line, start + 8, start + 10);
+    }
+
+    // 2016-09-20T10:15:30.123Z
+    private static boolean isIsoDateTime(String line, int start, int end) {
+        return end - start >= 19 && isIsoDate(line, start, start + 10) && line.charAt(start + 10) == 'T'
+                && isTime(line, start + 11, end);
+    }
+
+    // 20-Sep-2016
+    private static boolean isTomcatDate(String line, int start, int end) {
+        return end - start == 11 && isDigits(line, start, start + 2) && line.charAt(start + 2) == '-'
+                && isMonth(line, start + 3, start + 6) && line.charAt(start + 6) == '-'
+                && isDigits(line, start + 7, start + 11);
+    }
+
+    // 10:15:30 followed by anything
+    private static boolean isTime(String line, int start, int end) {
+        return end - start >= 8 && isDigits(line, start, start + 2) && line.charAt(start + 2) == ':'
+                && isDigits(line, start + 3, start + 5) && line.charAt(start + 5) == ':'
+                && isDigits(line, start + 6, start + 8);
+    }
+
+    private static boolean isMonth(String line, int start, int end) {
+        if (end - start != 3) {
+            return false;
+        }
+        for (String month : MONTHS) {
+            if (line.startsWith(month, start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isBlank(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // same as text.trim().length(), without the copy
+    private static int trimmedLength(String text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end - start;
+    }
+
+    /**
+     * Fields of the line being parsed, reused from one line to the next
+     */
+    private static class Fields {
+
+        private String timestamp;
+
+        private String level;
+
+        private String logger;
+
+        private boolean isEntryStart() {
+            return timestamp != null || level != null;
+        }
+    }
 }
@@ -78,6 +78,11 @@ public class Application implements Serializable {
 
 	private String deploymentStatus;
 
+	/**
+	 * Modules started before the server and stopped after it, the platform default when null
+	 */
+	private Boolean orderedLifecycle;
+
 	public String getLocation(){
 		String domain = NamingUtils.getCloudUnitDomain(System.getenv("CU_DOMAIN"));
         return NamingUtils.getContainerName(name, null, user.getLogin()) + domain;
@@ -293,6 +298,14 @@ public class Application implements Serializable {
 		this.deploymentStatus = deploymentStatus;
 	}
 
+	public Boolean getOrderedLifecycle() {
+		return orderedLifecycle;
+	}
+
+	public void setOrderedLifecycle(Boolean orderedLifecycle) {
+		this.orderedLifecycle = orderedLifecycle;
+	}
+
 	public Set<PortToOpen> getPortsToOpen() {
 
 		if (portsToOpen == null) {
@@ -21,4 +21,17 @@ public class RemoteExecActionTest {
         Assert.assertTrue(resultat.contains("johndoe") && resultat.contains("abc2015"));
     }
 
-}
\ No newline at end of file
+    @org.junit.Test
+    public void fromCommand() throws Exception {
+        Map<String, String> kv = new HashMap<>();
+        kv.put("CU_FILE", "/tmp/script.sh");
+        Assert.assertEquals(RemoteExecAction.RUN_SCRIPT,
+                RemoteExecAction.fromCommand(RemoteExecAction.RUN_SCRIPT.getCommand(kv)));
+        Assert.assertEquals(RemoteExecAction.CHANGE_CU_RIGHTS,
+                RemoteExecAction.fromCommand(RemoteExecAction.CHANGE_CU_RIGHTS.getCommand()));
+        Assert.assertEquals(RemoteExecAction.CHMOD_PLUSX, RemoteExecAction.fromCommand("chmod +x /tmp/*"));
+        Assert.assertNull(RemoteExecAction.fromCommand("/opt/cloudunit/scripts/deploy.shx"));
+        Assert.assertNull(RemoteExecAction.fromCommand("ls -l"));
+    }
+
+}
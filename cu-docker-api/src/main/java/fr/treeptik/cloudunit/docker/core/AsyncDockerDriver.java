@@ -0,0 +1,51 @@
+package fr.treeptik.cloudunit.docker.core;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+
+import fr.treeptik.cloudunit.docker.model.DockerContainer;
+import fr.treeptik.cloudunit.docker.model.Image;
+import fr.treeptik.cloudunit.docker.model.Network;
+import fr.treeptik.cloudunit.docker.model.Volume;
+import fr.treeptik.cloudunit.dto.DockerResponse;
+
+/**
+ * Asynchronous counterpart of {@link DockerDriver}.
+ * Each call returns at once, the future completes with the response of the daemon
+ * or exceptionally with a {@link fr.treeptik.cloudunit.exception.FatalDockerJSONException}.
+ * The requests themselves may still block a thread of the implementation.
+ */
+public interface AsyncDockerDriver extends Closeable {
+
+	CompletableFuture<DockerResponse> find(DockerContainer container);
+
+	CompletableFuture<DockerResponse> findAll();
+
+	CompletableFuture<DockerResponse> create(DockerContainer container);
+
+	CompletableFuture<DockerResponse> start(DockerContainer container);
+
+	CompletableFuture<DockerResponse> stop(DockerContainer container);
+
+	CompletableFuture<DockerResponse> kill(DockerContainer container);
+
+	CompletableFuture<DockerResponse> remove(DockerContainer container);
+
+	CompletableFuture<DockerResponse> findAnImage(Image image);
+
+	CompletableFuture<DockerResponse> pull(String tag, String repository);
+
+	CompletableFuture<DockerResponse> createVolume(Volume volume);
+
+	CompletableFuture<DockerResponse> findVolume(Volume volume);
+
+	CompletableFuture<DockerResponse> removeVolume(Volume volume);
+
+	CompletableFuture<DockerResponse> createNetwork(Network network);
+
+	CompletableFuture<DockerResponse> findNetwork(Network network);
+
+	CompletableFuture<DockerResponse> connectToNetwork(Network network, String containerId);
+
+	CompletableFuture<DockerResponse> removeNetwork(Network network);
+}
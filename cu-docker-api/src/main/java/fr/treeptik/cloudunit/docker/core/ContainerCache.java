@@ -0,0 +1,182 @@
+package fr.treeptik.cloudunit.docker.core;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.treeptik.cloudunit.docker.model.DockerContainer;
+import fr.treeptik.cloudunit.docker.model.DockerEvent;
+
+/**
+ * In-memory cache of inspected containers, reachable by name or by id.
+ * The raw inspection is kept, so that each caller reads its own copy of the container.
+ *
+ * Entries never expire : they are evicted by the Docker events changing the container.
+ * The exec events, sent each time a command is run in a container, do not evict it.
+ * The cache only serves entries while the events stream is connected, since an event
+ * missed during a disconnection could leave a stale entry behind.
+ */
+public class ContainerCache implements DockerEventListener {
+
+    private Logger logger = LoggerFactory.getLogger(ContainerCache.class);
+
+    /**
+     * Actions of the container events which change its inspection
+     */
+    private static final Set<String> CONTAINER_ACTIONS = new HashSet<>(Arrays.asList("create", "start", "restart",
+            "stop", "kill", "die", "oom", "pause", "unpause", "destroy", "rename", "update", "health_status"));
+
+    /**
+     * Actions of the network events which change the inspection of the container connected
+     */
+    private static final Set<String> NETWORK_ACTIONS = new HashSet<>(Arrays.asList("connect", "disconnect"));
+
+    private final ConcurrentMap<String, Entry> byName = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Entry> byId = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on each eviction so that an inspect started before an event
+     * does not store its now outdated result.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile boolean enabled;
+
+    /**
+     * @param nameOrId
+     * @return the cached inspection of the container, as sent by the daemon, or null
+     */
+    public String get(String nameOrId) {
+        if (!enabled || nameOrId == null) {
+            return null;
+        }
+        Entry entry = byName.get(normalize(nameOrId));
+        if (entry == null) {
+            entry = byId.get(nameOrId);
+        }
+        return entry == null ? null : entry.inspection;
+    }
+
+    /**
+     * @return the value to give back to {@link #put(DockerContainer, String, long)} once the container is inspected
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Store the inspection of the container unless an eviction happened since the given generation
+     */
+    public void put(DockerContainer container, String inspection, long expectedGeneration) {
+        if (!enabled || container == null || container.getId() == null || container.getName() == null) {
+            return;
+        }
+        synchronized (this) {
+            if (generation.get() != expectedGeneration) {
+                return;
+            }
+            Entry entry = new Entry(normalize(container.getName()), container.getId(), inspection);
+            byName.put(entry.name, entry);
+            byId.put(entry.id, entry);
+        }
+    }
+
+    public synchronized void evict(String nameOrId) {
+        if (nameOrId == null) {
+            return;
+        }
+        generation.incrementAndGet();
+        Entry entry = byName.remove(normalize(nameOrId));
+        if (entry == null) {
+            entry = byId.remove(nameOrId);
+        }
+        if (entry != null) {
+            byName.remove(entry.name);
+            byId.remove(entry.id);
+        }
+    }
+
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        byName.clear();
+        byId.clear();
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onEvent(DockerEvent event) {
+        String action = event.getEffectiveAction();
+        if (action == null) {
+            return;
+        }
+        // as "health_status: healthy"
+        int colon = action.indexOf(':');
+        if (colon >= 0) {
+            action = action.substring(0, colon);
+        }
+        if ("network".equals(event.getType())) {
+            if (NETWORK_ACTIONS.contains(action)) {
+                evict(event.getAttribute("container"));
+            }
+            return;
+        }
+        if (event.getType() != null && !"container".equals(event.getType())) {
+            return;
+        }
+        if (CONTAINER_ACTIONS.contains(action)) {
+            evict(event.getContainerId());
+            evict(event.getContainerName());
+            if ("rename".equals(action)) {
+                evict(event.getAttribute("oldName"));
+            }
+        }
+    }
+
+    @Override
+    public void onConnected() {
+        clear();
+        enabled = true;
+        logger.info("Container cache enabled");
+    }
+
+    @Override
+    public void onDisconnected() {
+        enabled = false;
+        clear();
+        logger.warn("Container cache disabled until the events stream is back");
+    }
+
+    private static String normalize(String name) {
+        return name.startsWith("/") ? name.substring(1) : name;
+    }
+
+    private static class Entry {
+
+        private final String name;
+
+        private final String id;
+
+        private final String inspection;
+
+        private Entry(String name, String id, String inspection) {
+            this.name = name;
+            this.id = id;
+            this.inspection = inspection;
+        }
+    }
+
+}
@@ -1,22 +1,33 @@
 package fr.treeptik.cloudunit.docker.core;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import fr.treeptik.cloudunit.docker.model.Network;
 import fr.treeptik.cloudunit.exception.ServiceException;
+import org.apache.http.pool.PoolStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import fr.treeptik.cloudunit.docker.model.ContainerSummary;
 import fr.treeptik.cloudunit.docker.model.DockerContainer;
+import fr.treeptik.cloudunit.docker.model.DockerEvent;
 import fr.treeptik.cloudunit.docker.model.Image;
 import fr.treeptik.cloudunit.docker.model.Volume;
 import fr.treeptik.cloudunit.dto.DockerResponse;
+import fr.treeptik.cloudunit.dto.DockerStreamResponse;
+import fr.treeptik.cloudunit.dto.DockerStreamWriter;
 import fr.treeptik.cloudunit.exception.DockerJSONException;
 import fr.treeptik.cloudunit.exception.ErrorDockerJSONException;
 import fr.treeptik.cloudunit.exception.FatalDockerJSONException;
@@ -28,8 +39,16 @@ public class DockerCloudUnitClient {
 
     private Logger logger = LoggerFactory.getLogger(DockerCloudUnitClient.class);
 
+    private static final int DEFAULT_ASYNC_THREADS = 10;
+
+    private static final int DEFAULT_ASYNC_QUEUE = 100;
+
     private DockerDriver driver;
 
+    private AsyncDockerDriver asyncDriver;
+
+    private ContainerCache containerCache;
+
     private String defaultHost;
 
     private ObjectMapper objectMapper = new ObjectMapper();
@@ -41,15 +60,7 @@ public class DockerCloudUnitClient {
      * @throws DockerJSONException
      */
     public DockerContainer findContainer(DockerContainer container, String host) throws DockerJSONException {
-        logger.info("The client attempts to find a container...");
-        try {
-            DockerResponse dockerResponse = driver.find(container);
-            handleDockerAPIError(dockerResponse);
-            container = objectMapper.readValue(dockerResponse.getBody(), DockerContainer.class);
-        } catch (FatalDockerJSONException | IOException e) {
-            throw new DockerJSONException(e.getMessage(), e);
-        }
-        return container;
+        return findContainer(container);
     }
 
     /**
@@ -58,14 +69,29 @@ public class DockerCloudUnitClient {
      * @throws DockerJSONException
      */
     public DockerContainer findContainer(DockerContainer container) throws DockerJSONException {
+        String cached = containerCache != null ? containerCache.get(container.getName()) : null;
+        if (cached != null) {
+            try {
+                // a copy of its own for each caller
+                return objectMapper.readValue(cached, DockerContainer.class);
+            } catch (IOException e) {
+                throw new DockerJSONException(e.getMessage(), e);
+            }
+        }
         logger.info("The client attempts to find a container...");
+        long generation = containerCache != null ? containerCache.getGeneration() : 0;
+        String inspection;
         try {
             DockerResponse dockerResponse = driver.find(container);
             handleDockerAPIError(dockerResponse);
-            container = objectMapper.readValue(dockerResponse.getBody(), DockerContainer.class);
+            inspection = dockerResponse.getBody();
+            container = objectMapper.readValue(inspection, DockerContainer.class);
         } catch (FatalDockerJSONException | IOException e) {
             throw new DockerJSONException(e.getMessage(), e);
         }
+        if (containerCache != null) {
+            containerCache.put(container, inspection, generation);
+        }
         return container;
     }
 
@@ -75,35 +101,67 @@ public class DockerCloudUnitClient {
      * @throws DockerJSONException
      */
     public List<DockerContainer> findAllContainers(String host) throws DockerJSONException {
+        return findAllContainers();
+    }
+
+    /**
+     * @return
+     * @throws DockerJSONException
+     */
+    public List<DockerContainer> findAllContainers() throws DockerJSONException {
         List<DockerContainer> containers = null;
         try {
             logger.info("The client attempts to list all containers...");
-            DockerResponse dockerResponse = driver.findAll();
+            DockerStreamResponse<List<DockerContainer>> dockerResponse = driver.findAll(content ->
+                    objectMapper.readValue(content, new TypeReference<List<DockerContainer>>() {
+                    }));
             handleDockerAPIError(dockerResponse);
-            containers = objectMapper.readValue(dockerResponse.getBody(), new TypeReference<List<DockerContainer>>() {
-            });
-        } catch (FatalDockerJSONException | IOException e) {
+            containers = dockerResponse.getResult();
+        } catch (FatalDockerJSONException e) {
             throw new DockerJSONException(e.getMessage(), e);
         }
         return containers;
     }
 
     /**
-     * @return
+     * Snapshot of the state of all the containers, running or not, in a single call.
+     *
+     * @param label only the containers having this label, or null for all of them
+     * @return the containers by name, without the leading slash
      * @throws DockerJSONException
      */
-    public List<DockerContainer> findAllContainers() throws DockerJSONException {
-        List<DockerContainer> containers = null;
+    public Map<String, ContainerSummary> findContainerSummaries(String label) throws DockerJSONException {
         try {
-            logger.info("The client attempts to list all containers...");
-            DockerResponse dockerResponse = driver.findAll();
+            logger.info("The client attempts to list the state of all containers...");
+            Map<String, ContainerSummary> summaries = new HashMap<>();
+            DockerStreamResponse<Integer> dockerResponse = driver.findAll(true, label,
+                    content -> readEach(content, ContainerSummary.class, c -> {
+                        if (c.getName() != null) {
+                            summaries.put(c.getName(), c);
+                        }
+                    }));
             handleDockerAPIError(dockerResponse);
-            containers = objectMapper.readValue(dockerResponse.getBody(), new TypeReference<List<DockerContainer>>() {
-            });
-        } catch (FatalDockerJSONException | IOException e) {
+            return summaries;
+        } catch (FatalDockerJSONException e) {
             throw new DockerJSONException(e.getMessage(), e);
         }
-        return containers;
+    }
+
+    /**
+     * Read a JSON array element by element. Only one element is kept in memory at a time.
+     */
+    private <T> int readEach(InputStream content, Class<T> type, Consumer<T> consumer) throws IOException {
+        int count = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("A JSON array is expected, found : " + parser.getCurrentToken());
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(objectMapper.readValue(parser, type));
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -114,6 +172,7 @@ public class DockerCloudUnitClient {
     public void createContainer(DockerContainer container, String host) throws DockerJSONException {
         try {
             logger.info("The client attempts to create a container...");
+            evict(container);
             DockerResponse dockerResponse = driver.create(container);
             handleDockerAPIError(dockerResponse);
         } catch (FatalDockerJSONException e) {
@@ -128,6 +187,7 @@ public class DockerCloudUnitClient {
     public void createContainer(DockerContainer container) throws DockerJSONException {
         try {
             logger.info("The client attempts to create a container...");
+            evict(container);
             DockerResponse dockerResponse = driver.create(container);
             handleDockerAPIError(dockerResponse);
         } catch (FatalDockerJSONException e) {
@@ -142,6 +202,7 @@ public class DockerCloudUnitClient {
     public void startContainer(DockerContainer container) throws DockerJSONException {
         try {
             logger.info("The client attempts to start a container...");
+            evict(container);
             DockerResponse dockerResponse = driver.start(container);
             handleDockerAPIError(dockerResponse);
         } catch (FatalDockerJSONException e) {
@@ -156,6 +217,7 @@ public class DockerCloudUnitClient {
     public void stopContainer(DockerContainer container) throws DockerJSONException {
         try {
             logger.info("The client attempts to stop a container...");
+            evict(container);
             DockerResponse dockerResponse = driver.stop(container);
             handleDockerAPIError(dockerResponse);
         } catch (FatalDockerJSONException e) {
@@ -172,6 +234,7 @@ public class DockerCloudUnitClient {
         DockerResponse dockerResponse = null;
         try {
             logger.info("The client attempts to kill a container...");
+            evict(container);
             dockerResponse = driver.kill(container);
             handleDockerAPIError(dockerResponse);
         } catch (FatalDockerJSONException e) {
@@ -189,6 +252,7 @@ public class DockerCloudUnitClient {
         DockerResponse dockerResponse = null;
         try {
             logger.info("The client attempts to remove a container...");
+            evict(container);
             dockerResponse = driver.remove(container);
             handleDockerAPIError(dockerResponse);
         } catch (FatalDockerJSONException e) {
@@ -314,6 +378,29 @@ public class DockerCloudUnitClient {
         return dockerResponse;
     }
 
+    /**
+     * Stream a tar archive into a directory of the container. The archive is produced
+     * by the writer while the request is sent, nothing is buffered.
+     *
+     * @param containerId
+     * @param path        directory of the container where the archive is extracted
+     * @param tarWriter
+     * @return
+     * @throws DockerJSONException
+     */
+    public DockerResponse putArchive(String containerId, String path, DockerStreamWriter tarWriter)
+            throws DockerJSONException {
+        DockerResponse dockerResponse = null;
+        try {
+            logger.info("The client attempts to put an archive into a container...");
+            dockerResponse = driver.putArchive(containerId, path, tarWriter);
+            handleDockerAPIError(dockerResponse);
+        } catch (FatalDockerJSONException e) {
+            throw new DockerJSONException(e.getMessage(), e);
+        }
+        return dockerResponse;
+    }
+
     public DockerResponse createNetwork(String name, String label) throws DockerJSONException {
         DockerResponse dockerResponse = null;
         try {
@@ -376,6 +463,98 @@ public class DockerCloudUnitClient {
         return dockerResponse;
     }
 
+    /**
+     * @param container
+     * @return the inspected container, without blocking the caller
+     */
+    public CompletableFuture<DockerContainer> findContainerAsync(DockerContainer container) {
+        logger.info("The client attempts to find a container asynchronously...");
+        return getAsyncDriver().find(container).thenApply(dockerResponse -> {
+            handleDockerAPIError(dockerResponse);
+            try {
+                return objectMapper.readValue(dockerResponse.getBody(), DockerContainer.class);
+            } catch (IOException e) {
+                throw new DockerJSONException(e.getMessage(), e);
+            }
+        });
+    }
+
+    public CompletableFuture<DockerResponse> startContainerAsync(DockerContainer container) {
+        logger.info("The client attempts to start a container asynchronously...");
+        evict(container);
+        return checked(getAsyncDriver().start(container));
+    }
+
+    public CompletableFuture<DockerResponse> stopContainerAsync(DockerContainer container) {
+        logger.info("The client attempts to stop a container asynchronously...");
+        evict(container);
+        return checked(getAsyncDriver().stop(container));
+    }
+
+    private void evict(DockerContainer container) {
+        if (containerCache != null) {
+            containerCache.evict(container.getName());
+        }
+    }
+
+    /**
+     * Fail the future with a DockerJSONException when the daemon answers with an error code
+     */
+    private CompletableFuture<DockerResponse> checked(CompletableFuture<DockerResponse> future) {
+        return future.thenApply(dockerResponse -> {
+            handleDockerAPIError(dockerResponse);
+            return dockerResponse;
+        });
+    }
+
+    /**
+     * Listen to the container events until the daemon closes the stream or the handler returns false.
+     * This call blocks the current thread.
+     *
+     * @param since timestamp in seconds of the first event to replay, null for the new events only
+     * @param handler
+     * @throws DockerJSONException
+     */
+    public void listenEvents(Long since, Predicate<DockerEvent> handler) throws DockerJSONException {
+        try {
+            logger.info("The client attempts to listen to the events...");
+            DockerResponse dockerResponse = driver.events(since, content -> {
+                try (JsonParser parser = objectMapper.getFactory().createParser(content)) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        if (!handler.test(objectMapper.readValue(parser, DockerEvent.class))) {
+                            break;
+                        }
+                    }
+                }
+                return null;
+            });
+            handleDockerAPIError(dockerResponse);
+        } catch (FatalDockerJSONException e) {
+            throw new DockerJSONException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return statistics of the connection pool used to reach the Docker daemon
+     */
+    public PoolStats getConnectionPoolStats() {
+        return driver.getPoolStats();
+    }
+
+    /**
+     * Release the connections kept alive by the driver
+     */
+    public void close() {
+        try {
+            if (asyncDriver != null) {
+                asyncDriver.close();
+            }
+            driver.close();
+        } catch (IOException e) {
+            logger.warn("Cannot close the docker driver", e);
+        }
+    }
+
     /**
      * @param dockerResponse
      * @throws DockerJSONException
@@ -449,4 +628,30 @@ public class DockerCloudUnitClient {
         this.driver = driver;
     }
 
+    /**
+     * @return the asynchronous driver, built on top of the synchronous one if none has been set
+     */
+    public synchronized AsyncDockerDriver getAsyncDriver() {
+        if (asyncDriver == null) {
+            asyncDriver = new SimpleAsyncDockerDriver(driver, DEFAULT_ASYNC_THREADS, DEFAULT_ASYNC_QUEUE);
+        }
+        return asyncDriver;
+    }
+
+    public synchronized void setAsyncDriver(AsyncDockerDriver asyncDriver) {
+        this.asyncDriver = asyncDriver;
+    }
+
+    public ContainerCache getContainerCache() {
+        return containerCache;
+    }
+
+    /**
+     * @param containerCache cache of the inspected containers, it must be registered
+     *                       on a {@link DockerEventsSubscriber} to be used
+     */
+    public void setContainerCache(ContainerCache containerCache) {
+        this.containerCache = containerCache;
+    }
+
 }
@@ -5,19 +5,34 @@ import fr.treeptik.cloudunit.docker.model.Image;
 import fr.treeptik.cloudunit.docker.model.Network;
 import fr.treeptik.cloudunit.docker.model.Volume;
 import fr.treeptik.cloudunit.dto.DockerResponse;
+import fr.treeptik.cloudunit.dto.DockerStreamHandler;
+import fr.treeptik.cloudunit.dto.DockerStreamResponse;
+import fr.treeptik.cloudunit.dto.DockerStreamWriter;
 import fr.treeptik.cloudunit.exception.FatalDockerJSONException;
 
+import org.apache.http.pool.PoolStats;
+
+import java.io.Closeable;
 import java.io.IOException;
 
 /**
  * Created by nicolas on 03/08/2016.
  */
-public interface DockerDriver {
+public interface DockerDriver extends Closeable {
 
 	DockerResponse find(DockerContainer container) throws FatalDockerJSONException;
 
 	DockerResponse findAll() throws FatalDockerJSONException;
 
+	<T> DockerStreamResponse<T> findAll(DockerStreamHandler<T> handler) throws FatalDockerJSONException;
+
+	/**
+	 * @param all    include the stopped containers
+	 * @param label  only the containers having this label, or null for all of them
+	 */
+	<T> DockerStreamResponse<T> findAll(boolean all, String label, DockerStreamHandler<T> handler)
+			throws FatalDockerJSONException;
+
 	DockerResponse create(DockerContainer container) throws FatalDockerJSONException;
 
 	DockerResponse start(DockerContainer container) throws FatalDockerJSONException;
@@ -48,7 +63,27 @@ public interface DockerDriver {
 
     DockerResponse listNetworks() throws FatalDockerJSONException;
 
+    <T> DockerStreamResponse<T> listNetworks(DockerStreamHandler<T> handler) throws FatalDockerJSONException;
+
     DockerResponse connectToNetwork(Network network, String containerId) throws FatalDockerJSONException;
 
     DockerResponse removeNetwork(Network network) throws FatalDockerJSONException;
+
+    /**
+     * Subscribe to the container events. The handler reads the stream until the daemon closes it.
+     *
+     * @param since timestamp in seconds of the first event to replay, null for the new events only
+     */
+    <T> DockerStreamResponse<T> events(Long since, DockerStreamHandler<T> handler) throws FatalDockerJSONException;
+
+    /**
+     * Statistics of the connection pool shared by all the calls of this driver
+     */
+    PoolStats getPoolStats();
+
+	/**
+	 * Extract a tar archive, written on the fly by the writer, into a directory of the container
+	 */
+	DockerResponse putArchive(String containerId, String path, DockerStreamWriter tarWriter) throws FatalDockerJSONException;
+
 }
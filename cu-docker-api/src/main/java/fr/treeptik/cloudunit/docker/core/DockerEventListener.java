@@ -0,0 +1,24 @@
+package fr.treeptik.cloudunit.docker.core;
+
+import fr.treeptik.cloudunit.docker.model.DockerEvent;
+
+/**
+ * Receives the container events read by a {@link DockerEventsSubscriber}.
+ */
+public interface DockerEventListener {
+
+    void onEvent(DockerEvent event);
+
+    /**
+     * Called before the events stream is opened. No event is missed from now on.
+     */
+    default void onConnected() {
+    }
+
+    /**
+     * Called when the events stream is lost. Events may be missed until the next {@link #onConnected()}.
+     */
+    default void onDisconnected() {
+    }
+
+}
@@ -0,0 +1,128 @@
+package fr.treeptik.cloudunit.docker.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.treeptik.cloudunit.docker.model.DockerEvent;
+
+/**
+ * Long-lived subscription to the Docker /events stream.
+ *
+ * A single thread reads the stream and dispatches every container event to the listeners.
+ * When the stream is lost, it reconnects and replays the events since the last one received.
+ */
+public class DockerEventsSubscriber implements Runnable {
+
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30000;
+
+    private Logger logger = LoggerFactory.getLogger(DockerEventsSubscriber.class);
+
+    private final DockerCloudUnitClient client;
+
+    private final List<DockerEventListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+
+    private volatile boolean connected;
+
+    private volatile Long lastEventTime;
+
+    private Thread thread;
+
+    public DockerEventsSubscriber(DockerCloudUnitClient client) {
+        this.client = client;
+    }
+
+    public void addListener(DockerEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DockerEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "docker-events");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * @return true while the events stream is open. When it is not, events may be missed
+     * and callers should fall back to inspecting the containers.
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void run() {
+        long delay = MIN_RECONNECT_DELAY_MILLIS;
+        while (running) {
+            if (lastEventTime == null) {
+                // replay from now on, so that nothing happening while the stream opens is missed
+                lastEventTime = System.currentTimeMillis() / 1000;
+            }
+            try {
+                connected = true;
+                listeners.forEach(DockerEventListener::onConnected);
+                client.listenEvents(lastEventTime, event -> {
+                    dispatch(event);
+                    return running;
+                });
+                delay = MIN_RECONNECT_DELAY_MILLIS;
+            } catch (Exception e) {
+                if (running) {
+                    logger.warn("Docker events stream lost, reconnecting in " + delay + "ms : " + e.getMessage());
+                }
+            } finally {
+                connected = false;
+                listeners.forEach(DockerEventListener::onDisconnected);
+            }
+            if (!running) {
+                break;
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MILLIS);
+        }
+        logger.info("Docker events subscriber stopped");
+    }
+
+    private void dispatch(DockerEvent event) {
+        if (event.getTime() != null) {
+            lastEventTime = event.getTime();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(event.toString());
+        }
+        for (DockerEventListener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (Exception e) {
+                logger.error("Error while dispatching " + event, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2015
+ *
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : CloudUnit is a registered trademark of Treeptik and cannot be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+package fr.treeptik.cloudunit.docker.core;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.treeptik.cloudunit.docker.model.DockerContainer;
+import fr.treeptik.cloudunit.docker.model.Image;
+import fr.treeptik.cloudunit.docker.model.Network;
+import fr.treeptik.cloudunit.docker.model.Volume;
+import fr.treeptik.cloudunit.dto.DockerResponse;
+import fr.treeptik.cloudunit.exception.FatalDockerJSONException;
+
+/**
+ * Runs the blocking calls of a {@link DockerDriver} on a bounded pool of I/O threads.
+ *
+ * The unix socket is not supported by the NIO HTTP clients available here, so the calls go through
+ * the pooled blocking client of the wrapped driver : each request in flight holds a thread of the pool.
+ * The caller thread is released at once, the number of in-flight Docker requests is capped by the size
+ * of the pool and the requests waiting for a thread by the size of the queue. A request beyond that
+ * fails at once.
+ */
+public class SimpleAsyncDockerDriver implements AsyncDockerDriver {
+
+    private static Logger logger = LoggerFactory.getLogger(SimpleAsyncDockerDriver.class);
+
+    private final DockerDriver driver;
+
+    private final ExecutorService executor;
+
+    public SimpleAsyncDockerDriver(DockerDriver driver, int threads, int queueCapacity) {
+        this.driver = driver;
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "docker-async-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+        ((ThreadPoolExecutor) this.executor).allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> find(DockerContainer container) {
+        return supply(() -> driver.find(container));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> findAll() {
+        return supply(driver::findAll);
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> create(DockerContainer container) {
+        return supply(() -> driver.create(container));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> start(DockerContainer container) {
+        return supply(() -> driver.start(container));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> stop(DockerContainer container) {
+        return supply(() -> driver.stop(container));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> kill(DockerContainer container) {
+        return supply(() -> driver.kill(container));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> remove(DockerContainer container) {
+        return supply(() -> driver.remove(container));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> findAnImage(Image image) {
+        return supply(() -> driver.findAnImage(image));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> pull(String tag, String repository) {
+        return supply(() -> driver.pull(tag, repository));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> createVolume(Volume volume) {
+        return supply(() -> driver.createVolume(volume));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> findVolume(Volume volume) {
+        return supply(() -> driver.findVolume(volume));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> removeVolume(Volume volume) {
+        return supply(() -> driver.removeVolume(volume));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> createNetwork(Network network) {
+        return supply(() -> {
+            try {
+                return driver.createNetwork(network);
+            } catch (IOException e) {
+                throw new FatalDockerJSONException(
+                        "An error has occurred for create network request due to " + e.getMessage(), e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> findNetwork(Network network) {
+        return supply(() -> driver.findNetwork(network));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> connectToNetwork(Network network, String containerId) {
+        return supply(() -> driver.connectToNetwork(network, containerId));
+    }
+
+    @Override
+    public CompletableFuture<DockerResponse> removeNetwork(Network network) {
+        return supply(() -> driver.removeNetwork(network));
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Some asynchronous docker requests are still running");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public DockerDriver getDriver() {
+        return driver;
+    }
+
+    private CompletableFuture<DockerResponse> supply(Supplier<DockerResponse> call) {
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<DockerResponse> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new FatalDockerJSONException("Too many asynchronous docker requests", e));
+            return rejected;
+        }
+    }
+}
@@ -28,6 +28,7 @@ import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import fr.treeptik.cloudunit.docker.model.Network;
 import fr.treeptik.cloudunit.utils.NamingUtils;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.pool.PoolStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +39,9 @@ import fr.treeptik.cloudunit.docker.model.DockerContainer;
 import fr.treeptik.cloudunit.docker.model.Image;
 import fr.treeptik.cloudunit.docker.model.Volume;
 import fr.treeptik.cloudunit.dto.DockerResponse;
+import fr.treeptik.cloudunit.dto.DockerStreamHandler;
+import fr.treeptik.cloudunit.dto.DockerStreamResponse;
+import fr.treeptik.cloudunit.dto.DockerStreamWriter;
 import fr.treeptik.cloudunit.exception.FatalDockerJSONException;
 import fr.treeptik.cloudunit.exception.JSONClientException;
 import fr.treeptik.cloudunit.utils.JSONClient;
@@ -53,13 +57,25 @@ public class SimpleDockerDriver implements DockerDriver {
     private String mode;
 
     public SimpleDockerDriver(Boolean isUnixSocket, String mode, String host, String certPathDirectory) {
+        this(isUnixSocket, mode, host, certPathDirectory,
+                new JSONClient(isUnixSocket, isUnixSocket ? "/var/run/docker.sock" : host,
+                        isUnixSocket ? null : certPathDirectory));
+    }
+
+    public SimpleDockerDriver(Boolean isUnixSocket, String mode, String host, String certPathDirectory,
+                              int maxTotalConnections, int maxConnectionsPerRoute,
+                              int idleTimeoutSeconds, int keepAliveSeconds) {
+        this(isUnixSocket, mode, host, certPathDirectory,
+                new JSONClient(isUnixSocket, isUnixSocket ? "/var/run/docker.sock" : host,
+                        isUnixSocket ? null : certPathDirectory,
+                        maxTotalConnections, maxConnectionsPerRoute, idleTimeoutSeconds, keepAliveSeconds));
+    }
+
+    private SimpleDockerDriver(Boolean isUnixSocket, String mode, String host, String certPathDirectory,
+                               JSONClient client) {
         this.isUnixSocket = isUnixSocket;
         this.mode = mode;
-        if (isUnixSocket) {
-            client = new JSONClient(isUnixSocket, "/var/run/docker.sock", null);
-        } else {
-            client = new JSONClient(isUnixSocket, host, certPathDirectory);
-        }
+        this.client = client;
         this.host = host;
         objectMapper = new ObjectMapper();
     }
@@ -107,6 +123,39 @@ public class SimpleDockerDriver implements DockerDriver {
         return dockerResponse;
     }
 
+    @Override
+    public <T> DockerStreamResponse<T> findAll(DockerStreamHandler<T> handler) throws FatalDockerJSONException {
+        return findAll(false, null, handler);
+    }
+
+    @Override
+    public <T> DockerStreamResponse<T> findAll(boolean all, String label, DockerStreamHandler<T> handler)
+            throws FatalDockerJSONException {
+        URI uri = null;
+        DockerStreamResponse<T> dockerResponse = null;
+        try {
+            URIBuilder builder = new URIBuilder().setScheme(NamingUtils.getProtocolSocket(isUnixSocket, mode)).setHost(host)
+                    .setPath("/containers/json");
+            if (all) {
+                builder.setParameter("all", "1");
+            }
+            if (label != null) {
+                builder.setParameter("filters", "{\"label\":[\"" + label + "\"]}");
+            }
+            uri = builder.build();
+            dockerResponse = client.sendGet(uri, handler);
+        } catch (URISyntaxException | JSONClientException e) {
+            StringBuilder contextError = new StringBuilder(256);
+            contextError.append("uri : " + uri + " - ");
+            contextError.append("server response : " + dockerResponse);
+            logger.error(contextError.toString());
+            throw new FatalDockerJSONException(
+                    "An error has occurred for find all containers request due to " + e.getMessage(), e);
+        }
+
+        return dockerResponse;
+    }
+
     @Override
     public DockerResponse create(DockerContainer container) throws FatalDockerJSONException {
         URI uri = null;
@@ -371,11 +420,11 @@ public class SimpleDockerDriver implements DockerDriver {
 		/*
         check network name
 		 */
-        DockerResponse response = listNetworks();
-
-        List<Network> networks = objectMapper.readValue(response.getBody(), new TypeReference<List<Network>>() {
-        });
-        if (networks.stream()
+        DockerStreamResponse<List<Network>> response = listNetworks(content ->
+                objectMapper.readValue(content, new TypeReference<List<Network>>() {
+                }));
+        List<Network> networks = response.getResult();
+        if (networks != null && networks.stream()
                 .filter(n -> n.getName().equalsIgnoreCase(network.getName()))
                 .findAny()
                 .isPresent()) {
@@ -434,6 +483,24 @@ public class SimpleDockerDriver implements DockerDriver {
         return dockerResponse;
     }
 
+    @Override
+    public <T> DockerStreamResponse<T> listNetworks(DockerStreamHandler<T> handler) throws FatalDockerJSONException {
+        URI uri = null;
+        DockerStreamResponse<T> dockerResponse = null;
+        try {
+            uri = new URIBuilder().setScheme(NamingUtils.getProtocolSocket(isUnixSocket, mode)).setHost(host).setPath("/networks").build();
+            dockerResponse = client.sendGet(uri, handler);
+        } catch (URISyntaxException | JSONClientException e) {
+            StringBuilder contextError = new StringBuilder(256);
+            contextError.append("uri : " + uri + " - ");
+            contextError.append("server response : " + dockerResponse);
+            logger.error(contextError.toString());
+            throw new FatalDockerJSONException(
+                    "An error has occurred for list networks request due to " + e.getMessage(), e);
+        }
+        return dockerResponse;
+    }
+
     @Override
     public DockerResponse connectToNetwork(Network network, String containerId) throws FatalDockerJSONException {
         URI uri = null;
@@ -474,6 +541,59 @@ public class SimpleDockerDriver implements DockerDriver {
         return dockerResponse;
     }
 
+    @Override
+    public <T> DockerStreamResponse<T> events(Long since, DockerStreamHandler<T> handler) throws FatalDockerJSONException {
+        URI uri = null;
+        DockerStreamResponse<T> dockerResponse = null;
+        try {
+            URIBuilder builder = new URIBuilder().setScheme(NamingUtils.getProtocolSocket(isUnixSocket, mode)).setHost(host)
+                    .setPath("/events").setParameter("filters", "{\"type\":[\"container\",\"network\"]}");
+            if (since != null) {
+                builder.setParameter("since", String.valueOf(since));
+            }
+            uri = builder.build();
+            dockerResponse = client.sendGet(uri, handler);
+        } catch (URISyntaxException | JSONClientException e) {
+            StringBuilder contextError = new StringBuilder(256);
+            contextError.append("uri : " + uri + " - ");
+            contextError.append("server response : " + dockerResponse);
+            logger.error(contextError.toString());
+            throw new FatalDockerJSONException(
+                    "An error has occurred for events request due to " + e.getMessage(), e);
+        }
+        return dockerResponse;
+    }
+
+    @Override
+    public DockerResponse putArchive(String containerId, String path, DockerStreamWriter tarWriter)
+            throws FatalDockerJSONException {
+        URI uri = null;
+        DockerResponse dockerResponse = null;
+        try {
+            uri = new URIBuilder().setScheme(NamingUtils.getProtocolSocket(isUnixSocket, mode)).setHost(host)
+                    .setPath("/containers/" + containerId + "/archive").setParameter("path", path).build();
+            dockerResponse = client.sendPut(uri, tarWriter, "application/x-tar");
+        } catch (URISyntaxException | JSONClientException e) {
+            StringBuilder contextError = new StringBuilder(256);
+            contextError.append("uri : " + uri + " - ");
+            contextError.append("server response : " + dockerResponse);
+            logger.error(contextError.toString());
+            throw new FatalDockerJSONException(
+                    "An error has occurred for put archive request due to " + e.getMessage(), e);
+        }
+        return dockerResponse;
+    }
+
+    @Override
+    public PoolStats getPoolStats() {
+        return client.getPoolStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+
     public JSONClient getClient() {
         return client;
     }
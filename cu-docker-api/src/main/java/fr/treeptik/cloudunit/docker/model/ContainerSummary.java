@@ -0,0 +1,108 @@
+package fr.treeptik.cloudunit.docker.model;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Container as returned by /containers/json, lighter than the inspect result.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ContainerSummary implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@JsonProperty("Id")
+	private String id;
+
+	@JsonProperty("Names")
+	private List<String> names;
+
+	@JsonProperty("Image")
+	private String image;
+
+	@JsonProperty("State")
+	private String state;
+
+	@JsonProperty("Status")
+	private String status;
+
+	@JsonProperty("Labels")
+	private Map<String, String> labels;
+
+	/**
+	 * @return the first name of the container without the leading slash
+	 */
+	@JsonIgnore
+	public String getName() {
+		if (names == null || names.isEmpty()) {
+			return null;
+		}
+		String name = names.get(0);
+		return name.startsWith("/") ? name.substring(1) : name;
+	}
+
+	/**
+	 * Old APIs do not send the state, the human readable status is used instead
+	 */
+	@JsonIgnore
+	public boolean isRunning() {
+		if (state != null) {
+			return "running".equalsIgnoreCase(state);
+		}
+		return status != null && status.startsWith("Up");
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public List<String> getNames() {
+		return names;
+	}
+
+	public void setNames(List<String> names) {
+		this.names = names;
+	}
+
+	public String getImage() {
+		return image;
+	}
+
+	public void setImage(String image) {
+		this.image = image;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public void setState(String state) {
+		this.state = state;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public Map<String, String> getLabels() {
+		return labels;
+	}
+
+	public void setLabels(Map<String, String> labels) {
+		this.labels = labels;
+	}
+
+}
@@ -0,0 +1,178 @@
+package fr.treeptik.cloudunit.docker.model;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Message sent by the Docker daemon on the /events stream.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DockerEvent implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@JsonProperty("Type")
+	private String type;
+
+	@JsonProperty("Action")
+	private String action;
+
+	@JsonProperty("status")
+	private String status;
+
+	@JsonProperty("id")
+	private String id;
+
+	@JsonProperty("from")
+	private String from;
+
+	@JsonProperty("Actor")
+	private Actor actor;
+
+	@JsonProperty("time")
+	private Long time;
+
+	@JsonProperty("timeNano")
+	private Long timeNano;
+
+	/**
+	 * @return the action (start, die, destroy...), whatever the version of the API
+	 */
+	@JsonIgnore
+	public String getEffectiveAction() {
+		return action != null ? action : status;
+	}
+
+	/**
+	 * @return the id of the container the event is about
+	 */
+	@JsonIgnore
+	public String getContainerId() {
+		if (actor != null && actor.getId() != null) {
+			return actor.getId();
+		}
+		return id;
+	}
+
+	/**
+	 * @return the name of the container without the leading slash, or null if the daemon does not send it
+	 */
+	@JsonIgnore
+	public String getContainerName() {
+		String name = getAttribute("name");
+		if (name != null && name.startsWith("/")) {
+			name = name.substring(1);
+		}
+		return name;
+	}
+
+	@JsonIgnore
+	public String getAttribute(String key) {
+		if (actor == null || actor.getAttributes() == null) {
+			return null;
+		}
+		return actor.getAttributes().get(key);
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public String getAction() {
+		return action;
+	}
+
+	public void setAction(String action) {
+		this.action = action;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getFrom() {
+		return from;
+	}
+
+	public void setFrom(String from) {
+		this.from = from;
+	}
+
+	public Actor getActor() {
+		return actor;
+	}
+
+	public void setActor(Actor actor) {
+		this.actor = actor;
+	}
+
+	public Long getTime() {
+		return time;
+	}
+
+	public void setTime(Long time) {
+		this.time = time;
+	}
+
+	public Long getTimeNano() {
+		return timeNano;
+	}
+
+	public void setTimeNano(Long timeNano) {
+		this.timeNano = timeNano;
+	}
+
+	@Override
+	public String toString() {
+		return "DockerEvent [type=" + type + ", action=" + getEffectiveAction() + ", id=" + getContainerId()
+				+ ", name=" + getContainerName() + ", time=" + time + "]";
+	}
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class Actor implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		@JsonProperty("ID")
+		private String id;
+
+		@JsonProperty("Attributes")
+		private Map<String, String> attributes;
+
+		public String getId() {
+			return id;
+		}
+
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		public Map<String, String> getAttributes() {
+			return attributes;
+		}
+
+		public void setAttributes(Map<String, String> attributes) {
+			this.attributes = attributes;
+		}
+	}
+}
@@ -125,4 +125,12 @@ public class State implements Serializable {
 	public void setDead(Boolean dead) {
 		this.dead = dead;
 	}
-}
\ No newline at end of file
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2015
+ *
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : CloudUnit is a registered trademark of Treeptik and cannot be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+package fr.treeptik.cloudunit.dto;
+
+/**
+ * Response of a streamed Docker API call.
+ *
+ * On success the body is empty and the result is the value returned by the {@link DockerStreamHandler}.
+ * On error the body holds the error message sent by the daemon and the result is null.
+ */
+public class DockerStreamResponse<T> extends DockerResponse {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient T result;
+
+	public DockerStreamResponse(int status, String body, T result) {
+		super(status, body);
+		this.result = result;
+	}
+
+	public T getResult() {
+		return result;
+	}
+
+	public void setResult(T result) {
+		this.result = result;
+	}
+
+}
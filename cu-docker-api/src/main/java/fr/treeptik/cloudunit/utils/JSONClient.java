@@ -19,44 +19,70 @@ package fr.treeptik.cloudunit.utils;
 
 import com.spotify.docker.client.ApacheUnixSocket;
 import fr.treeptik.cloudunit.dto.DockerResponse;
+import fr.treeptik.cloudunit.dto.DockerStreamHandler;
+import fr.treeptik.cloudunit.dto.DockerStreamResponse;
+import fr.treeptik.cloudunit.dto.DockerStreamWriter;
 import fr.treeptik.cloudunit.exception.JSONClientException;
 import jnr.unixsocket.UnixSocketAddress;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.ConnectTimeoutException;
-import org.apache.http.conn.HttpClientConnectionManager;
-import org.apache.http.conn.scheme.SchemeSocketFactory;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLContexts;
+import org.apache.http.entity.EntityTemplate;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLContext;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.net.*;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
 
-public class JSONClient  {
+/**
+ * HTTP client for the Docker remote API.
+ *
+ * A single pooled {@link CloseableHttpClient} is built once per instance and shared by every request,
+ * so sockets and TLS sessions are reused between calls instead of being opened for each of them.
+ */
+public class JSONClient implements Closeable {
+
+    public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 50;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    public static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 30;
+    public static final int DEFAULT_KEEP_ALIVE_SECONDS = 60;
+
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
 
     private Logger logger = LoggerFactory.getLogger(JSONClient.class);
 
@@ -64,9 +90,28 @@ public class JSONClient  {
     private String certPathDirectory;
     private File socketFile;
 
+    private int maxTotalConnections;
+    private int maxConnectionsPerRoute;
+    private int idleTimeoutSeconds;
+    private int keepAliveSeconds;
+
+    private volatile PoolingHttpClientConnectionManager connectionManager;
+    private volatile CloseableHttpClient httpClient;
+
     public JSONClient(Boolean isUnixSocket, String location, String certPathDirectory) {
+        this(isUnixSocket, location, certPathDirectory, DEFAULT_MAX_TOTAL_CONNECTIONS,
+                DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_IDLE_TIMEOUT_SECONDS, DEFAULT_KEEP_ALIVE_SECONDS);
+    }
+
+    public JSONClient(Boolean isUnixSocket, String location, String certPathDirectory,
+                      int maxTotalConnections, int maxConnectionsPerRoute,
+                      int idleTimeoutSeconds, int keepAliveSeconds) {
         this.certPathDirectory = certPathDirectory;
         this.isUnixSocket = isUnixSocket;
+        this.maxTotalConnections = maxTotalConnections;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+        this.keepAliveSeconds = keepAliveSeconds;
         if(isUnixSocket && location !=null) {
             try {
                 URI uri = new URI(location);
@@ -86,28 +131,65 @@ public class JSONClient  {
             logger.debug("Send a get request to : " + uri);
         }
         StringBuilder builder = new StringBuilder();
-
+        int statusCode;
 
         HttpGet httpGet = new HttpGet(uri);
-        HttpResponse response = null;
-        try {
-            CloseableHttpClient httpclient = buildSecureHttpClient();
-            response = httpclient.execute(httpGet);
-            LineIterator iterator = IOUtils.lineIterator(response.getEntity()
-                    .getContent(), "UTF-8");
-            while (iterator.hasNext()) {
-                builder.append(iterator.nextLine());
+        try (CloseableHttpResponse response = getHttpClient().execute(httpGet)) {
+            statusCode = response.getStatusLine().getStatusCode();
+            if (response.getEntity() != null) {
+                LineIterator iterator = IOUtils.lineIterator(response.getEntity()
+                        .getContent(), "UTF-8");
+                while (iterator.hasNext()) {
+                    builder.append(iterator.nextLine());
+                }
             }
         } catch (IOException e) {
             throw new JSONClientException("Error in sendGet method due to : " + e.getMessage(), e);
         }
         if (logger.isDebugEnabled()) {
-            logger.debug("Status code : " + response.getStatusLine().getStatusCode());
+            logger.debug("Status code : " + statusCode);
             logger.debug("Server response : " + builder.toString());
         }
 
-        return new DockerResponse(response.getStatusLine().getStatusCode(), builder.toString());
+        return new DockerResponse(statusCode, builder.toString());
+
+    }
+
+    /**
+     * Send a get request and hand the response body to the handler as it is read from the socket,
+     * without building it as a String first. The body of an error response is still read fully
+     * so that it can be reported.
+     */
+    public <T> DockerStreamResponse<T> sendGet(URI uri, DockerStreamHandler<T> handler) throws JSONClientException {
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Send a streamed get request to : " + uri);
+        }
+        int statusCode;
+        String body = "";
+        T result = null;
+
+        HttpGet httpGet = new HttpGet(uri);
+        try (CloseableHttpResponse response = getHttpClient().execute(httpGet)) {
+            statusCode = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                if (statusCode >= 200 && statusCode < 300) {
+                    try (InputStream content = entity.getContent()) {
+                        result = handler.handle(content);
+                    }
+                } else {
+                    body = EntityUtils.toString(entity, "UTF-8");
+                }
+            }
+        } catch (IOException e) {
+            throw new JSONClientException("Error in sendGet method due to : " + e.getMessage(), e);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Status code : " + statusCode);
+        }
 
+        return new DockerStreamResponse<>(statusCode, body, result);
     }
 
     public DockerResponse sendPost(URI uri, String body, String contentType) throws JSONClientException {
@@ -121,25 +203,60 @@ public class JSONClient  {
 
         HttpPost httpPost = new HttpPost(uri);
         httpPost.addHeader("content-type", contentType);
-        HttpResponse response = null;
+        int statusCode;
         StringWriter writer = new StringWriter();
         try {
-            CloseableHttpClient httpclient = buildSecureHttpClient();
             httpPost.setEntity(new StringEntity(body));
-            response = httpclient.execute(httpPost);
+            try (CloseableHttpResponse response = getHttpClient().execute(httpPost)) {
+                statusCode = response.getStatusLine().getStatusCode();
+                if (response.getEntity() != null) {
+                    IOUtils.copy(response.getEntity().getContent(), writer, "UTF-8");
+                }
+            }
+        } catch (IOException e) {
+            throw new JSONClientException("Error in sendPost method due to : " + e.getMessage(), e);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Status code : " + statusCode);
+            logger.debug("Server response : " + writer.toString());
+        }
+
+        return new DockerResponse(statusCode, writer.toString());
+    }
+
+    /**
+     * Send a chunked put request whose body is written by the writer while the request is sent
+     */
+    public DockerResponse sendPut(URI uri, DockerStreamWriter bodyWriter, String contentType) throws JSONClientException {
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Send a streamed put request to : " + uri);
+            logger.debug("Content type : " + contentType);
+        }
+
+        HttpPut httpPut = new HttpPut(uri);
+        EntityTemplate entity = new EntityTemplate(bodyWriter::write);
+        entity.setChunked(true);
+        entity.setContentType(contentType);
+        httpPut.setEntity(entity);
+        int statusCode;
+        StringWriter writer = new StringWriter();
+        try (CloseableHttpResponse response = getHttpClient().execute(httpPut)) {
+            statusCode = response.getStatusLine().getStatusCode();
             if (response.getEntity() != null) {
                 IOUtils.copy(response.getEntity().getContent(), writer, "UTF-8");
             }
         } catch (IOException e) {
-            throw new JSONClientException("Error in sendPost method due to : " + e.getMessage(), e);
+            throw new JSONClientException("Error in sendPut method due to : " + e.getMessage(), e);
         }
 
         if (logger.isDebugEnabled()) {
-            logger.debug("Status code : " + response.getStatusLine().getStatusCode());
+            logger.debug("Status code : " + statusCode);
             logger.debug("Server response : " + writer.toString());
         }
 
-        return new DockerResponse(response.getStatusLine().getStatusCode(), writer.toString());
+        return new DockerResponse(statusCode, writer.toString());
     }
 
     public DockerResponse sendPostToRegistryHost(URI uri, String body, String contentType) throws JSONClientException {
@@ -158,23 +275,26 @@ public class JSONClient  {
         httpPost.setConfig(config);
         httpPost.addHeader("content-type", contentType);
         httpPost.addHeader("X-Registry-Auth", "123");
-        HttpResponse response = null;
+        int statusCode;
         StringWriter writer = new StringWriter();
         try {
-            CloseableHttpClient httpclient = buildSecureHttpClient();
             httpPost.setEntity(new StringEntity(body));
-            response = httpclient.execute(httpPost);
-            IOUtils.copy(response.getEntity().getContent(), writer, "UTF-8");
+            try (CloseableHttpResponse response = getHttpClient().execute(httpPost)) {
+                statusCode = response.getStatusLine().getStatusCode();
+                if (response.getEntity() != null) {
+                    IOUtils.copy(response.getEntity().getContent(), writer, "UTF-8");
+                }
+            }
         } catch (IOException e) {
             throw new JSONClientException("Error in sendPostToRegistryHost method due to : " + e.getMessage(), e);
         }
 
         if (logger.isDebugEnabled()) {
-            logger.debug("Status code : " + response.getStatusLine().getStatusCode());
+            logger.debug("Status code : " + statusCode);
             logger.debug("Server response : " + writer.toString());
         }
 
-        return new DockerResponse(response.getStatusLine().getStatusCode(), writer.toString());
+        return new DockerResponse(statusCode, writer.toString());
     }
 
     public DockerResponse sendDelete(URI uri, Boolean httpRequired) throws JSONClientException {
@@ -182,42 +302,106 @@ public class JSONClient  {
         if (logger.isDebugEnabled()) {
             logger.debug("Send a delete request to : " + uri);
         }
-        CloseableHttpResponse response = null;
-        try {
-            CloseableHttpClient httpClient = buildSecureHttpClient();
-            HttpDelete httpDelete = new HttpDelete(uri);
-            response = httpClient.execute(httpDelete);
+        int statusCode;
+        HttpDelete httpDelete = new HttpDelete(uri);
+        try (CloseableHttpResponse response = getHttpClient().execute(httpDelete)) {
+            statusCode = response.getStatusLine().getStatusCode();
+            EntityUtils.consume(response.getEntity());
         } catch (IOException e) {
             throw new JSONClientException("Error in sendDelete method due to : " + e.getMessage(), e);
         }
 
         if (logger.isDebugEnabled()) {
-            logger.debug("Status code : " + response.getStatusLine().getStatusCode());
+            logger.debug("Status code : " + statusCode);
+        }
+
+        return new DockerResponse(statusCode, "");
+    }
+
+    /**
+     * Returns the shared client, building it and its connection pool on first use.
+     */
+    public CloseableHttpClient getHttpClient() throws IOException {
+        CloseableHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpClient;
+                if (client == null) {
+                    client = buildSecureHttpClient();
+                    httpClient = client;
+                }
+            }
         }
+        return client;
+    }
 
-        return new DockerResponse(response.getStatusLine().getStatusCode(), "");
+    /**
+     * Statistics of the shared connection pool : leased, pending (waiting for a connection),
+     * available and max connections. Pending requests mean the pool is saturated.
+     */
+    public PoolStats getPoolStats() {
+        PoolingHttpClientConnectionManager manager = connectionManager;
+        if (manager == null) {
+            return new PoolStats(0, 0, 0, maxTotalConnections);
+        }
+        return manager.getTotalStats();
     }
 
-    public CloseableHttpClient buildSecureHttpClient() throws IOException {
-        if(isUnixSocket){
-            HttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(getUnixSocketFactoryRegistry());
-            HttpClientBuilder builder = HttpClients.custom();
-            builder.setConnectionManager(manager);
-            return builder.build();
+    @Override
+    public synchronized void close() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+            httpClient = null;
+            connectionManager = null;
+        }
+    }
+
+    private CloseableHttpClient buildSecureHttpClient() throws IOException {
+        Registry<ConnectionSocketFactory> registry;
+        if (isUnixSocket) {
+            registry = getUnixSocketFactoryRegistry();
         } else if (certPathDirectory != null && !certPathDirectory.isEmpty()) {
-            org.apache.http.impl.client.HttpClientBuilder builder = HttpClients.custom();
-            HttpClientConnectionManager manager = getConnectionFactory(this.certPathDirectory, 10);
-            builder.setConnectionManager(manager);
-            return builder.build();
+            registry = getSslFactoryRegistry(certPathDirectory);
         } else {
-            return HttpClients.createDefault();
+            registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register("https", SSLConnectionSocketFactory.getSocketFactory()).build();
         }
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(registry);
+        manager.setMaxTotal(maxTotalConnections);
+        manager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        manager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+        connectionManager = manager;
+
+        logger.info("Docker connection pool created : maxTotal=" + maxTotalConnections
+                + ", maxPerRoute=" + maxConnectionsPerRoute);
+
+        return HttpClients.custom()
+                .setConnectionManager(manager)
+                .setKeepAliveStrategy(keepAliveStrategy())
+                .evictExpiredConnections()
+                .evictIdleConnections((long) idleTimeoutSeconds, TimeUnit.SECONDS)
+                .build();
     }
 
-    private static HttpClientConnectionManager getConnectionFactory(String certPath, int maxConnections) throws IOException {
-        PoolingHttpClientConnectionManager ret = new PoolingHttpClientConnectionManager(getSslFactoryRegistry(certPath));
-        ret.setDefaultMaxPerRoute(maxConnections);
-        return ret;
+    /**
+     * The Docker daemon does not send any Keep-Alive header, so connections are kept
+     * for {@code keepAliveSeconds} unless the server asks for a shorter timeout.
+     */
+    private ConnectionKeepAliveStrategy keepAliveStrategy() {
+        return (HttpResponse response, HttpContext context) -> {
+            HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+            while (it.hasNext()) {
+                HeaderElement element = it.nextElement();
+                if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                    try {
+                        return Long.parseLong(element.getValue()) * 1000;
+                    } catch (NumberFormatException ignore) {
+                    }
+                }
+            }
+            return keepAliveSeconds * 1000L;
+        };
     }
 
     private Registry<ConnectionSocketFactory> getUnixSocketFactoryRegistry() throws IOException {
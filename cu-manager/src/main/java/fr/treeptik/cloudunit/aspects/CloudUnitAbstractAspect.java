@@ -18,8 +18,7 @@ package fr.treeptik.cloudunit.aspects;
 import fr.treeptik.cloudunit.exception.ServiceException;
 import fr.treeptik.cloudunit.model.User;
 import fr.treeptik.cloudunit.service.UserService;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import fr.treeptik.cloudunit.utils.AuthentificationUtils;
 
 import javax.inject.Inject;
 import java.util.Locale;
@@ -34,11 +33,11 @@ public class CloudUnitAbstractAspect {
     @Inject
     protected UserService userService;
 
+    @Inject
+    protected AuthentificationUtils authentificationUtils;
+
     protected User getAuthentificatedUser()
         throws ServiceException {
-        UserDetails principal = (UserDetails) SecurityContextHolder
-            .getContext().getAuthentication().getPrincipal();
-        User user = userService.findByLogin(principal.getUsername());
-        return user;
+        return authentificationUtils.getAuthentificatedUser();
     }
 }
@@ -0,0 +1,106 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+
+package fr.treeptik.cloudunit.aspects;
+
+import javax.inject.Inject;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import fr.treeptik.cloudunit.enums.RemoteExecAction;
+import fr.treeptik.cloudunit.monitoring.Span;
+import fr.treeptik.cloudunit.monitoring.Tracer;
+
+/**
+ * Traces each controller call, with a span for each service method, DAO query and
+ * Docker call made while handling it. The traces are browsable from /admin/traces.
+ */
+@Component
+@Aspect
+public class TracingAspect {
+
+    @Inject
+    private Tracer tracer;
+
+    @Around("execution(public * fr.treeptik.cloudunit.controller.*.*(..))")
+    public Object traceController(ProceedingJoinPoint joinPoint) throws Throwable {
+        return trace(joinPoint, tracer.startTrace("controller", name(joinPoint)));
+    }
+
+    @Around("execution(* fr.treeptik.cloudunit.service.*Service+.*(..))")
+    public Object traceService(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!tracer.isTracing()) {
+            return joinPoint.proceed();
+        }
+        String name = name(joinPoint);
+        Object[] args = joinPoint.getArgs();
+        if (joinPoint.getSignature().getName().equals("execCommand") && args.length > 1 && args[1] instanceof String) {
+            RemoteExecAction action = RemoteExecAction.fromCommand((String) args[1]);
+            name += " " + (action == null ? "shell" : action.name());
+        }
+        return trace(joinPoint, tracer.startSpan("service", name));
+    }
+
+    @Around("execution(* fr.treeptik.cloudunit.dao.*+.*(..))")
+    public Object traceDao(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!tracer.isTracing()) {
+            return joinPoint.proceed();
+        }
+        String name = name(joinPoint);
+        // the methods inherited from the Spring Data interfaces are named after the DAO
+        for (Class<?> type : joinPoint.getThis().getClass().getInterfaces()) {
+            if (type.getName().startsWith("fr.treeptik.cloudunit.dao.")) {
+                name = type.getSimpleName() + "." + joinPoint.getSignature().getName();
+                break;
+            }
+        }
+        return trace(joinPoint, tracer.startSpan("dao", name));
+    }
+
+    @Around("(execution(public * fr.treeptik.cloudunit.docker.core.DockerCloudUnitClient.*(..))"
+            + " && !execution(* fr.treeptik.cloudunit.docker.core.DockerCloudUnitClient.get*(..))"
+            + " && !execution(* fr.treeptik.cloudunit.docker.core.DockerCloudUnitClient.set*(..)))"
+            + " || execution(* com.spotify.docker.client.DockerClient+.*(..))")
+    public Object traceDocker(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!tracer.isTracing()) {
+            return joinPoint.proceed();
+        }
+        return trace(joinPoint, tracer.startSpan("docker", name(joinPoint)));
+    }
+
+    private Object trace(ProceedingJoinPoint joinPoint, Span span) throws Throwable {
+        if (span == null) {
+            return joinPoint.proceed();
+        }
+        Throwable error = null;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            error = e;
+            throw e;
+        } finally {
+            tracer.end(span, error);
+        }
+    }
+
+    private static String name(JoinPoint joinPoint) {
+        return joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+    }
+}
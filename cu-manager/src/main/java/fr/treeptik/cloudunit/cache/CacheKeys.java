@@ -0,0 +1,59 @@
+package fr.treeptik.cloudunit.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Readable form of the cache keys, shared by the local caches, the Redis keys and the
+ * invalidation messages. The parts of a composite key, as {#containerName,#variable},
+ * are joined with ':' so that a key is the prefix of the keys it starts.
+ */
+public class CacheKeys implements RedisSerializer<Object> {
+
+    public static final char SEPARATOR = ':';
+
+    public static String toKey(Object key) {
+        if (key instanceof Collection) {
+            StringBuilder builder = new StringBuilder();
+            for (Object part : (Collection<?>) key) {
+                if (builder.length() > 0) {
+                    builder.append(SEPARATOR);
+                }
+                builder.append(toKey(part));
+            }
+            return builder.toString();
+        }
+        if (key instanceof Object[]) {
+            StringBuilder builder = new StringBuilder();
+            for (Object part : (Object[]) key) {
+                if (builder.length() > 0) {
+                    builder.append(SEPARATOR);
+                }
+                builder.append(toKey(part));
+            }
+            return builder.toString();
+        }
+        return String.valueOf(key);
+    }
+
+    /**
+     * @return true if the key is the parent key itself or one of the keys it starts
+     */
+    public static boolean isWithin(String key, String parent) {
+        return key.startsWith(parent)
+                && (key.length() == parent.length() || key.charAt(parent.length()) == SEPARATOR);
+    }
+
+    @Override
+    public byte[] serialize(Object key) throws SerializationException {
+        return key == null ? null : toKey(key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package fr.treeptik.cloudunit.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Formats of the values of a Redis cache, chosen per cache with cache.{name}.format.
+ * A value written in another format is refused, so that changing the format of a cache
+ * makes its previous entries misses.
+ */
+public enum CacheValueFormat {
+
+    /**
+     * The strings themselves, after a marker byte. For the caches of strings only.
+     */
+    STRING {
+        @Override
+        public RedisSerializer<Object> createSerializer() {
+            return new RedisSerializer<Object>() {
+                @Override
+                public byte[] serialize(Object value) throws SerializationException {
+                    if (value == null) {
+                        return new byte[0];
+                    }
+                    if (!(value instanceof String)) {
+                        throw new SerializationException("Not a string : " + value.getClass().getName());
+                    }
+                    byte[] text = ((String) value).getBytes(StandardCharsets.UTF_8);
+                    byte[] bytes = new byte[text.length + 1];
+                    bytes[0] = STRING_MARKER;
+                    System.arraycopy(text, 0, bytes, 1, text.length);
+                    return bytes;
+                }
+
+                @Override
+                public Object deserialize(byte[] bytes) throws SerializationException {
+                    if (bytes == null || bytes.length == 0) {
+                        return null;
+                    }
+                    if (bytes[0] != STRING_MARKER) {
+                        throw new SerializationException("Not a string value");
+                    }
+                    return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+                }
+            };
+        }
+    },
+
+    /**
+     * Binary JSON with the class names, for the objects Jackson can rebuild
+     */
+    SMILE {
+        @Override
+        public RedisSerializer<Object> createSerializer() {
+            ObjectMapper objectMapper = new ObjectMapper(new SmileFactory());
+            objectMapper.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+            objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            return new GenericJackson2JsonRedisSerializer(objectMapper);
+        }
+    },
+
+    /**
+     * Java serialization, the format of the caches before the formats could be chosen
+     */
+    JDK {
+        @Override
+        public RedisSerializer<Object> createSerializer() {
+            return new JdkSerializationRedisSerializer();
+        }
+    };
+
+    // neither the first byte of a Java serialization stream nor the one of a Smile header
+    private static final byte STRING_MARKER = 0;
+
+    public abstract RedisSerializer<Object> createSerializer();
+
+    public static CacheValueFormat fromName(String name) {
+        return Arrays.stream(values()).filter(f -> f.name().equalsIgnoreCase(name)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown cache format : " + name));
+    }
+}
@@ -0,0 +1,53 @@
+package fr.treeptik.cloudunit.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.data.redis.cache.DefaultRedisCachePrefix;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCachePrefix;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * Redis cache manager writing the values of each cache in its own format. The caches of a
+ * format share a template, built from the template of the manager.
+ */
+public class FormattedRedisCacheManager extends RedisCacheManager {
+
+    private final RedisTemplate<?, ?> redisTemplate;
+
+    private final Function<String, CacheValueFormat> formats;
+
+    private final RedisCachePrefix cachePrefix = new DefaultRedisCachePrefix();
+
+    private final Map<CacheValueFormat, RedisTemplate<Object, Object>> templates = new ConcurrentHashMap<>();
+
+    /**
+     * @param formats format of the values of a cache, by cache name
+     */
+    public FormattedRedisCacheManager(RedisTemplate<?, ?> redisTemplate, Function<String, CacheValueFormat> formats) {
+        super(redisTemplate);
+        this.redisTemplate = redisTemplate;
+        this.formats = formats;
+        setCachePrefix(cachePrefix);
+    }
+
+    @Override
+    protected RedisCache createCache(String cacheName) {
+        RedisTemplate<Object, Object> template = templates.computeIfAbsent(formats.apply(cacheName), this::createTemplate);
+        return new RedisCache(cacheName, isUsePrefix() ? cachePrefix.prefix(cacheName) : null, template,
+                computeExpiration(cacheName));
+    }
+
+    private RedisTemplate<Object, Object> createTemplate(CacheValueFormat format) {
+        RedisTemplate<Object, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(redisTemplate.getConnectionFactory());
+        template.setKeySerializer(redisTemplate.getKeySerializer());
+        template.setHashKeySerializer(redisTemplate.getHashKeySerializer());
+        template.setValueSerializer(format.createSerializer());
+        template.afterPropertiesSet();
+        return template;
+    }
+}
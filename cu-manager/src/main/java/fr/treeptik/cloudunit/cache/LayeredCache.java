@@ -0,0 +1,199 @@
+package fr.treeptik.cloudunit.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * A bounded local cache in front of a Redis cache. The local entries expire after a short
+ * time, and are evicted on all the managers when one of them writes the key.
+ * Evicting a key also evicts the composite keys it starts : evicting "container" evicts
+ * "container:VARIABLE".
+ */
+public class LayeredCache implements Cache {
+
+    private final Cache remote;
+
+    private final LayeredCacheManager manager;
+
+    private final long ttlMillis;
+
+    // by readable key, least recently used first
+    private final Map<String, LocalEntry> local;
+
+    public LayeredCache(Cache remote, LayeredCacheManager manager, int maxEntries, long ttlMillis) {
+        this.remote = remote;
+        this.manager = manager;
+        this.ttlMillis = ttlMillis;
+        this.local = new LinkedHashMap<String, LocalEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = CacheKeys.toKey(key);
+        ValueWrapper value = getLocal(localKey);
+        if (value == null) {
+            value = getRemote(key);
+            if (value != null) {
+                putLocal(localKey, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        if (value == null) {
+            return null;
+        }
+        if (value.get() != null && type != null && !type.isInstance(value.get())) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: "
+                    + value.get());
+        }
+        return (T) value.get();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = CacheKeys.toKey(key);
+        ValueWrapper value = getLocal(localKey);
+        if (value != null) {
+            return (T) value.get();
+        }
+        T loaded;
+        try {
+            loaded = remote.get(key, valueLoader);
+        } catch (SerializationException e) {
+            remote.evict(key);
+            loaded = remote.get(key, valueLoader);
+        }
+        putLocal(localKey, new SimpleValueWrapper(loaded));
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String localKey = CacheKeys.toKey(key);
+        remote.put(key, value);
+        putLocal(localKey, new SimpleValueWrapper(value));
+        manager.publish(getName(), LayeredCacheManager.PUT, localKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        String localKey = CacheKeys.toKey(key);
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        evictLocal(localKey, false);
+        if (existing == null) {
+            manager.publish(getName(), LayeredCacheManager.PUT, localKey);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        String localKey = CacheKeys.toKey(key);
+        remote.evict(key);
+        manager.evictRemoteChildren(getName(), localKey);
+        evictLocal(localKey, true);
+        manager.publish(getName(), LayeredCacheManager.EVICT, localKey);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        clearLocal();
+        manager.publish(getName(), LayeredCacheManager.CLEAR, "");
+    }
+
+    /**
+     * @param children true to evict the composite keys started by the key too
+     */
+    void evictLocal(String localKey, boolean children) {
+        synchronized (local) {
+            if (!children) {
+                local.remove(localKey);
+                return;
+            }
+            Iterator<String> keys = local.keySet().iterator();
+            while (keys.hasNext()) {
+                if (CacheKeys.isWithin(keys.next(), localKey)) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    void clearLocal() {
+        synchronized (local) {
+            local.clear();
+        }
+    }
+
+    // a value written in another format is a miss
+    private ValueWrapper getRemote(Object key) {
+        try {
+            return remote.get(key);
+        } catch (SerializationException e) {
+            remote.evict(key);
+            return null;
+        }
+    }
+
+    private ValueWrapper getLocal(String localKey) {
+        synchronized (local) {
+            LocalEntry entry = local.get(localKey);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiration < System.currentTimeMillis()) {
+                local.remove(localKey);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    private void putLocal(String localKey, ValueWrapper value) {
+        synchronized (local) {
+            local.put(localKey, new LocalEntry(value, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    private static class LocalEntry {
+
+        private final ValueWrapper value;
+
+        private final long expiration;
+
+        private LocalEntry(ValueWrapper value, long expiration) {
+            this.value = value;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package fr.treeptik.cloudunit.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+
+/**
+ * Puts a local cache in front of each cache of the Redis cache manager. The writes are
+ * published on a Redis channel, so that the other managers evict their local copies.
+ * The size and the time to live of the local caches are read from
+ * cache.{name}.local.max.entries and cache.{name}.local.ttl.seconds.
+ */
+public class LayeredCacheManager implements CacheManager, MessageListener {
+
+    private Logger logger = LoggerFactory.getLogger(LayeredCacheManager.class);
+
+    public static final String CHANNEL = "cloudunit:cache:invalidation";
+
+    static final String PUT = "put";
+
+    static final String EVICT = "evict";
+
+    static final String CLEAR = "clear";
+
+    private final CacheManager remoteCacheManager;
+
+    private final RedisTemplate<?, ?> redisTemplate;
+
+    private final PropertyResolver properties;
+
+    // to ignore the messages published by this manager
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<String, LayeredCache> caches = new ConcurrentHashMap<>();
+
+    private Map<String, Integer> defaultMaxEntries = new HashMap<>();
+
+    public LayeredCacheManager(CacheManager remoteCacheManager, RedisTemplate<?, ?> redisTemplate,
+            PropertyResolver properties) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        LayeredCache cache = caches.get(name);
+        if (cache == null) {
+            Cache remote = remoteCacheManager.getCache(name);
+            if (remote == null) {
+                return null;
+            }
+            int maxEntries = properties.getProperty("cache." + name + ".local.max.entries", Integer.class,
+                    defaultMaxEntries.getOrDefault(name,
+                            properties.getProperty("cache.local.max.entries", Integer.class, 1000)));
+            long ttlSeconds = properties.getProperty("cache." + name + ".local.ttl.seconds", Long.class,
+                    properties.getProperty("cache.local.ttl.seconds", Long.class, 60L));
+            cache = caches.computeIfAbsent(name, k -> new LayeredCache(remote, this, maxEntries, ttlSeconds * 1000));
+        }
+        return cache;
+    }
+
+    /**
+     * @param defaultMaxEntries size of the local caches, by cache name, when not set by
+     *                          cache.{name}.local.max.entries
+     */
+    public void setDefaultMaxEntries(Map<String, Integer> defaultMaxEntries) {
+        this.defaultMaxEntries = defaultMaxEntries;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    /**
+     * Evict the local copies of a key written by another manager
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n", 4);
+        if (parts.length != 4 || parts[0].equals(nodeId)) {
+            return;
+        }
+        LayeredCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+        switch (parts[2]) {
+            case PUT:
+                cache.evictLocal(parts[3], false);
+                break;
+            case EVICT:
+                cache.evictLocal(parts[3], true);
+                break;
+            case CLEAR:
+                cache.clearLocal();
+                break;
+            default:
+                logger.warn("Unknown cache invalidation : " + parts[2]);
+        }
+    }
+
+    void publish(String cacheName, String operation, String key) {
+        byte[] message = (nodeId + "\n" + cacheName + "\n" + operation + "\n" + key).getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection ->
+                    connection.publish(CHANNEL.getBytes(StandardCharsets.UTF_8), message));
+        } catch (RuntimeException e) {
+            // the local copies of the other managers expire anyway
+            logger.warn("Cannot publish the invalidation of " + cacheName + "/" + key + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Delete from Redis the composite keys started by a key
+     */
+    void evictRemoteChildren(String cacheName, String key) {
+        byte[] pattern = (escape(cacheName + ":" + key) + CacheKeys.SEPARATOR + "*").getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            List<byte[]> keys = new ArrayList<>();
+            try (Cursor<byte[]> cursor = connection.scan(ScanOptions.scanOptions().match(pattern).count(500).build())) {
+                cursor.forEachRemaining(keys::add);
+            } catch (Exception e) {
+                logger.warn("Cannot scan the keys of " + cacheName + "/" + key, e);
+            }
+            delete(connection, keys);
+            return null;
+        });
+    }
+
+    private static void delete(RedisConnection connection, List<byte[]> keys) {
+        if (!keys.isEmpty()) {
+            connection.del(keys.toArray(new byte[keys.size()][]));
+        }
+    }
+
+    // glob characters of the Redis patterns
+    private static String escape(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
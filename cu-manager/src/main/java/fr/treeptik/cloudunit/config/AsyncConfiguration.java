@@ -15,9 +15,12 @@
 
 package fr.treeptik.cloudunit.config;
 
+import com.codahale.metrics.Counter;
+import fr.treeptik.cloudunit.monitoring.ManagerMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
@@ -25,7 +28,10 @@ import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import javax.inject.Inject;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
@@ -36,6 +42,15 @@ public class AsyncConfiguration
     private final Logger log = LoggerFactory
         .getLogger(AsyncConfiguration.class);
 
+    @Inject
+    private ManagerMetrics managerMetrics;
+
+    /**
+     * Commands streamed at once, an exec lasts as long as its command
+     */
+    @Value("${exec.stream.threads:10}")
+    private int execStreamThreads;
+
     @Override
     @Bean
     public Executor getAsyncExecutor() {
@@ -48,7 +63,41 @@ public class AsyncConfiguration
 
         executor.setQueueCapacity(10000);
         executor.setThreadNamePrefix("cloudunit-Executor-");
+        Counter rejections = managerMetrics.counter("cu_executor_rejected_total", "executor", "async");
+        RejectedExecutionHandler abort = new ThreadPoolExecutor.AbortPolicy();
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejections.inc();
+            abort.rejectedExecution(task, pool);
+        });
+        executor.initialize();
+        managerMetrics.gauge("cu_executor_queue_size", () -> executor.getThreadPoolExecutor().getQueue().size(),
+            "executor", "async");
+        managerMetrics.gauge("cu_executor_active_threads", executor::getActiveCount, "executor", "async");
+        managerMetrics.gauge("cu_executor_pool_size", executor::getPoolSize, "executor", "async");
+        managerMetrics.gauge("cu_executor_completed_tasks",
+            () -> executor.getThreadPoolExecutor().getCompletedTaskCount(), "executor", "async");
+        return executor;
+    }
+
+    /**
+     * Dedicated to the streamed commands so that they neither wait behind nor hold the async tasks.
+     * There is no queue : a command beyond the pool is refused rather than left waiting.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor execStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(execStreamThreads);
+        executor.setMaxPoolSize(execStreamThreads);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("cloudunit-exec-stream-");
+        Counter rejections = managerMetrics.counter("cu_executor_rejected_total", "executor", "exec-stream");
+        RejectedExecutionHandler abort = new ThreadPoolExecutor.AbortPolicy();
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejections.inc();
+            abort.rejectedExecution(task, pool);
+        });
         executor.initialize();
+        managerMetrics.gauge("cu_executor_active_threads", executor::getActiveCount, "executor", "exec-stream");
         return executor;
     }
 
@@ -15,6 +15,12 @@
 
 package fr.treeptik.cloudunit.config;
 
+import fr.treeptik.cloudunit.cache.CacheKeys;
+import fr.treeptik.cloudunit.cache.CacheValueFormat;
+import fr.treeptik.cloudunit.cache.FormattedRedisCacheManager;
+import fr.treeptik.cloudunit.cache.LayeredCacheManager;
+import fr.treeptik.cloudunit.monitoring.InstrumentedCacheManager;
+import fr.treeptik.cloudunit.monitoring.ManagerMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -22,18 +28,37 @@ import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 @EnableCaching
 public class CacheConfiguration {
 
 	private Logger logger = LoggerFactory.getLogger(CacheConfiguration.class);
 
+	// the caches of strings, the other ones hold entities
+	private static final Map<String, String> DEFAULT_FORMATS = new HashMap<>();
+
+	static {
+		DEFAULT_FORMATS.put("env", "string");
+		DEFAULT_FORMATS.put("monitoring", "string");
+	}
+
+	// the users are entities changed by their callers, so each request reads its own copy from Redis
+	private static final Map<String, Integer> DEFAULT_LOCAL_MAX_ENTRIES = Collections.singletonMap("users", 0);
+
 	@Value("${redis.ip}")
 	private String redisIp;
 
@@ -48,18 +73,52 @@ public class CacheConfiguration {
 	@Bean
 	public RedisTemplate<String, String> redisTemplate(RedisConnectionFactory cf) {
 		RedisTemplate<String, String> redisTemplate = new RedisTemplate<String, String>();
+		// readable keys, so that the composite keys of a container can be found by pattern
+		redisTemplate.setKeySerializer(new CacheKeys());
 		redisTemplate.setHashKeySerializer(new StringRedisSerializer());
 		redisTemplate.setConnectionFactory(cf);
 		return redisTemplate;
 	}
 
 	@Bean
-	public CacheManager cacheManager(RedisTemplate<?, ?> redisTemplate) {
+	public LayeredCacheManager layeredCacheManager(RedisTemplate<?, ?> redisTemplate, Environment environment) {
 		logger.info("Cache manager initialization");
-		RedisCacheManager cacheManager = new RedisCacheManager(redisTemplate);
+		RedisCacheManager cacheManager = new FormattedRedisCacheManager(redisTemplate,
+				name -> CacheValueFormat.fromName(environment.getProperty("cache." + name + ".format",
+						DEFAULT_FORMATS.getOrDefault(name, environment.getProperty("cache.format", "jdk")))));
 		cacheManager.setUsePrefix(true);
-		cacheManager.setDefaultExpiration(1800);
-		return cacheManager;
+		cacheManager.setDefaultExpiration(environment.getProperty("cache.ttl.seconds", Long.class, 1800L));
+		Map<String, Long> expires = new HashMap<>();
+		for (String name : new String[] { "env", "monitoring", "messageFindCache", "users" }) {
+			Long ttl = environment.getProperty("cache." + name + ".ttl.seconds", Long.class);
+			if (ttl != null) {
+				expires.put(name, ttl);
+			}
+		}
+		cacheManager.setExpires(expires);
+		// not a bean itself anymore
+		cacheManager.afterPropertiesSet();
+		LayeredCacheManager layeredCacheManager = new LayeredCacheManager(cacheManager, redisTemplate, environment);
+		layeredCacheManager.setDefaultMaxEntries(DEFAULT_LOCAL_MAX_ENTRIES);
+		return layeredCacheManager;
+	}
+
+	@Bean
+	@Primary
+	public CacheManager cacheManager(LayeredCacheManager layeredCacheManager, ManagerMetrics managerMetrics) {
+		return new InstrumentedCacheManager(layeredCacheManager, managerMetrics);
+	}
+
+	/**
+	 * Evicts the local caches on the writes of the other managers
+	 */
+	@Bean
+	public RedisMessageListenerContainer cacheInvalidationListener(RedisConnectionFactory cf,
+			LayeredCacheManager layeredCacheManager) {
+		RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+		container.setConnectionFactory(cf);
+		container.addMessageListener(layeredCacheManager, new ChannelTopic(LayeredCacheManager.CHANNEL));
+		return container;
 	}
 
 }
\ No newline at end of file
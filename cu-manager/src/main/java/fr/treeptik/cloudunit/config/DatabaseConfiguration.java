@@ -17,6 +17,7 @@ package fr.treeptik.cloudunit.config;
 
 import java.util.Properties;
 
+import javax.inject.Inject;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.SharedCacheMode;
 import javax.sql.DataSource;
@@ -42,6 +43,7 @@ import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import com.codahale.metrics.MetricRegistry;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
@@ -78,6 +80,9 @@ public class DatabaseConfiguration {
     @Value("classpath:/${database.script}")
     private Resource dataScript;
 
+    @Inject
+    private MetricRegistry metricRegistry;
+
     @Bean
     public DataSource dataSource() {
         logger.debug("Configuring Datasource");
@@ -91,6 +96,9 @@ public class DatabaseConfiguration {
         config.addDataSourceProperty("user", databaseUser);
         config.setInitializationFailFast(false);
         config.setIdleTimeout(60000);
+        // wait time, usage and connection counts of the pool, as cloudunit.pool.*
+        config.setPoolName("cloudunit");
+        config.setMetricRegistry(metricRegistry);
         String forcePassword = System.getenv("MYSQL_ROOT_PASSWORD");
         // coming from environnment host
         if (forcePassword != null) {
@@ -0,0 +1,99 @@
+package fr.treeptik.cloudunit.config;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import fr.treeptik.cloudunit.config.events.ContainerDiedEvent;
+import fr.treeptik.cloudunit.config.events.ContainerStartedEvent;
+import fr.treeptik.cloudunit.docker.core.DockerCloudUnitClient;
+import fr.treeptik.cloudunit.docker.core.DockerEventListener;
+import fr.treeptik.cloudunit.docker.core.DockerEventsSubscriber;
+import fr.treeptik.cloudunit.docker.model.DockerEvent;
+import fr.treeptik.cloudunit.monitoring.ManagerMetrics;
+
+/**
+ * Subscribes once to the Docker events stream and publishes the container
+ * state changes as Spring events.
+ */
+@Component
+public class DockerEventsPublisher implements DockerEventListener {
+
+    private Logger logger = LoggerFactory.getLogger(DockerEventsPublisher.class);
+
+    @Inject
+    private DockerCloudUnitClient dockerCloudUnitClient;
+
+    @Inject
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Inject
+    private ManagerMetrics managerMetrics;
+
+    @Value("${docker.events.enabled:true}")
+    private boolean enabled;
+
+    private DockerEventsSubscriber subscriber;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.warn("Docker events subscription is disabled");
+            return;
+        }
+        subscriber = new DockerEventsSubscriber(dockerCloudUnitClient);
+        // the cache must be evicted before the listeners are told the container changed
+        if (dockerCloudUnitClient.getContainerCache() != null) {
+            subscriber.addListener(dockerCloudUnitClient.getContainerCache());
+        }
+        subscriber.addListener(this);
+        subscriber.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscriber != null) {
+            subscriber.stop();
+        }
+    }
+
+    public boolean isConnected() {
+        return subscriber != null && subscriber.isConnected();
+    }
+
+    public DockerEventsSubscriber getSubscriber() {
+        return subscriber;
+    }
+
+    @Override
+    public void onEvent(DockerEvent event) {
+        String containerName = event.getContainerName();
+        String action = event.getEffectiveAction();
+        if (action != null) {
+            // "exec_start: bash -c ..." counts as exec_start
+            int colon = action.indexOf(':');
+            managerMetrics.counter("cu_docker_events_total", "action",
+                    colon < 0 ? action : action.substring(0, colon)).inc();
+        }
+        if (containerName == null || action == null) {
+            return;
+        }
+        switch (action) {
+            case "start":
+                applicationEventPublisher.publishEvent(new ContainerStartedEvent(containerName, event));
+                break;
+            case "die":
+                applicationEventPublisher.publishEvent(new ContainerDiedEvent(containerName, event));
+                break;
+            default:
+                break;
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+package fr.treeptik.cloudunit.config.events;
+
+import fr.treeptik.cloudunit.docker.model.DockerEvent;
+
+public class ContainerDiedEvent extends ContainerEvent {
+
+	private static final long serialVersionUID = 1L;
+
+	public ContainerDiedEvent(String containerName, DockerEvent dockerEvent) {
+		super(containerName, dockerEvent);
+	}
+
+	/**
+	 * @return the exit code of the main process, null if the daemon does not send it
+	 */
+	public Integer getExitCode() {
+		String exitCode = getDockerEvent().getAttribute("exitCode");
+		try {
+			return exitCode == null ? null : Integer.valueOf(exitCode);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+package fr.treeptik.cloudunit.config.events;
+
+import fr.treeptik.cloudunit.docker.model.DockerEvent;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * A container state change reported by the Docker events stream.
+ * The source is the name of the container.
+ */
+public abstract class ContainerEvent extends ApplicationEvent {
+
+	private static final long serialVersionUID = 1L;
+
+	private final DockerEvent dockerEvent;
+
+	public ContainerEvent(String containerName, DockerEvent dockerEvent) {
+		super(containerName);
+		this.dockerEvent = dockerEvent;
+	}
+
+	public String getContainerName() {
+		return (String) getSource();
+	}
+
+	public String getContainerId() {
+		return dockerEvent.getContainerId();
+	}
+
+	public DockerEvent getDockerEvent() {
+		return dockerEvent;
+	}
+
+}
@@ -0,0 +1,13 @@
+package fr.treeptik.cloudunit.config.events;
+
+import fr.treeptik.cloudunit.docker.model.DockerEvent;
+
+public class ContainerStartedEvent extends ContainerEvent {
+
+	private static final long serialVersionUID = 1L;
+
+	public ContainerStartedEvent(String containerName, DockerEvent dockerEvent) {
+		super(containerName, dockerEvent);
+	}
+
+}
@@ -1,5 +1,8 @@
 package fr.treeptik.cloudunit.config.listener;
 
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
 import javax.inject.Inject;
 
 import org.slf4j.Logger;
@@ -23,22 +26,24 @@ import fr.treeptik.cloudunit.service.ApplicationService;
 @Component
 public class ApplicationListener {
 
+	private static final long STATUS_TIMEOUT_SECONDS = 30;
+
 	private Logger logger = LoggerFactory.getLogger(ApplicationListener.class);
 
 	@Inject
 	private ApplicationService applicationService;
 
+	@Inject
+	private ContainerEventWaiter containerEventWaiter;
+
 	@EventListener
 	public void onApplicationStart(ApplicationStartEvent applicationStartEvent) {
 		Application application = (Application) applicationStartEvent.getSource();
 		try {
-			int counter = 0;
-			boolean started = false;
-			do {
-				started = applicationService.isStarted(application.getName());
-				Thread.sleep(1000);
-			} while (counter++ < 30 && !started);
-			if (counter <= 30) {
+			// servers and modules update their own status, each update wakes up the waiter
+			boolean started = containerEventWaiter.await(Collections.singleton(ContainerEventWaiter.ANY_CONTAINER),
+					() -> applicationService.isStarted(application.getName()), STATUS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			if (started) {
 				application.setStatus(Status.START);
 			} else {
 				application.setStatus(Status.FAIL);
@@ -54,13 +59,9 @@ public class ApplicationListener {
 	public void onApplicationStop(ApplicationStopEvent applicationStopEvent) {
 		Application application = (Application) applicationStopEvent.getSource();
 		try {
-			int counter = 0;
-			boolean started = false;
-			do {
-				started = applicationService.isStopped(application.getName());
-				Thread.sleep(1000);
-			} while (counter++ < 30 && !started);
-			if (counter <= 30) {
+			boolean stopped = containerEventWaiter.await(Collections.singleton(ContainerEventWaiter.ANY_CONTAINER),
+					() -> applicationService.isStopped(application.getName()), STATUS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			if (stopped) {
 				application.setStatus(Status.STOP);
 			} else {
 				application.setStatus(Status.FAIL);
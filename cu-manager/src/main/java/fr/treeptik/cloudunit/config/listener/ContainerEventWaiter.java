@@ -0,0 +1,96 @@
+package fr.treeptik.cloudunit.config.listener;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import fr.treeptik.cloudunit.config.DockerEventsPublisher;
+import fr.treeptik.cloudunit.config.events.ContainerEvent;
+
+/**
+ * Lets a thread wait for a container condition without polling the Docker daemon.
+ *
+ * The condition is evaluated once, then again each time a Docker event or a status change
+ * is signaled for one of the watched containers. When the events stream is down,
+ * it falls back to polling every second.
+ */
+@Component
+public class ContainerEventWaiter {
+
+	/**
+	 * Key to be woken up by the events of every container
+	 */
+	public static final String ANY_CONTAINER = "*";
+
+	private static final long FALLBACK_POLL_MILLIS = 1000;
+
+	private static final long SAFETY_POLL_MILLIS = 5000;
+
+	@Inject
+	private DockerEventsPublisher dockerEventsPublisher;
+
+	private final ConcurrentMap<String, Set<Semaphore>> waiters = new ConcurrentHashMap<>();
+
+	/**
+	 * @return true if the condition has been met before the timeout
+	 */
+	public boolean await(Collection<String> containerNames, Callable<Boolean> condition, long timeout, TimeUnit unit)
+			throws Exception {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		Semaphore semaphore = new Semaphore(0);
+		for (String containerName : containerNames) {
+			waiters.computeIfAbsent(containerName, k -> ConcurrentHashMap.newKeySet()).add(semaphore);
+		}
+		try {
+			while (true) {
+				if (Boolean.TRUE.equals(condition.call())) {
+					return true;
+				}
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+				long poll = dockerEventsPublisher.isConnected() ? SAFETY_POLL_MILLIS : FALLBACK_POLL_MILLIS;
+				semaphore.tryAcquire(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(poll)), TimeUnit.NANOSECONDS);
+				semaphore.drainPermits();
+			}
+		} finally {
+			for (String containerName : containerNames) {
+				Set<Semaphore> semaphores = waiters.get(containerName);
+				if (semaphores != null) {
+					semaphores.remove(semaphore);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wake up the threads waiting on this container
+	 */
+	public void signal(String containerName) {
+		release(containerName);
+		release(ANY_CONTAINER);
+	}
+
+	@EventListener
+	public void onContainerEvent(ContainerEvent containerEvent) {
+		signal(containerEvent.getContainerName());
+	}
+
+	private void release(String key) {
+		Set<Semaphore> semaphores = waiters.get(key);
+		if (semaphores != null) {
+			semaphores.forEach(Semaphore::release);
+		}
+	}
+
+}
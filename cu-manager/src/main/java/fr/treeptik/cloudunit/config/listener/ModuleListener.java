@@ -1,5 +1,8 @@
 package fr.treeptik.cloudunit.config.listener;
 
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
 import javax.inject.Inject;
 
 import org.slf4j.Logger;
@@ -22,6 +25,8 @@ import fr.treeptik.cloudunit.service.ModuleService;
 @Component
 public class ModuleListener {
 
+	private static final long STATUS_TIMEOUT_SECONDS = 30;
+
 	private Logger logger = LoggerFactory.getLogger(ModuleListener.class);
 
 	@Inject
@@ -30,6 +35,9 @@ public class ModuleListener {
 	@Inject
 	ModuleService moduleService;
 
+	@Inject
+	ContainerEventWaiter containerEventWaiter;
+
 	@EventListener
 	public void onModuleStart(ModuleStartEvent moduleStartEvent) {
 		Module module = (Module) moduleStartEvent.getSource();
@@ -54,6 +62,7 @@ public class ModuleListener {
 			}
 			logger.info("Module status : " + module.getStatus());
 			moduleService.update(module);
+			containerEventWaiter.signal(module.getName());
 		} catch (Exception e) {
 			logger.error(module.toString(), e);
 			e.printStackTrace();
@@ -65,19 +74,16 @@ public class ModuleListener {
 	public void onModuleStop(ModuleStopEvent moduleStopEvent) {
 		Module module = (Module) moduleStopEvent.getSource();
 		try {
-			int counter = 0;
-			boolean isStopped = false;
-			do {
-				isStopped = dockerService.isStoppedGracefully(module.getName());
-				Thread.sleep(1000);
-			} while (counter++ < 30 && !isStopped);
-			if (counter <= 30) {
+			boolean isStopped = containerEventWaiter.await(Collections.singleton(module.getName()),
+					() -> dockerService.isStoppedGracefully(module.getName()), STATUS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			if (isStopped) {
 				module.setStatus(Status.STOP);
 			} else {
 				module.setStatus(Status.FAIL);
 			}
 			logger.info("Server status : " + module.getStatus());
 			moduleService.update(module);
+			containerEventWaiter.signal(module.getName());
 		} catch (Exception e) {
 			logger.error(module.getName(), e);
 			e.printStackTrace();
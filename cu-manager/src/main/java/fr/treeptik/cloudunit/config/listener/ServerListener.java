@@ -1,7 +1,9 @@
 package fr.treeptik.cloudunit.config.listener;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
@@ -24,6 +26,8 @@ import fr.treeptik.cloudunit.service.ServerService;
 @Component
 public class ServerListener {
 
+	private static final long STATUS_TIMEOUT_SECONDS = 30;
+
 	private Logger logger = LoggerFactory.getLogger(ServerListener.class);
 
 	@Inject
@@ -32,6 +36,9 @@ public class ServerListener {
 	@Inject
 	ServerService serverService;
 
+	@Inject
+	ContainerEventWaiter containerEventWaiter;
+
 	@EventListener
 	public void onServerStart(ServerStartEvent serverStartEvent) {
 		Server server = (Server) serverStartEvent.getSource();
@@ -69,6 +76,7 @@ public class ServerListener {
 			}
 			logger.info("Server status : " + server.getStatus());
 			serverService.update(server);
+			containerEventWaiter.signal(server.getName());
 		} catch (Exception e) {
 			logger.error(server.toString(), e);
 			e.printStackTrace();
@@ -79,19 +87,16 @@ public class ServerListener {
 	public void onServerStop(ServerStopEvent serverStopEvent) {
 		Server server = (Server) serverStopEvent.getSource();
 		try {
-			int counter = 0;
-			boolean isStopped = false;
-			do {
-				isStopped = dockerService.isStoppedGracefully(server.getName());
-				Thread.sleep(1000);
-			} while (counter++ < 30 && !isStopped);
-			if (counter <= 30) {
+			boolean isStopped = containerEventWaiter.await(Collections.singleton(server.getName()),
+					() -> dockerService.isStoppedGracefully(server.getName()), STATUS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			if (isStopped) {
 				server.setStatus(Status.STOP);
 			} else {
 				server.setStatus(Status.FAIL);
 			}
 			logger.info("Server status : " + server.getStatus());
 			serverService.update(server);
+			containerEventWaiter.signal(server.getName());
 		} catch (Exception e) {
 			logger.error(server.getName(), e);
 			e.printStackTrace();
@@ -25,6 +25,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import fr.treeptik.cloudunit.dto.HttpOk;
@@ -35,6 +36,9 @@ import fr.treeptik.cloudunit.exception.ServiceException;
 import fr.treeptik.cloudunit.model.Image;
 import fr.treeptik.cloudunit.model.Message;
 import fr.treeptik.cloudunit.model.User;
+import fr.treeptik.cloudunit.monitoring.Span;
+import fr.treeptik.cloudunit.monitoring.Trace;
+import fr.treeptik.cloudunit.monitoring.Tracer;
 import fr.treeptik.cloudunit.service.ImageService;
 import fr.treeptik.cloudunit.service.MessageService;
 import fr.treeptik.cloudunit.service.UserService;
@@ -62,6 +66,9 @@ public class AdministrationController implements Serializable {
 	@Inject
 	private AuthentificationUtils authentificationUtils;
 
+	@Inject
+	private Tracer tracer;
+
 	/**
 	 * Create a new user
 	 *
@@ -196,4 +203,32 @@ public class AdministrationController implements Serializable {
 		return messageService.listByUser(userService.findByLogin(login), Integer.parseInt(rows));
 	}
 
+	/**
+	 * Last requests traced, without their spans
+	 *
+	 * @param minMillis only the requests lasting at least this duration
+	 * @return
+	 */
+	@ResponseBody
+	@RequestMapping(value = "/traces", method = RequestMethod.GET)
+	public List<Trace> findTraces(@RequestParam(defaultValue = "0") double minMillis) {
+		return tracer.getTraces(minMillis);
+	}
+
+	/**
+	 * Spans of a request traced, as a tree
+	 *
+	 * @param id
+	 * @return
+	 * @throws CheckException
+	 */
+	@ResponseBody
+	@RequestMapping(value = "/traces/{id}", method = RequestMethod.GET)
+	public Span findTrace(@PathVariable long id) throws CheckException {
+		Trace trace = tracer.getTrace(id);
+		if (trace == null) {
+			throw new CheckException("Trace not found, or no longer kept : " + id);
+		}
+		return trace.getRoot();
+	}
 }
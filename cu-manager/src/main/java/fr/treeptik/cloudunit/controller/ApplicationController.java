@@ -24,28 +24,27 @@ import java.util.List;
 import java.util.Locale;
 
 import javax.inject.Inject;
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.spotify.docker.client.exceptions.DockerException;
 import fr.treeptik.cloudunit.config.events.*;
 import fr.treeptik.cloudunit.dto.*;
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 
-import fr.treeptik.cloudunit.utils.FilesUtils;
 import fr.treeptik.cloudunit.aspects.CloudUnitSecurable;
 import fr.treeptik.cloudunit.enums.RemoteExecAction;
 import fr.treeptik.cloudunit.exception.CheckException;
@@ -57,6 +56,7 @@ import fr.treeptik.cloudunit.model.Status;
 import fr.treeptik.cloudunit.model.User;
 import fr.treeptik.cloudunit.service.ApplicationService;
 import fr.treeptik.cloudunit.service.DockerService;
+import fr.treeptik.cloudunit.service.ExportService;
 import fr.treeptik.cloudunit.utils.AuthentificationUtils;
 import fr.treeptik.cloudunit.utils.CheckUtils;
 
@@ -85,6 +85,9 @@ public class ApplicationController implements Serializable {
 	@Inject
 	private ApplicationEventPublisher applicationEventPublisher;
 
+	@Inject
+	private ExportService exportService;
+
 	private Locale locale = Locale.ENGLISH;
 
 	/**
@@ -218,7 +221,13 @@ public class ApplicationController implements Serializable {
 		// set the application in pending mode
 		applicationEventPublisher.publishEvent(new ApplicationPendingEvent(application));
 
-		applicationService.start(application);
+		try {
+			applicationService.start(application);
+		} catch (ServiceException e) {
+			// a module failed or did not start in time
+			applicationEventPublisher.publishEvent(new ApplicationFailEvent(application));
+			throw e;
+		}
 
 		// wait for modules and servers starting
 		applicationEventPublisher.publishEvent(new ApplicationStartEvent(application));
@@ -226,6 +235,29 @@ public class ApplicationController implements Serializable {
 		return new HttpOk();
 	}
 
+	/**
+	 * Choose whether the modules of the application are started before its server
+	 * and stopped after it, or all together. Without value the platform default applies.
+	 *
+	 * @param applicationName
+	 * @param ordered
+	 * @return
+	 * @throws ServiceException
+	 * @throws CheckException
+	 */
+	@ResponseBody
+	@RequestMapping(value = "/{applicationName}/lifecycle", method = RequestMethod.PUT)
+	public JsonResponse setLifecycle(@PathVariable String applicationName,
+			@RequestParam(required = false) Boolean ordered) throws ServiceException, CheckException {
+		User user = authentificationUtils.getAuthentificatedUser();
+		Application application = applicationService.findByNameAndUser(user, applicationName);
+		if (application == null) {
+			throw new CheckException("Unknown application : " + applicationName);
+		}
+		applicationService.setOrderedLifecycle(application, ordered);
+		return new HttpOk();
+	}
+
 	/**
 	 * STOP a running application
 	 *
@@ -254,7 +286,12 @@ public class ApplicationController implements Serializable {
 		applicationEventPublisher.publishEvent(new ApplicationPendingEvent(application));
 
 		// stop the application
-		applicationService.stop(application);
+		try {
+			applicationService.stop(application);
+		} catch (ServiceException e) {
+			applicationEventPublisher.publishEvent(new ApplicationFailEvent(application));
+			throw e;
+		}
 
 		applicationEventPublisher.publishEvent(new ApplicationStopEvent(application));
 
@@ -504,77 +541,101 @@ public class ApplicationController implements Serializable {
 	}
 
 
+	/**
+	 * Prepare the export of all the containers of an application.
+	 * The archive is produced on an export thread while it is downloaded with the returned job id,
+	 * the progress of the download being read with the status of the job.
+	 */
 	@RequestMapping(value = "/{applicationName}/containers/export", method = RequestMethod.POST)
 	@CloudUnitSecurable
-	public void exportApplication(@PathVariable final String applicationName)
+	@ResponseBody
+	public ExportJob exportApplication(@PathVariable final String applicationName,
+			@RequestParam(value = "parallel", defaultValue = "false") boolean parallelGzip)
 			throws ServiceException, CheckException {
 
-        User user = authentificationUtils.getAuthentificatedUser();
-        Application application = applicationService.findByNameAndUser(user, applicationName);
+		User user = authentificationUtils.getAuthentificatedUser();
+		Application application = applicationService.findByNameAndUser(user, applicationName);
+		if (application == null) {
+			throw new CheckException("Unknown application : " + applicationName);
+		}
+		return exportService.createJob(user, applicationName, parallelGzip);
+	}
 
-        // We must be sure there is no running action before starting new one
-        this.authentificationUtils.canStartNewAction(user, application, locale);
-        applicationEventPublisher.publishEvent(new ApplicationPendingEvent(application));
+	@RequestMapping(value = "/{applicationName}/containers/export/{jobId}", method = RequestMethod.GET)
+	@CloudUnitSecurable
+	public void getExportApplication(@PathVariable final String applicationName, @PathVariable final String jobId,
+			HttpServletRequest request, HttpServletResponse response) throws ServiceException, CheckException {
 
-        String basePath = "./export/";
-        // erase export directory
-		File baseDir = new File (basePath);
-		try {
-			FileUtils.deleteDirectory(baseDir);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		baseDir.mkdir();
-        List<ContainerUnit> listContainer = applicationService.listContainers(applicationName);
-        for (ContainerUnit container : listContainer) { // export each containers create a .tar.gz by container
-            File file = new File(basePath + container.getName() + ".tar.gz");
-            OutputStream out = null;
-            try {
-                out = new FileOutputStream(file);
-                this.dockerService.exportContainer(container.getName(), out);
-                out.flush();
-                out.close();
-            } catch ( InterruptedException | IOException | DockerException e) {
-                e.printStackTrace();
-            }
-            File finalFile = new File(basePath + container.getName());
-            try {
-                FilesUtils.createTarGZ(basePath, "archive.tar.gz"); // package all sub .tar.gz in a main .tar.gz
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            applicationEventPublisher.publishEvent(new ApplicationStartEvent(application));
-        }
-    }
+		User user = authentificationUtils.getAuthentificatedUser();
+		streamExport(user, exportService.findJob(user, applicationName, jobId), request, response);
+	}
 
-	@RequestMapping(value = "/{applicationName}/containers/export", method = RequestMethod.GET)
+	@RequestMapping(value = "/{applicationName}/containers/export/{jobId}/status", method = RequestMethod.GET)
 	@CloudUnitSecurable
-	public void getExportApplication(@PathVariable final String applicationName, HttpServletResponse response)
+	@ResponseBody
+	public ExportJob getExportStatus(@PathVariable final String applicationName, @PathVariable final String jobId)
 			throws ServiceException, CheckException {
 
 		User user = authentificationUtils.getAuthentificatedUser();
-		Application application = applicationService.findByNameAndUser(user, applicationName);
+		return exportService.findJob(user, applicationName, jobId);
+	}
+
+	@RequestMapping(value = "/{applicationName}/containers/export", method = RequestMethod.GET)
+	@CloudUnitSecurable
+	public void getExportApplication(@PathVariable final String applicationName,
+			@RequestParam(value = "parallel", defaultValue = "false") boolean parallelGzip,
+			HttpServletRequest request, HttpServletResponse response) throws ServiceException, CheckException {
+
+		User user = authentificationUtils.getAuthentificatedUser();
+		streamExport(user, exportService.createJob(user, applicationName, parallelGzip), request, response);
+	}
+
+	/**
+	 * Write the tar.gz of the application into the response from an export thread,
+	 * the request thread being released at once
+	 */
+	private void streamExport(User user, ExportJob job, HttpServletRequest request, HttpServletResponse response)
+			throws ServiceException, CheckException {
+		Application application = applicationService.findByNameAndUser(user, job.getApplicationName());
 
 		// We must be sure there is no running action before starting new one
 		this.authentificationUtils.canStartNewAction(user, application, locale);
+		// read here, the export thread has no security context
+		List<ContainerUnit> containers = applicationService.listContainers(job.getApplicationName());
+		OutputStream stream;
+		try {
+			stream = response.getOutputStream();
+		} catch (IOException e) {
+			throw new ServiceException(job.getApplicationName(), e);
+		}
+		response.setContentType("application/x-gzip");
+		response.setHeader("Content-Disposition", String.format("attachment; filename=%s", job.getFileName()));
+		response.setHeader("X-Export-Job", job.getId());
+		AsyncContext asyncContext = request.startAsync();
+		// the download lasts as long as the export
+		asyncContext.setTimeout(0);
 		applicationEventPublisher.publishEvent(new ApplicationPendingEvent(application));
-		String filename = "archive.tar.gz";
-		FileSystemResource resource = new FileSystemResource("./" + filename);
-		String mimeType = URLConnection.guessContentTypeFromName(filename);
-		String contentDisposition = String.format("attachment; filename=%s", filename);
-		response.setContentType(mimeType);
-		response.setHeader("Content-Disposition", contentDisposition);
-		try (OutputStream stream = response.getOutputStream()) {
-			File f = new File(filename);
-			byte[] arBytes = new byte[(int)f.length()];
-			FileInputStream is = new FileInputStream(f);
-			is.read(arBytes);
-			stream.write(arBytes);
-			stream.flush(); // commits response!
-			stream.close();
-		} catch (IOException ex) {
-			logger.error(applicationName, ex.getMessage());
-		}applicationEventPublisher.publishEvent(new ApplicationStartEvent(application));
+		try {
+			exportService.exportAsync(job, containers, stream).whenComplete((result, e) -> {
+				if (e != null) {
+					// once the archive has started, the client can only be told by the connection being closed
+					logger.error("Export " + job.getId() + " of " + job.getApplicationName() + " aborted after "
+							+ job.getBytesWritten() + " bytes", e.getCause() != null ? e.getCause() : e);
+					if (!response.isCommitted()) {
+						response.reset();
+						response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+					}
+				}
+				applicationEventPublisher.publishEvent(new ApplicationStartEvent(application));
+				asyncContext.complete();
+			});
+		} catch (CheckException e) {
+			applicationEventPublisher.publishEvent(new ApplicationStartEvent(application));
+			response.reset();
+			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			asyncContext.complete();
+			logger.warn(job.getApplicationName() + " : " + e.getMessage());
+		}
 	}
 
 
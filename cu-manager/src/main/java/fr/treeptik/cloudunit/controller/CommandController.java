@@ -1,21 +1,28 @@
 package fr.treeptik.cloudunit.controller;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import fr.treeptik.cloudunit.dto.Command;
 import fr.treeptik.cloudunit.dto.HttpOk;
 import fr.treeptik.cloudunit.dto.JsonResponse;
+import fr.treeptik.cloudunit.exception.CheckException;
 import fr.treeptik.cloudunit.exception.ServiceException;
 import fr.treeptik.cloudunit.model.Application;
 import fr.treeptik.cloudunit.model.Status;
@@ -28,6 +35,8 @@ import fr.treeptik.cloudunit.utils.AuthentificationUtils;
 @RequestMapping("/application")
 public class CommandController {
 
+    private static final long EXEC_STREAM_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+
     private final Logger logger = LoggerFactory.getLogger(CommandController.class);
 
     @Inject
@@ -39,6 +48,10 @@ public class CommandController {
     @Inject
     private AuthentificationUtils authentificationUtils;
 
+    @Inject
+    @Named("execStreamExecutor")
+    private Executor execStreamExecutor;
+
     @RequestMapping(value = "/{applicationName}/container/{containerName}/command", method = RequestMethod.GET)
     public @ResponseBody List<Command> listCommandByImage(@PathVariable String applicationName,
                                                            @PathVariable String containerName) throws ServiceException {
@@ -63,4 +76,43 @@ public class CommandController {
         }
         return new HttpOk();
     }
+
+    /**
+     * Execute a command and send its output as server-sent events while it runs :
+     * "stdout" and "stderr" events for the output, then an "exit" event with the exit code.
+     * Refused when the streamed commands already fill their pool.
+     */
+    @RequestMapping(value = "/{applicationName}/container/{containerName}/command/{filename}/exec/stream",
+        method = RequestMethod.POST, consumes = "application/json", produces = "text/event-stream")
+    public SseEmitter execCommandStream(@PathVariable String applicationName, @PathVariable String containerName,
+                                        @PathVariable String filename, @RequestBody Command command) throws ServiceException {
+        logger.info("Execute by filename with streamed output");
+        User user = authentificationUtils.getAuthentificatedUser();
+        Application application = applicationService.findByNameAndUser(user, applicationName);
+        SseEmitter emitter = new SseEmitter(EXEC_STREAM_TIMEOUT_MILLIS);
+        applicationService.setStatus(application, Status.PENDING);
+        try {
+            execStreamExecutor.execute(new DelegatingSecurityContextRunnable(() -> {
+                try {
+                    int exitCode = commandService.execCommand(command, containerName, applicationName,
+                        (stderr, text) -> emitter.send(SseEmitter.event().name(stderr ? "stderr" : "stdout").data(text)));
+                    emitter.send(SseEmitter.event().name("exit").data(exitCode));
+                    emitter.complete();
+                } catch (ServiceException | IOException e) {
+                    logger.error(applicationName + "," + containerName, e);
+                    emitter.completeWithError(e);
+                } finally {
+                    try {
+                        applicationService.setStatus(application, Status.START);
+                    } catch (ServiceException e) {
+                        logger.error(applicationName, e);
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            applicationService.setStatus(application, Status.START);
+            throw new CheckException("Too many commands are running, please retry later");
+        }
+        return emitter;
+    }
 }
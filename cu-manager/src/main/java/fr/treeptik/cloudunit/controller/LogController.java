@@ -15,10 +15,14 @@
 
 package fr.treeptik.cloudunit.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,15 +32,28 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import fr.treeptik.cloudunit.dto.LogArchiveUnit;
+import fr.treeptik.cloudunit.dto.LogChunkResource;
 import fr.treeptik.cloudunit.dto.LogResource;
+import fr.treeptik.cloudunit.dto.LogSearchResult;
 import fr.treeptik.cloudunit.dto.SourceUnit;
 import fr.treeptik.cloudunit.exception.CheckException;
 import fr.treeptik.cloudunit.exception.ServiceException;
 import fr.treeptik.cloudunit.factory.LogResourceFactory;
 import fr.treeptik.cloudunit.logs.GatheringStrategy;
+import fr.treeptik.cloudunit.logs.LogChunk;
+import fr.treeptik.cloudunit.logs.LogSearchQuery;
+import fr.treeptik.cloudunit.logs.LogStreamHub;
+import fr.treeptik.cloudunit.model.User;
+import fr.treeptik.cloudunit.service.ApplicationService;
 import fr.treeptik.cloudunit.service.FileService;
+import fr.treeptik.cloudunit.service.LogArchiveService;
+import fr.treeptik.cloudunit.service.LogIndexService;
+import fr.treeptik.cloudunit.utils.AuthentificationUtils;
 
 /**
  * Created by nicolas on 25/08/2014.
@@ -53,6 +70,21 @@ public class LogController {
     @Autowired
     private FileService fileService;
 
+    @Autowired
+    private LogStreamHub logStreamHub;
+
+    @Autowired
+    private LogIndexService logIndexService;
+
+    @Autowired
+    private LogArchiveService logArchiveService;
+
+    @Autowired
+    private ApplicationService applicationService;
+
+    @Autowired
+    private AuthentificationUtils authentificationUtils;
+
 	/**
 	 * Returns the n-last lines for an application / container
 	 *
@@ -85,6 +117,142 @@ public class LogController {
         return ResponseEntity.status(HttpStatus.OK).body(logResources);
 	}
 
+	/**
+	 * Returns the lines written since the cursor of the previous call, or the n-last lines
+	 * without cursor. The response carries the cursor to use for the next call.
+	 *
+	 * @param applicationName
+	 * @param container
+	 * @param source
+	 * @param cursor
+	 * @param nbRows
+	 * @return
+	 * @throws ServiceException
+	 * @throws CheckException
+	 */
+	@RequestMapping(value = "/{applicationName}/container/{container}/source/{source}/since", method = RequestMethod.GET)
+	public @ResponseBody ResponseEntity<LogChunkResource> findSinceCursor(
+			@PathVariable String applicationName, @PathVariable String container,
+			@PathVariable String source, @RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "100") Integer rows)
+			throws ServiceException, CheckException {
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("applicationName:" + applicationName);
+			logger.debug("source:" + source);
+			logger.debug("containerId:" + container);
+			logger.debug("cursor:" + cursor);
+		}
+
+		GatheringStrategy gatheringStrategy =
+				gatheringStrategies.getOrDefault(source, gatheringStrategies.get("tail"));
+
+		LogChunk chunk = gatheringStrategy.gatherSince(container, source, cursor, rows);
+		List<LogResource> logResources = LogResourceFactory.fromOutput(chunk.getLogs());
+		return ResponseEntity.status(HttpStatus.OK).body(new LogChunkResource(logResources, chunk.getNextCursor()));
+	}
+
+	/**
+	 * Push the new lines of a log source as server-sent events, batched in "logs" events.
+	 * A "dropped" event tells how many lines were lost when the client did not read fast enough.
+	 *
+	 * @param applicationName
+	 * @param container
+	 * @param source
+	 * @return
+	 * @throws ServiceException
+	 * @throws CheckException
+	 */
+	@RequestMapping(value = "/{applicationName}/container/{container}/source/{source}/stream",
+			method = RequestMethod.GET, produces = "text/event-stream")
+	public SseEmitter streamByApplication(@PathVariable String applicationName, @PathVariable String container,
+			@PathVariable String source) throws ServiceException, CheckException {
+		if (logger.isDebugEnabled()) {
+			logger.debug("applicationName:" + applicationName);
+			logger.debug("source:" + source);
+			logger.debug("containerId:" + container);
+		}
+		return logStreamHub.subscribe(container, source);
+	}
+
+	/**
+	 * Search the logs collected for an application, most recent first.
+	 * All the words of the query must be found in a line.
+	 *
+	 * @param applicationName
+	 * @param q       words to find
+	 * @param container
+	 * @param source
+	 * @param from    oldest time in milliseconds
+	 * @param to      newest time in milliseconds, excluded
+	 * @param limit
+	 * @return
+	 * @throws ServiceException
+	 * @throws CheckException
+	 */
+	@RequestMapping(value = "/{applicationName}/search", method = RequestMethod.GET)
+	public @ResponseBody ResponseEntity<List<LogSearchResult>> search(@PathVariable String applicationName,
+			@RequestParam(required = false) String q, @RequestParam(required = false) String container,
+			@RequestParam(required = false) String source, @RequestParam(required = false) Long from,
+			@RequestParam(required = false) Long to, @RequestParam(defaultValue = "100") Integer limit)
+			throws ServiceException, CheckException {
+		if (logger.isDebugEnabled()) {
+			logger.debug("applicationName:" + applicationName);
+			logger.debug("q:" + q);
+		}
+		checkApplication(applicationName);
+		LogSearchQuery query = new LogSearchQuery(q, container, source, from, to);
+		List<LogSearchResult> results = logIndexService.search(applicationName, query, Math.min(limit, 1000));
+		return ResponseEntity.status(HttpStatus.OK).body(results);
+	}
+
+	/**
+	 * List the archived log segments of an application, most recent first
+	 */
+	@RequestMapping(value = "/{applicationName}/archives", method = RequestMethod.GET)
+	public @ResponseBody ResponseEntity<List<LogArchiveUnit>> listArchives(@PathVariable String applicationName,
+			@RequestParam(required = false) String container, @RequestParam(required = false) String source,
+			@RequestParam(required = false) Long from, @RequestParam(required = false) Long to)
+			throws ServiceException, CheckException {
+		checkApplication(applicationName);
+		LogSearchQuery query = new LogSearchQuery(null, container, source, from, to);
+		return ResponseEntity.status(HttpStatus.OK).body(logArchiveService.listArchives(applicationName, query));
+	}
+
+	/**
+	 * Download the archived logs of a time range as a single gzip file
+	 */
+	@RequestMapping(value = "/{applicationName}/archives/download", method = RequestMethod.GET)
+	public void downloadArchives(@PathVariable String applicationName,
+			@RequestParam(required = false) String container, @RequestParam(required = false) String source,
+			@RequestParam(required = false) Long from, @RequestParam(required = false) Long to,
+			HttpServletResponse response) throws ServiceException, CheckException {
+		checkApplication(applicationName);
+		LogSearchQuery query = new LogSearchQuery(null, container, source, from, to);
+		response.setContentType("application/x-gzip");
+		response.setHeader("Content-Disposition", String.format("attachment; filename=%s-logs.gz", applicationName));
+		try (OutputStream stream = response.getOutputStream()) {
+			logArchiveService.download(applicationName, query, stream);
+		} catch (IOException e) {
+			logger.error(applicationName, e);
+		}
+	}
+
+	/**
+	 * Search the archived logs of an application, most recent first
+	 */
+	@RequestMapping(value = "/{applicationName}/archives/search", method = RequestMethod.GET)
+	public @ResponseBody ResponseEntity<List<LogSearchResult>> searchArchives(@PathVariable String applicationName,
+			@RequestParam(required = false) String q, @RequestParam(required = false) String container,
+			@RequestParam(required = false) String source, @RequestParam(required = false) Long from,
+			@RequestParam(required = false) Long to, @RequestParam(defaultValue = "100") Integer limit)
+			throws ServiceException, CheckException {
+		checkApplication(applicationName);
+		LogSearchQuery query = new LogSearchQuery(q, container, source, from, to);
+		List<LogSearchResult> results = logArchiveService.search(applicationName, query, Math.min(limit, 1000));
+		return ResponseEntity.status(HttpStatus.OK).body(results);
+	}
+
 	/**
 	 * Return the list of possible list files
 	 */
@@ -104,4 +272,11 @@ public class LogController {
         return ResponseEntity.status(HttpStatus.OK).body(sources);
 	}
 
+	private void checkApplication(String applicationName) throws ServiceException, CheckException {
+		User user = authentificationUtils.getAuthentificatedUser();
+		if (applicationService.findByNameAndUser(user, applicationName) == null) {
+			throw new CheckException("Unknown application : " + applicationName);
+		}
+	}
+
 }
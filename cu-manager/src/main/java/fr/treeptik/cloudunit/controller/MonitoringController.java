@@ -15,26 +15,42 @@
 
 package fr.treeptik.cloudunit.controller;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.http.pool.PoolStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.codahale.metrics.MetricRegistry;
+
+import fr.treeptik.cloudunit.dto.MetricPointResource;
 import fr.treeptik.cloudunit.exception.CheckException;
 import fr.treeptik.cloudunit.exception.ServiceException;
+import fr.treeptik.cloudunit.model.Application;
 import fr.treeptik.cloudunit.model.Metric;
+import fr.treeptik.cloudunit.model.User;
+import fr.treeptik.cloudunit.monitoring.ContainerStats;
+import fr.treeptik.cloudunit.monitoring.PrometheusWriter;
+import fr.treeptik.cloudunit.service.ApplicationService;
 import fr.treeptik.cloudunit.service.DockerService;
+import fr.treeptik.cloudunit.service.MetricHistoryService;
 import fr.treeptik.cloudunit.service.MonitoringService;
+import fr.treeptik.cloudunit.utils.AuthentificationUtils;
 
 /**
  * Created by nicolas on 25/08/2014.
@@ -51,6 +67,18 @@ public class MonitoringController {
 	@Inject
 	private DockerService dockerService;
 
+	@Inject
+	private MetricHistoryService metricHistoryService;
+
+	@Inject
+	private ApplicationService applicationService;
+
+	@Inject
+	private AuthentificationUtils authentificationUtils;
+
+	@Inject
+	private MetricRegistry metricRegistry;
+
 	/**
 	 * Is a wrapper to cAdvisor API
 	 *
@@ -97,11 +125,111 @@ public class MonitoringController {
 		}
 	}
 
+	/**
+	 * Samples of the server and the modules of an application in one object keyed by container name
+	 *
+	 * @param applicationName
+	 * @param samples number of samples per container, the most recent ones
+	 * @param fields among spec, cpu, memory, network and filesystem, all by default
+	 * @throws ServiceException
+	 * @throws CheckException
+	 */
+	@RequestMapping(value = "/api/applications/{applicationName}/containers", method = RequestMethod.GET)
+	public void infoApplicationContainers(HttpServletResponse response, @PathVariable String applicationName,
+			@RequestParam(defaultValue = "60") int samples,
+			@RequestParam(required = false) Set<String> fields) throws ServiceException, CheckException {
+		User user = authentificationUtils.getAuthentificatedUser();
+		Application application = applicationService.findByNameAndUser(user, applicationName);
+		if (application == null) {
+			throw new CheckException("Unknown application : " + applicationName);
+		}
+		List<String> containerNames = new ArrayList<>();
+		containerNames.add(application.getServer().getName());
+		application.getModules().forEach(m -> containerNames.add(m.getName()));
+		writeContainers(response, containerNames, samples, fields);
+	}
+
+	/**
+	 * Samples of several containers in one object keyed by container name
+	 *
+	 * @param names
+	 * @param samples number of samples per container, the most recent ones
+	 * @param fields among spec, cpu, memory, network and filesystem, all by default
+	 * @throws CheckException
+	 */
+	@RequestMapping(value = "/api/containers", method = RequestMethod.GET)
+	public void infoContainers(HttpServletResponse response, @RequestParam List<String> names,
+			@RequestParam(defaultValue = "60") int samples,
+			@RequestParam(required = false) Set<String> fields) throws CheckException {
+		writeContainers(response, names, samples, fields);
+	}
+
+	private void writeContainers(HttpServletResponse response, List<String> containerNames, int samples,
+			Set<String> fields) throws CheckException {
+		if (fields == null || fields.isEmpty()) {
+			fields = ContainerStats.FIELDS;
+		} else if (!ContainerStats.FIELDS.containsAll(fields)) {
+			throw new CheckException("Unknown fields : " + fields + ", expected some of " + ContainerStats.FIELDS);
+		}
+		if (samples < 1) {
+			throw new CheckException("At least one sample must be requested");
+		}
+		String responseFromCAdvisor = monitoringService.getJsonFromCAdvisor(containerNames, samples, fields);
+		try {
+			response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+			response.getWriter().write(responseFromCAdvisor);
+			response.flushBuffer();
+		} catch (Exception e) {
+			logger.error("error during write and flush response for {}", containerNames, e);
+		}
+	}
+
 	@RequestMapping(value = "/metrics/{serverName}")
 	public List<Metric> findAllByServer(@PathVariable("serverName") String serverName) {
 		return monitoringService.findByServer(serverName);
 	}
 
+	/**
+	 * History of a metric of a container, with its min, max, average and 95th percentile
+	 * at each step. The step grows with the range : 10 s, 1 min or 1 h.
+	 *
+	 * @param containerName
+	 * @param metric cpu (millicores), memory, working_set, network_rx, network_tx (bytes/s) or filesystem
+	 * @param from in milliseconds, one hour before the end by default
+	 * @param to in milliseconds, now by default
+	 * @return
+	 * @throws ServiceException
+	 * @throws CheckException
+	 */
+	@RequestMapping(value = "/history/{containerName}", method = RequestMethod.GET)
+	public List<MetricPointResource> findHistory(@PathVariable String containerName,
+			@RequestParam(defaultValue = "cpu") String metric,
+			@RequestParam(required = false) Long from,
+			@RequestParam(required = false) Long to) throws ServiceException, CheckException {
+		return metricHistoryService.findHistory(containerName, metric, from, to);
+	}
+
+	/**
+	 * Statistics of the connection pool used to reach the Docker daemon.
+	 * A non zero pending count means that the pool is saturated.
+	 *
+	 * @return
+	 */
+	@RequestMapping(value = "/docker/pool", method = RequestMethod.GET)
+	public PoolStats dockerConnectionPool() {
+		return monitoringService.getDockerConnectionPoolStats();
+	}
+
+	/**
+	 * Metrics of the manager in the Prometheus text format : latency of the docker calls
+	 * and execs, async executor, database pool, caches and JVM
+	 */
+	@RequestMapping(value = "/prometheus", method = RequestMethod.GET)
+	public void prometheus(HttpServletResponse response) throws IOException {
+		response.setContentType(PrometheusWriter.CONTENT_TYPE);
+		new PrometheusWriter(response.getWriter()).write(metricRegistry.getMetrics());
+	}
+
 	/**
 	 * Return the position into the architecture of the service
 	 * @return
@@ -0,0 +1,13 @@
+package fr.treeptik.cloudunit.dto;
+
+import java.io.IOException;
+
+/**
+ * Receives the output of a command executed into a container, frame by frame, while it runs.
+ */
+@FunctionalInterface
+public interface ExecOutputHandler {
+
+    void onOutput(boolean stderr, String text) throws IOException;
+
+}
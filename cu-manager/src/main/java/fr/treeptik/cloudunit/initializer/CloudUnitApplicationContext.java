@@ -22,8 +22,12 @@ import com.spotify.docker.client.DockerCertificates;
 import com.spotify.docker.client.DockerClient;
 import fr.treeptik.cloudunit.config.EmailActiveCondition;
 import fr.treeptik.cloudunit.config.MattermostClient;
+import fr.treeptik.cloudunit.docker.core.ContainerCache;
 import fr.treeptik.cloudunit.docker.core.DockerCloudUnitClient;
+import fr.treeptik.cloudunit.docker.core.DockerDriver;
+import fr.treeptik.cloudunit.docker.core.SimpleAsyncDockerDriver;
 import fr.treeptik.cloudunit.docker.core.SimpleDockerDriver;
+import fr.treeptik.cloudunit.monitoring.ManagerMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -72,7 +76,7 @@ import java.util.Properties;
         "fr.treeptik.cloudunit.utils", "fr.treeptik.cloudunit.aspects",
         "fr.treeptik.cloudunit.manager", "fr.treeptik.cloudunit.manager.impl",
         "fr.treeptik.cloudunit.schedule", "fr.treeptik.cloudunit.schedule.tasks",
-        "fr.treeptik.cloudunit.logs"
+        "fr.treeptik.cloudunit.logs", "fr.treeptik.cloudunit.monitoring"
 })
 @PropertySource({"classpath:/application.properties"})
 @PropertySource({"classpath:/maven.properties"})
@@ -238,17 +242,34 @@ public class CloudUnitApplicationContext
         return new MattermostClient();
     }
 
-    @Bean
+    @Bean(destroyMethod = "close")
     public DockerCloudUnitClient dockerCloudUnitClient(@Value("${docker.endpoint.mode}") String endpoint,
                                                        @Value("${docker.socket.location}") String dockerSocketLocation,
-                                                       @Value("${docker.certs.dir.path:}") String certPathDirectory) {
+                                                       @Value("${docker.certs.dir.path:}") String certPathDirectory,
+                                                       @Value("${docker.pool.max.total:50}") int maxTotalConnections,
+                                                       @Value("${docker.pool.max.per.route:20}") int maxConnectionsPerRoute,
+                                                       @Value("${docker.pool.idle.timeout:30}") int idleTimeoutSeconds,
+                                                       @Value("${docker.pool.keep.alive:60}") int keepAliveSeconds,
+                                                       @Value("${docker.async.threads:20}") int asyncThreads,
+                                                       @Value("${docker.async.queue:200}") int asyncQueue,
+                                                       @Value("${docker.cache.enabled:true}") boolean cacheEnabled,
+                                                       ManagerMetrics managerMetrics) {
         boolean useUnixSocket = endpoint.equalsIgnoreCase("unix");
         logger.info("Socket mode : " + (useUnixSocket ? "unix" : "tcp"));
         DockerCloudUnitClient dockerCloudUnitClient = new DockerCloudUnitClient();
         if (useUnixSocket) {
-            dockerCloudUnitClient.setDriver(new SimpleDockerDriver(true, endpoint, dockerSocketLocation, null));
+            dockerCloudUnitClient.setDriver(new SimpleDockerDriver(true, endpoint, dockerSocketLocation, null,
+                    maxTotalConnections, maxConnectionsPerRoute, idleTimeoutSeconds, keepAliveSeconds));
         } else {
-            dockerCloudUnitClient.setDriver(new SimpleDockerDriver(false,  endpoint, dockerSocketLocation, certPathDirectory));
+            dockerCloudUnitClient.setDriver(new SimpleDockerDriver(false,  endpoint, dockerSocketLocation, certPathDirectory,
+                    maxTotalConnections, maxConnectionsPerRoute, idleTimeoutSeconds, keepAliveSeconds));
+        }
+        dockerCloudUnitClient.setDriver(managerMetrics.timed(DockerDriver.class, dockerCloudUnitClient.getDriver(),
+                "cu_docker_request_seconds", "driver"));
+        dockerCloudUnitClient.setAsyncDriver(new SimpleAsyncDockerDriver(dockerCloudUnitClient.getDriver(), asyncThreads,
+                asyncQueue));
+        if (cacheEnabled) {
+            dockerCloudUnitClient.setContainerCache(new ContainerCache());
         }
         return dockerCloudUnitClient;
     }
@@ -256,7 +277,8 @@ public class CloudUnitApplicationContext
     @Bean
     public DockerClient dockerClient(@Value("${docker.endpoint.mode}") String endpoint,
                                      @Value("${docker.socket.location}") String dockerSocketLocation,
-                                     @Value("${docker.certs.dir.path}") String certPathDirectory) {
+                                     @Value("${docker.certs.dir.path}") String certPathDirectory,
+                                     ManagerMetrics managerMetrics) {
         com.spotify.docker.client.DockerClient dockerClient = null;
         boolean useUnixSocket = endpoint.equalsIgnoreCase("unix");
         boolean useTLS = endpoint.equalsIgnoreCase("https");
@@ -279,8 +301,9 @@ public class CloudUnitApplicationContext
             }
         } catch (Exception e) {
             logger.error("cannot instance docker client : ", e);
+            return null;
         }
-        return dockerClient;
+        return managerMetrics.timed(DockerClient.class, dockerClient, "cu_docker_request_seconds", "spotify");
     }
 
     @Bean
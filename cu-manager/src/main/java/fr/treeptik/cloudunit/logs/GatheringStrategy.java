@@ -2,9 +2,15 @@ package fr.treeptik.cloudunit.logs;
 
 import fr.treeptik.cloudunit.exception.ServiceException;
 
-/**
- * Created by nicolas on 20/09/2016.
- */
 public interface GatheringStrategy {
     public String gather(String container, String source, int maxRows) throws ServiceException;
+
+    /**
+     * Read only what was written since the cursor, or the last maxRows rows without cursor.
+     * Strategies unable to resume from a cursor return the last rows and no cursor.
+     */
+    public default LogChunk gatherSince(String container, String source, String cursor, int maxRows)
+            throws ServiceException {
+        return new LogChunk(gather(container, source, maxRows), null);
+    }
 }
@@ -0,0 +1,27 @@
+package fr.treeptik.cloudunit.logs;
+
+/**
+ * Logs read from a cursor, with the cursor to give back to read what follows
+ */
+public class LogChunk {
+
+    private final String logs;
+
+    private final String nextCursor;
+
+    public LogChunk(String logs, String nextCursor) {
+        this.logs = logs;
+        this.nextCursor = nextCursor;
+    }
+
+    public String getLogs() {
+        return logs;
+    }
+
+    /**
+     * @return the cursor for the next call, or null if the strategy does not support cursors
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,51 @@
+package fr.treeptik.cloudunit.logs;
+
+import fr.treeptik.cloudunit.exception.CheckException;
+
+/**
+ * Position in a log file : the inode identifies the file across rotations, the offset
+ * is the number of bytes already read. Clients only see it as an opaque string.
+ */
+public class LogCursor {
+
+    private final long inode;
+
+    private final long offset;
+
+    public LogCursor(long inode, long offset) {
+        this.inode = inode;
+        this.offset = offset;
+    }
+
+    public static LogCursor parse(String cursor) throws CheckException {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        String[] parts = cursor.split("\\.");
+        try {
+            if (parts.length == 2) {
+                long inode = Long.parseLong(parts[0], Character.MAX_RADIX);
+                long offset = Long.parseLong(parts[1], Character.MAX_RADIX);
+                if (inode >= 0 && offset >= 0) {
+                    return new LogCursor(inode, offset);
+                }
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new CheckException("Invalid log cursor : " + cursor);
+    }
+
+    public long getInode() {
+        return inode;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(inode, Character.MAX_RADIX) + "." + Long.toString(offset, Character.MAX_RADIX);
+    }
+}
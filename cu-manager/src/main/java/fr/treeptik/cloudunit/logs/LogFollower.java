@@ -0,0 +1,155 @@
+package fr.treeptik.cloudunit.logs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.treeptik.cloudunit.dto.ExecOutputHandler;
+import fr.treeptik.cloudunit.dto.LogResource;
+import fr.treeptik.cloudunit.factory.LogResourceFactory;
+
+/**
+ * Single follow-mode reader of a log source of a container, shared by all its subscribers.
+ * The last lines are kept so that a new subscriber does not start from an empty screen.
+ */
+public class LogFollower implements Runnable {
+
+    private static final long RETRY_DELAY_MILLIS = 5000;
+
+    /**
+     * Reads the source in follow mode, blocking until the source ends or the handler throws.
+     * Once the source is open, opened receives the handle which ends the reading when closed.
+     */
+    @FunctionalInterface
+    public interface Reader {
+        void follow(ExecOutputHandler handler, Consumer<Closeable> opened) throws Exception;
+    }
+
+    private Logger logger = LoggerFactory.getLogger(LogFollower.class);
+
+    private final String container;
+
+    private final String source;
+
+    private final Reader reader;
+
+    private final int historySize;
+
+    private final Deque<LogResource> history;
+
+    private final Set<LogSubscriber> subscribers = new CopyOnWriteArraySet<>();
+
+    private final StringBuilder partialLine = new StringBuilder();
+
+    private volatile boolean running = true;
+
+    private volatile Closeable handle;
+
+    public LogFollower(String container, String source, Reader reader, int historySize) {
+        this.container = container;
+        this.source = source;
+        this.reader = reader;
+        this.historySize = historySize;
+        this.history = new ArrayDeque<>(historySize);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                reader.follow(this::onOutput, this::opened);
+            } catch (Exception e) {
+                if (running) {
+                    logger.warn("[" + container + "] log stream of " + source + " interrupted : " + e.getMessage());
+                }
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop reading and close the source, releasing the reader at once
+     */
+    public void stop() {
+        running = false;
+        close(handle);
+    }
+
+    private void opened(Closeable handle) {
+        this.handle = handle;
+        if (!running) {
+            // stopped while the source was opening
+            close(handle);
+        }
+    }
+
+    private void close(Closeable handle) {
+        if (handle == null) {
+            return;
+        }
+        try {
+            handle.close();
+        } catch (Exception e) {
+            logger.warn("[" + container + "] cannot close the log stream of " + source + " : " + e.getMessage());
+        }
+    }
+
+    public void subscribe(LogSubscriber subscriber) {
+        synchronized (history) {
+            history.forEach(subscriber::offer);
+            subscribers.add(subscriber);
+        }
+    }
+
+    /**
+     * @return true if nobody is subscribed anymore
+     */
+    public boolean unsubscribe(LogSubscriber subscriber) {
+        subscribers.remove(subscriber);
+        return subscribers.isEmpty();
+    }
+
+    public Set<LogSubscriber> getSubscribers() {
+        return subscribers;
+    }
+
+    private void onOutput(boolean stderr, String text) throws IOException {
+        if (!running) {
+            throw new IOException("Log stream stopped");
+        }
+        int start = 0;
+        int end;
+        while ((end = text.indexOf('\n', start)) >= 0) {
+            partialLine.append(text, start, end);
+            publish(partialLine.toString());
+            partialLine.setLength(0);
+            start = end + 1;
+        }
+        partialLine.append(text, start, text.length());
+    }
+
+    private void publish(String line) {
+        LogResource logResource = LogResourceFactory.fromLine(source, line);
+        synchronized (history) {
+            if (history.size() == historySize) {
+                history.pollFirst();
+            }
+            history.addLast(logResource);
+            subscribers.forEach(s -> s.offer(logResource));
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package fr.treeptik.cloudunit.logs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import fr.treeptik.cloudunit.dto.LogSearchResult;
+
+/**
+ * One hour of the logs of an application. The lines are appended to a data file and an
+ * inverted index maps each term to the ordinals of the lines containing it, in order.
+ * <p>
+ * The index of the current hour lives in memory and is rebuilt from the data file after a
+ * restart. When the hour is over the partition is sealed : the index is written next to
+ * the data file and the partition becomes read-only.
+ * <p>
+ * The cursors of the sources, where their reading stopped, are saved with the lines so
+ * that the collection goes on from there after a restart.
+ */
+public class LogIndexPartition {
+
+    private static final String LINES_FILE = "lines.dat";
+
+    private static final String INDEX_FILE = "index.dat";
+
+    private static final String CURSORS_FILE = "cursors.properties";
+
+    // containers and sources are indexed as terms which can not come from a message
+    private static final String CONTAINER_PREFIX = "\u0000c:";
+
+    private static final String SOURCE_PREFIX = "\u0000s:";
+
+    private static final int MAX_MESSAGE_CHARS = 16 * 1024;
+
+    private static final int MIN_TERM_LENGTH = 2;
+
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    private long[] timestamps = new long[1024];
+
+    private long[] offsets = new long[1024];
+
+    private int count;
+
+    private long length;
+
+    private DataOutputStream out;
+
+    private boolean sealed;
+
+    private Map<String, String> cursors = new HashMap<>();
+
+    private boolean cursorsChanged;
+
+    private LogIndexPartition(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Open a sealed partition, or the partition still written, creating it if needed
+     */
+    public static LogIndexPartition open(File directory) throws IOException {
+        LogIndexPartition partition = new LogIndexPartition(directory);
+        partition.cursors = readCursors(directory);
+        if (new File(directory, INDEX_FILE).exists()) {
+            partition.readIndex();
+            partition.sealed = true;
+        } else {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            partition.rebuild();
+            partition.out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(new File(directory, LINES_FILE), true), BUFFER_SIZE));
+        }
+        return partition;
+    }
+
+    /**
+     * Split a text in lower case terms made of letters and digits
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder(MAX_TERM_LENGTH);
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.append(Character.toLowerCase(c));
+                }
+            } else if (term.length() > 0) {
+                if (term.length() >= MIN_TERM_LENGTH) {
+                    terms.add(term.toString());
+                }
+                term.setLength(0);
+            }
+        }
+        return terms;
+    }
+
+    public synchronized void append(long timestamp, String container, String source, String message)
+            throws IOException {
+        if (sealed) {
+            throw new IllegalStateException("Partition sealed : " + directory);
+        }
+        if (message.length() > MAX_MESSAGE_CHARS) {
+            message = message.substring(0, MAX_MESSAGE_CHARS);
+        }
+        // the time range search relies on sorted timestamps
+        if (count > 0 && timestamp < timestamps[count - 1]) {
+            timestamp = timestamps[count - 1];
+        }
+        long offset = length;
+        out.writeLong(timestamp);
+        length += 8;
+        length += writeString(out, container);
+        length += writeString(out, source);
+        length += writeString(out, message);
+        add(timestamp, offset, container, source, message);
+    }
+
+    /**
+     * Where the reading of a source stopped, saved on the next flush
+     */
+    public synchronized void putCursor(String container, String source, String cursor) {
+        if (!cursor.equals(cursors.put(container + "/" + source, cursor))) {
+            cursorsChanged = true;
+        }
+    }
+
+    /**
+     * Take over the cursors of the previous partition for the sources not read yet in this one
+     */
+    public synchronized void inheritCursors(Map<String, String> previous) {
+        previous.forEach((key, cursor) -> {
+            if (cursors.putIfAbsent(key, cursor) == null) {
+                cursorsChanged = true;
+            }
+        });
+    }
+
+    /**
+     * @return the cursors by "container/source"
+     */
+    public synchronized Map<String, String> getCursors() {
+        return new HashMap<>(cursors);
+    }
+
+    /**
+     * Write the lines, then the cursors : after a crash between both, the last lines are read again
+     */
+    public synchronized void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+        if (cursorsChanged) {
+            Properties properties = new Properties();
+            properties.putAll(cursors);
+            File tmp = new File(directory, CURSORS_FILE + ".tmp");
+            try (OutputStream cursorsOut = new FileOutputStream(tmp)) {
+                properties.store(cursorsOut, null);
+            }
+            Files.move(tmp.toPath(), new File(directory, CURSORS_FILE).toPath(), StandardCopyOption.ATOMIC_MOVE);
+            cursorsChanged = false;
+        }
+    }
+
+    /**
+     * @return the cursors saved in a partition directory, by "container/source"
+     */
+    public static Map<String, String> readCursors(File directory) throws IOException {
+        Map<String, String> cursors = new HashMap<>();
+        File file = new File(directory, CURSORS_FILE);
+        if (file.exists()) {
+            Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            }
+            properties.stringPropertyNames().forEach(key -> cursors.put(key, properties.getProperty(key)));
+        }
+        return cursors;
+    }
+
+    /**
+     * Write the index on disk and stop accepting lines
+     */
+    public synchronized void seal() throws IOException {
+        if (sealed) {
+            return;
+        }
+        out.close();
+        out = null;
+        File tmp = new File(directory, INDEX_FILE + ".tmp");
+        try (DataOutputStream index = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), BUFFER_SIZE))) {
+            writeVarLong(index, count);
+            for (int i = 0; i < count; i++) {
+                writeVarLong(index, i == 0 ? timestamps[0] : timestamps[i] - timestamps[i - 1]);
+                writeVarLong(index, i == 0 ? offsets[0] : offsets[i] - offsets[i - 1]);
+            }
+            writeVarLong(index, postings.size());
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                index.writeUTF(entry.getKey());
+                Postings values = entry.getValue();
+                writeVarLong(index, values.size);
+                for (int i = 0; i < values.size; i++) {
+                    writeVarLong(index, i == 0 ? values.values[0] : values.values[i] - values.values[i - 1]);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), new File(directory, INDEX_FILE).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        sealed = true;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public synchronized boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * @return the matching lines, most recent first
+     */
+    public synchronized List<LogSearchResult> search(LogSearchQuery query, int limit) throws IOException {
+        List<LogSearchResult> results = new ArrayList<>();
+        int first = lowerBound(query.getFrom());
+        int last = lowerBound(query.getTo()) - 1;
+        if (limit <= 0 || first > last) {
+            return results;
+        }
+        List<Postings> filters = new ArrayList<>();
+        if (query.getContainer() != null) {
+            filters.add(postings.get(CONTAINER_PREFIX + query.getContainer()));
+        }
+        if (query.getSource() != null) {
+            filters.add(postings.get(SOURCE_PREFIX + query.getSource()));
+        }
+        for (String term : query.getTerms()) {
+            filters.add(postings.get(term));
+        }
+        if (filters.contains(null)) {
+            return results;
+        }
+        // the rarest term drives the walk, the others are only probed
+        filters.sort(Comparator.comparingInt(p -> p.size));
+        flush();
+        try (RandomAccessFile lines = new RandomAccessFile(new File(directory, LINES_FILE), "r")) {
+            if (filters.isEmpty()) {
+                for (int ordinal = last; ordinal >= first && results.size() < limit; ordinal--) {
+                    results.add(read(lines, ordinal));
+                }
+                return results;
+            }
+            Postings driver = filters.get(0);
+            for (int i = driver.size - 1; i >= 0 && results.size() < limit; i--) {
+                int ordinal = driver.values[i];
+                if (ordinal > last) {
+                    continue;
+                }
+                if (ordinal < first) {
+                    break;
+                }
+                boolean match = true;
+                for (int f = 1; f < filters.size() && match; f++) {
+                    match = filters.get(f).contains(ordinal);
+                }
+                if (match) {
+                    results.add(read(lines, ordinal));
+                }
+            }
+        }
+        return results;
+    }
+
+    public long sizeOnDisk() {
+        long size = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private void add(long timestamp, long offset, String container, String source, String message) {
+        if (count == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        timestamps[count] = timestamp;
+        offsets[count] = offset;
+        posting(CONTAINER_PREFIX + container).add(count);
+        posting(SOURCE_PREFIX + source).add(count);
+        for (String term : tokenize(message)) {
+            posting(term).add(count);
+        }
+        count++;
+    }
+
+    private Postings posting(String term) {
+        Postings values = postings.get(term);
+        if (values == null) {
+            values = new Postings(4);
+            postings.put(term, values);
+        }
+        return values;
+    }
+
+    /**
+     * @return the first ordinal whose timestamp is not before the given time
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private LogSearchResult read(RandomAccessFile lines, int ordinal) throws IOException {
+        lines.seek(offsets[ordinal]);
+        long timestamp = lines.readLong();
+        String container = readString(lines);
+        String source = readString(lines);
+        String message = readString(lines);
+        return new LogSearchResult(timestamp, container, source, message);
+    }
+
+    /**
+     * Index again the lines of the data file, dropping a last record partially written
+     */
+    private void rebuild() throws IOException {
+        File file = new File(directory, LINES_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            while (true) {
+                long offset = length;
+                long timestamp;
+                String container;
+                String source;
+                String message;
+                try {
+                    timestamp = in.readLong();
+                    container = readString(in);
+                    source = readString(in);
+                    message = readString(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                length = offset + 8 + 12 + utf8Length(container) + utf8Length(source) + utf8Length(message);
+                add(timestamp, offset, container, source, message);
+            }
+        }
+        if (file.length() > length) {
+            try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+                truncated.setLength(length);
+            }
+        }
+    }
+
+    private void readIndex() throws IOException {
+        File file = new File(directory, INDEX_FILE);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            count = (int) readVarLong(in);
+            timestamps = new long[Math.max(count, 1)];
+            offsets = new long[Math.max(count, 1)];
+            for (int i = 0; i < count; i++) {
+                timestamps[i] = (i == 0 ? 0 : timestamps[i - 1]) + readVarLong(in);
+                offsets[i] = (i == 0 ? 0 : offsets[i - 1]) + readVarLong(in);
+            }
+            int terms = (int) readVarLong(in);
+            for (int t = 0; t < terms; t++) {
+                String term = in.readUTF();
+                int size = (int) readVarLong(in);
+                Postings values = new Postings(size);
+                for (int i = 0; i < size; i++) {
+                    values.add((i == 0 ? 0 : values.values[i - 1]) + (int) readVarLong(in));
+                }
+                postings.put(term, values);
+            }
+        }
+        length = new File(directory, LINES_FILE).length();
+    }
+
+    private static int writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return 4 + bytes.length;
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int size = in.readInt();
+        // a record cut by a crash is read as the end of the file
+        if (size < 0 || size > MAX_MESSAGE_CHARS * 4) {
+            throw new EOFException("Corrupted record");
+        }
+        byte[] bytes = new byte[size];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Growable sorted array of line ordinals
+     */
+    private static class Postings {
+
+        private int[] values;
+
+        private int size;
+
+        Postings(int capacity) {
+            values = new int[Math.max(capacity, 1)];
+        }
+
+        void add(int ordinal) {
+            // a term found twice in the same line is stored once
+            if (size > 0 && values[size - 1] == ordinal) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = ordinal;
+        }
+
+        boolean contains(int ordinal) {
+            return Arrays.binarySearch(values, 0, size, ordinal) >= 0;
+        }
+    }
+}
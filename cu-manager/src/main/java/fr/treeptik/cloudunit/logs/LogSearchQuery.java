@@ -0,0 +1,54 @@
+package fr.treeptik.cloudunit.logs;
+
+import java.util.List;
+
+/**
+ * Filters of a search in the log index. Null filters match everything,
+ * all the terms must be found in a line for it to match.
+ */
+public class LogSearchQuery {
+
+    private final List<String> terms;
+
+    private final String container;
+
+    private final String source;
+
+    private final long from;
+
+    private final long to;
+
+    public LogSearchQuery(String text, String container, String source, Long from, Long to) {
+        this.terms = LogIndexPartition.tokenize(text == null ? "" : text);
+        this.container = container;
+        this.source = source;
+        this.from = from == null ? 0 : from;
+        this.to = to == null ? Long.MAX_VALUE : to;
+    }
+
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    public String getContainer() {
+        return container;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return the lower bound of the time range in milliseconds, inclusive
+     */
+    public long getFrom() {
+        return from;
+    }
+
+    /**
+     * @return the upper bound of the time range in milliseconds, exclusive
+     */
+    public long getTo() {
+        return to;
+    }
+}
@@ -0,0 +1,177 @@
+package fr.treeptik.cloudunit.logs;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import fr.treeptik.cloudunit.exception.CheckException;
+import fr.treeptik.cloudunit.exception.ServiceException;
+import fr.treeptik.cloudunit.service.DockerService;
+import fr.treeptik.cloudunit.service.FileService;
+
+/**
+ * Pushes the logs of the containers to their viewers. There is one reader per
+ * (container, source) whatever the number of viewers, it is stopped with its last viewer.
+ */
+@Component
+public class LogStreamHub {
+
+    private static final Pattern SOURCE_PATTERN = Pattern.compile("[\\w.\\-]+");
+
+    private Logger logger = LoggerFactory.getLogger(LogStreamHub.class);
+
+    @Inject
+    private DockerService dockerService;
+
+    @Inject
+    private FileService fileService;
+
+    /**
+     * Lines kept for a viewer not reading fast enough
+     */
+    @Value("${logs.stream.buffer.lines:1000}")
+    private int bufferLines;
+
+    /**
+     * Lines sent to a new viewer of an already followed source
+     */
+    @Value("${logs.stream.history.lines:100}")
+    private int historyLines;
+
+    @Value("${logs.stream.max.followers:200}")
+    private int maxFollowers;
+
+    @Value("${logs.stream.flush.millis:250}")
+    private long flushMillis;
+
+    @Value("${logs.stream.timeout.millis:3600000}")
+    private long timeoutMillis;
+
+    private final Map<String, LogFollower> followers = new ConcurrentHashMap<>();
+
+    private ExecutorService followerExecutor;
+
+    private ScheduledExecutorService flushExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        followerExecutor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "log-follower-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "log-stream-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushAll, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        followers.values().forEach(LogFollower::stop);
+        flushExecutor.shutdownNow();
+        followerExecutor.shutdownNow();
+    }
+
+    public SseEmitter subscribe(String container, String source) throws ServiceException, CheckException {
+        if (!SOURCE_PATTERN.matcher(source).matches()) {
+            throw new CheckException("Invalid log source : " + source);
+        }
+        String key = container + "/" + source;
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        LogSubscriber subscriber = new LogSubscriber(emitter, bufferLines);
+        LogFollower follower = attach(key, container, source, subscriber, null);
+        if (follower == null) {
+            // the log directory is read from the container, not while holding the streams of all the containers
+            follower = attach(key, container, source, subscriber, reader(container, source));
+        }
+        final LogFollower followed = follower;
+        emitter.onCompletion(() -> unsubscribe(key, followed, subscriber));
+        emitter.onTimeout(() -> unsubscribe(key, followed, subscriber));
+        return emitter;
+    }
+
+    /**
+     * Subscribe to the follower of the source, started with the reader if there is none yet
+     *
+     * @return null if the source is not followed and there is no reader to follow it
+     */
+    private synchronized LogFollower attach(String key, String container, String source, LogSubscriber subscriber,
+                                            LogFollower.Reader reader) throws CheckException {
+        LogFollower follower = followers.get(key);
+        if (follower == null) {
+            if (reader == null) {
+                return null;
+            }
+            if (followers.size() >= maxFollowers) {
+                throw new CheckException("Too many log streams are open, try again later");
+            }
+            follower = new LogFollower(container, source, reader, historyLines);
+            followers.put(key, follower);
+            followerExecutor.execute(follower);
+            logger.info("[" + container + "] following " + source);
+        }
+        follower.subscribe(subscriber);
+        return follower;
+    }
+
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    private synchronized void unsubscribe(String key, LogFollower follower, LogSubscriber subscriber) {
+        subscriber.close();
+        if (follower.unsubscribe(subscriber) && followers.remove(key, follower)) {
+            // stopping kills the reading in the container, not to be waited for here
+            followerExecutor.execute(follower::stop);
+            logger.info("Stop following " + key);
+        }
+    }
+
+    private void flushAll() {
+        try {
+            followers.forEach((key, follower) -> follower.getSubscribers().forEach(subscriber -> {
+                if (!subscriber.flush()) {
+                    unsubscribe(key, follower, subscriber);
+                    subscriber.getEmitter().complete();
+                }
+            }));
+        } catch (Exception e) {
+            logger.error("Error while sending the logs", e);
+        }
+    }
+
+    private LogFollower.Reader reader(String container, String source) throws ServiceException {
+        if ("stdout".equals(source)) {
+            return (handler, opened) -> dockerService.followLogs(container, 0, handler, opened);
+        }
+        String logDir = fileService.getLogDirectory(container);
+        if (logDir == null) {
+            throw new ServiceException("No log directory for " + container);
+        }
+        if (!logDir.endsWith("/")) {
+            logDir = logDir + "/";
+        }
+        // -F survives the rotation of the file
+        String command = "tail -n 0 -F " + logDir + source;
+        return (handler, opened) -> dockerService.followCommand(container, command, handler, opened);
+    }
+}
@@ -0,0 +1,80 @@
+package fr.treeptik.cloudunit.logs;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import fr.treeptik.cloudunit.dto.LogResource;
+
+/**
+ * A client of a log stream. Lines are queued in a bounded ring buffer and sent by batches,
+ * a slow client loses its oldest lines instead of slowing down the reader.
+ */
+public class LogSubscriber {
+
+    private final SseEmitter emitter;
+
+    private final int capacity;
+
+    private final Deque<LogResource> buffer;
+
+    private long dropped;
+
+    private volatile boolean closed;
+
+    public LogSubscriber(SseEmitter emitter, int capacity) {
+        this.emitter = emitter;
+        this.capacity = capacity;
+        this.buffer = new ArrayDeque<>(Math.min(capacity, 256));
+    }
+
+    public synchronized void offer(LogResource line) {
+        if (buffer.size() == capacity) {
+            buffer.pollFirst();
+            dropped++;
+        }
+        buffer.addLast(line);
+    }
+
+    /**
+     * Send the queued lines, preceded by a "dropped" event if some were lost
+     *
+     * @return false if the client is gone
+     */
+    public boolean flush() {
+        List<LogResource> lines;
+        long lost;
+        synchronized (this) {
+            if (buffer.isEmpty()) {
+                return !closed;
+            }
+            lines = new ArrayList<>(buffer);
+            buffer.clear();
+            lost = dropped;
+            dropped = 0;
+        }
+        try {
+            if (lost > 0) {
+                emitter.send(SseEmitter.event().name("dropped").data(lost));
+            }
+            emitter.send(SseEmitter.event().name("logs").data(lines, MediaType.APPLICATION_JSON));
+            return !closed;
+        } catch (IOException | IllegalStateException e) {
+            closed = true;
+            return false;
+        }
+    }
+
+    public void close() {
+        closed = true;
+    }
+
+    public SseEmitter getEmitter() {
+        return emitter;
+    }
+}
@@ -1,11 +1,17 @@
 package fr.treeptik.cloudunit.logs;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.inject.Inject;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import fr.treeptik.cloudunit.exception.CheckException;
 import fr.treeptik.cloudunit.exception.ServiceException;
 import fr.treeptik.cloudunit.service.DockerService;
 
@@ -24,10 +30,205 @@ public class StdoutStrategy implements GatheringStrategy {
     public String gather(String container, String source, int maxRows) throws ServiceException {
         String logs = "";
         try {
-            logs = dockerService.logs(container);
+            logs = dockerService.logs(container, maxRows, null, false);
         } catch (Exception e) {
             logger.error(container + "," + source, e);
         }
         return logs;
     }
+
+    /**
+     * The cursor is "second.count" in base 36 : the second of the last line read and how
+     * many lines of that second were read. Docker only filters by whole seconds, so the
+     * lines of that second are asked again and the ones already read are skipped.
+     * From a cursor the lines are read forward, at most maxRows of them per call.
+     */
+    @Override
+    public LogChunk gatherSince(String container, String source, String cursor, int maxRows)
+            throws ServiceException {
+        long second = -1;
+        int seen = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] parts = cursor.split("\\.");
+            try {
+                second = Long.parseLong(parts[0], Character.MAX_RADIX);
+                seen = Integer.parseInt(parts[1], Character.MAX_RADIX);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new CheckException("Invalid log cursor : " + cursor);
+            }
+        }
+        StringBuilder logs = new StringBuilder();
+        long lastSecond;
+        int lastCount;
+        if (second < 0) {
+            List<Line> lines;
+            try {
+                lines = parse(dockerService.logs(container, maxRows, null, true));
+            } catch (Exception e) {
+                logger.error(container + "," + source + "," + cursor, e);
+                return new LogChunk("", cursor);
+            }
+            lines.forEach(line -> logs.append(line.text).append('\n'));
+            if (lines.isEmpty()) {
+                // nothing logged yet : the next call starts from now
+                lastSecond = Instant.now().getEpochSecond();
+                lastCount = 0;
+            } else {
+                Line last = lines.get(lines.size() - 1);
+                lastSecond = last.second;
+                lastCount = countUntil(container, last, lines);
+            }
+        } else {
+            // no tail from a cursor : it would keep the newest lines and drop the ones following the cursor,
+            // the lines are read one by one instead and the reading stops with the page
+            Page page = new Page(second, seen, maxRows, logs);
+            try {
+                dockerService.logLines(container, (int) second, page::add);
+            } catch (Exception e) {
+                logger.error(container + "," + source + "," + cursor, e);
+                return new LogChunk("", cursor);
+            }
+            lastSecond = page.lastSecond;
+            lastCount = page.lastCount;
+        }
+        String nextCursor = Long.toString(lastSecond, Character.MAX_RADIX) + "."
+                + Integer.toString(lastCount, Character.MAX_RADIX);
+        return new LogChunk(logs.toString(), nextCursor);
+    }
+
+    /**
+     * The tail may have started in the middle of the second of its last line : the lines of that
+     * second are counted from its start, up to the last line by its full precision timestamp.
+     * If they cannot be read, only the lines of the tail are counted.
+     */
+    private int countUntil(String container, Line last, List<Line> tail) {
+        int[] count = { 0 };
+        Instant[] previous = { Instant.ofEpochSecond(last.second) };
+        try {
+            dockerService.logLines(container, (int) last.second, raw -> {
+                Line line = toLine(raw, previous[0]);
+                previous[0] = line.time;
+                if (line.time.isAfter(last.time)) {
+                    return false;
+                }
+                if (line.second == last.second) {
+                    count[0]++;
+                }
+                return true;
+            });
+            return count[0];
+        } catch (Exception e) {
+            logger.error(container + "," + last.second, e);
+        }
+        return (int) tail.stream()
+                .filter(line -> line.second == last.second && !line.time.isAfter(last.time))
+                .count();
+    }
+
+    /**
+     * Split the output in lines, each starting with its timestamp
+     */
+    private List<Line> parse(String output) {
+        List<Line> lines = new ArrayList<>();
+        Instant previous = Instant.EPOCH;
+        int start = 0;
+        while (start < output.length()) {
+            int end = output.indexOf('\n', start);
+            if (end < 0) {
+                end = output.length();
+            }
+            Line line = toLine(output.substring(start, end), previous);
+            lines.add(line);
+            previous = line.time;
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    /**
+     * A line without timestamp takes the one of the line before it
+     */
+    private static Line toLine(String raw, Instant previous) {
+        int space = raw.indexOf(' ');
+        if (space < 0) {
+            space = raw.length();
+        }
+        Instant time;
+        try {
+            time = Instant.parse(raw.substring(0, space));
+        } catch (DateTimeParseException e) {
+            time = previous;
+        }
+        return new Line(time, raw.substring(Math.min(space + 1, raw.length())));
+    }
+
+    /**
+     * The lines following a cursor, up to maxRows
+     */
+    private static class Page {
+
+        private final long second;
+
+        private final int seen;
+
+        private final int maxRows;
+
+        private final StringBuilder logs;
+
+        private Instant previous;
+
+        private long currentSecond = -1;
+
+        private int currentCount;
+
+        private int rows;
+
+        private long lastSecond;
+
+        private int lastCount;
+
+        private Page(long second, int seen, int maxRows, StringBuilder logs) {
+            this.second = second;
+            this.seen = seen;
+            this.maxRows = maxRows;
+            this.logs = logs;
+            this.previous = Instant.ofEpochSecond(second);
+            this.lastSecond = second;
+            this.lastCount = seen;
+        }
+
+        /**
+         * @return false once the page is full
+         */
+        private boolean add(String raw) {
+            Line line = toLine(raw, previous);
+            previous = line.time;
+            currentCount = line.second == currentSecond ? currentCount + 1 : 1;
+            currentSecond = line.second;
+            if (line.second == second && currentCount <= seen) {
+                // read by the previous call
+                return true;
+            }
+            logs.append(line.text).append('\n');
+            rows++;
+            lastSecond = currentSecond;
+            lastCount = currentCount;
+            return rows < maxRows;
+        }
+    }
+
+    private static class Line {
+
+        private final Instant time;
+
+        private final long second;
+
+        private final String text;
+
+        private Line(Instant time, String text) {
+            this.time = time;
+            this.second = time.getEpochSecond();
+            this.text = text;
+        }
+    }
 }
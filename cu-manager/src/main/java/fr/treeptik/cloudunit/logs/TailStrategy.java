@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import fr.treeptik.cloudunit.exception.CheckException;
 import fr.treeptik.cloudunit.exception.ServiceException;
 import fr.treeptik.cloudunit.service.FileService;
 
@@ -30,4 +31,18 @@ public class TailStrategy implements GatheringStrategy {
         }
         return logs;
     }
+
+    @Override
+    public LogChunk gatherSince(String container, String source, String cursor, int maxRows)
+            throws ServiceException {
+        try {
+            return fileService.tailFileSince(container, source, cursor, maxRows);
+        } catch (CheckException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error(container + "," + source + "," + cursor, e);
+        }
+        // the same cursor is given back so that the client retries from the same point
+        return new LogChunk("", cursor);
+    }
 }
@@ -0,0 +1,241 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Polls cAdvisor once per interval for all the CloudUnit containers, whatever the number
+ * of dashboards opened, and keeps the last samples of each container in memory.
+ */
+@Component
+public class CAdvisorSampler {
+
+    private Logger logger = LoggerFactory.getLogger(CAdvisorSampler.class);
+
+    // samples of the machine are only refreshed every so many polls
+    private static final int MACHINE_REFRESH_POLLS = 60;
+
+    // a container missing from that many polls is forgotten
+    private static final int EVICTION_POLLS = 12;
+
+    @Value("${cadvisor.url}")
+    private String cAdvisorURL;
+
+    @Value("${cadvisor.sample.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cadvisor.sample.millis:5000}")
+    private long sampleMillis;
+
+    @Value("${cadvisor.sample.capacity:120}")
+    private int capacity;
+
+    /**
+     * Only the containers with this label are sampled
+     */
+    @Value("${cadvisor.sample.label:traefik.backend}")
+    private String label;
+
+    @Value("${cadvisor.timeout.millis:5000}")
+    private int timeoutMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // by docker id
+    private final Map<String, ContainerStats> stats = new ConcurrentHashMap<>();
+
+    private final Map<String, SampleListener> listeners = new ConcurrentHashMap<>();
+
+    private CloseableHttpClient httpClient;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    private volatile String machine;
+
+    private int polls;
+
+    @PostConstruct
+    public void init() {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(8);
+        connectionManager.setDefaultMaxPerRoute(8);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeoutMillis)
+                .setConnectionRequestTimeout(timeoutMillis)
+                .setSocketTimeout(timeoutMillis)
+                .build();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        httpClient.close();
+    }
+
+    @Scheduled(fixedDelayString = "${cadvisor.sample.millis:5000}")
+    public void sample() {
+        if (!enabled) {
+            return;
+        }
+        if (polls++ % MACHINE_REFRESH_POLLS == 0) {
+            refreshMachine();
+        }
+        HttpPost request = new HttpPost(cAdvisorURL + "/api/v1.3/docker");
+        // only the last sample of each container, the previous ones were read by the previous polls
+        request.setEntity(new StringEntity("{\"num_stats\":1}", ContentType.APPLICATION_JSON));
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                logger.warn("cAdvisor answered " + response.getStatusLine());
+                EntityUtils.consume(response.getEntity());
+                return;
+            }
+            JsonNode containers;
+            try (InputStream content = response.getEntity().getContent()) {
+                containers = objectMapper.readTree(content);
+            }
+            for (JsonNode container : containers) {
+                if (!container.path("spec").path("labels").has(label)) {
+                    continue;
+                }
+                String id = container.path("id").asText();
+                ContainerStats containerStats = stats.computeIfAbsent(id,
+                        k -> new ContainerStats(id, name(container), capacity));
+                containerStats.setSpec(container.path("spec"));
+                for (JsonNode stat : container.path("stats")) {
+                    if (containerStats.add(stat)) {
+                        listeners.values().forEach(l -> l.onSample(containerStats, stat));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot sample cAdvisor at " + cAdvisorURL + " : " + e.getMessage());
+        }
+        long expired = System.currentTimeMillis() - EVICTION_POLLS * sampleMillis;
+        stats.values().removeIf(s -> s.getLastSeen() < expired);
+    }
+
+    /**
+     * @param containerId full or short docker id
+     * @return the samples of a container, null if it is not sampled
+     */
+    public ContainerStats getStats(String containerId) {
+        ContainerStats containerStats = stats.get(containerId);
+        // the ids stored by CloudUnit are the short ones
+        if (containerStats == null && containerId.length() >= 12) {
+            for (ContainerStats candidate : stats.values()) {
+                if (candidate.getId().startsWith(containerId)) {
+                    return candidate;
+                }
+            }
+        }
+        return containerStats;
+    }
+
+    /**
+     * @return the samples of a container, null if it is not sampled
+     */
+    public ContainerStats getStatsByName(String containerName) {
+        for (ContainerStats candidate : stats.values()) {
+            if (candidate.getName().equals(containerName)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    public Collection<ContainerStats> getAllStats() {
+        return stats.values();
+    }
+
+    /**
+     * @return the machine description, as given by cAdvisor
+     */
+    public String getMachine() {
+        if (machine == null) {
+            refreshMachine();
+        }
+        return machine == null ? "" : machine;
+    }
+
+    /**
+     * GET on the cAdvisor API through the pooled client
+     *
+     * @param path starting with /api
+     * @return the body, empty on error
+     */
+    public String get(String path) {
+        return execute(new HttpGet(cAdvisorURL + path));
+    }
+
+    public void addListener(String name, SampleListener listener) {
+        listeners.put(name, listener);
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    private void refreshMachine() {
+        String result = execute(new HttpGet(cAdvisorURL + "/api/v1.3/machine"));
+        if (!result.isEmpty()) {
+            machine = result;
+        }
+    }
+
+    private String execute(HttpUriRequest request) {
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            String result = EntityUtils.toString(response.getEntity());
+            if (logger.isDebugEnabled()) {
+                logger.debug(result);
+            }
+            return result;
+        } catch (IOException e) {
+            logger.error(request.getURI().toString(), e);
+            return "";
+        }
+    }
+
+    private static String name(JsonNode container) {
+        Iterator<JsonNode> aliases = container.path("aliases").elements();
+        return aliases.hasNext() ? aliases.next().asText() : container.path("name").asText();
+    }
+
+    /**
+     * Told of each new sample, from the sampling thread
+     */
+    public interface SampleListener {
+
+        void onSample(ContainerStats containerStats, JsonNode stat);
+    }
+}
@@ -0,0 +1,237 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Last samples of a container, in one primitive array per metric used as a ring buffer.
+ * The counters are kept cumulative as cAdvisor gives them, rates are computed by the readers.
+ */
+public class ContainerStats {
+
+    public static final Set<String> FIELDS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("spec", "cpu", "memory", "network", "filesystem")));
+
+    private final String id;
+
+    private final String name;
+
+    private final int capacity;
+
+    private final long[] timestamps;
+
+    private final long[] cpuTotal;
+
+    private final long[] cpuUser;
+
+    private final long[] cpuSystem;
+
+    // capacity * cores values, one row per sample
+    private long[] perCpu;
+
+    private int cores;
+
+    private final long[] memoryUsage;
+
+    private final long[] memoryWorkingSet;
+
+    private final long[] rxBytes;
+
+    private final long[] txBytes;
+
+    private final long[] rxErrors;
+
+    private final long[] txErrors;
+
+    private final long[] fsUsage;
+
+    private final long[] fsCapacity;
+
+    // next slot to write
+    private int next;
+
+    private int size;
+
+    private volatile JsonNode spec;
+
+    private volatile long lastSeen;
+
+    public ContainerStats(String id, String name, int capacity) {
+        this.id = id;
+        this.name = name;
+        this.capacity = capacity;
+        timestamps = new long[capacity];
+        cpuTotal = new long[capacity];
+        cpuUser = new long[capacity];
+        cpuSystem = new long[capacity];
+        perCpu = new long[0];
+        memoryUsage = new long[capacity];
+        memoryWorkingSet = new long[capacity];
+        rxBytes = new long[capacity];
+        txBytes = new long[capacity];
+        rxErrors = new long[capacity];
+        txErrors = new long[capacity];
+        fsUsage = new long[capacity];
+        fsCapacity = new long[capacity];
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public JsonNode getSpec() {
+        return spec;
+    }
+
+    public void setSpec(JsonNode spec) {
+        this.spec = spec;
+        this.lastSeen = System.currentTimeMillis();
+    }
+
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Add a sample in the cAdvisor format, unless it is not more recent than the last one
+     *
+     * @return true if the sample was added
+     */
+    public synchronized boolean add(JsonNode stat) {
+        long timestamp = toMillis(stat.path("timestamp").asText());
+        if (timestamp <= 0 || (size > 0 && timestamp <= timestamps[previous(next)])) {
+            return false;
+        }
+        int slot = next;
+        timestamps[slot] = timestamp;
+        JsonNode usage = stat.path("cpu").path("usage");
+        cpuTotal[slot] = usage.path("total").asLong();
+        cpuUser[slot] = usage.path("user").asLong();
+        cpuSystem[slot] = usage.path("system").asLong();
+        JsonNode perCpuUsage = usage.path("per_cpu_usage");
+        if (perCpuUsage.size() != cores) {
+            // the cores changed : the previous rows can not be compared anymore
+            cores = perCpuUsage.size();
+            perCpu = new long[capacity * cores];
+        }
+        for (int core = 0; core < cores; core++) {
+            perCpu[slot * cores + core] = perCpuUsage.get(core).asLong();
+        }
+        JsonNode memory = stat.path("memory");
+        memoryUsage[slot] = memory.path("usage").asLong();
+        memoryWorkingSet[slot] = memory.path("working_set").asLong();
+        JsonNode network = stat.path("network");
+        rxBytes[slot] = network.path("rx_bytes").asLong();
+        txBytes[slot] = network.path("tx_bytes").asLong();
+        rxErrors[slot] = network.path("rx_errors").asLong();
+        txErrors[slot] = network.path("tx_errors").asLong();
+        long fsUsed = 0;
+        long fsTotal = 0;
+        for (JsonNode filesystem : stat.path("filesystem")) {
+            fsUsed += filesystem.path("usage").asLong();
+            fsTotal += filesystem.path("capacity").asLong();
+        }
+        fsUsage[slot] = fsUsed;
+        fsCapacity[slot] = fsTotal;
+        next = (slot + 1) % capacity;
+        size = Math.min(size + 1, capacity);
+        return true;
+    }
+
+    /**
+     * Write the samples, oldest first, in the cAdvisor container format read by the dashboard
+     */
+    public void writeJson(JsonGenerator generator, int maxSamples) throws IOException {
+        writeJson(generator, maxSamples, FIELDS);
+    }
+
+    /**
+     * Write the samples, oldest first, in the cAdvisor container format with only the given
+     * fields among spec, cpu, memory, network and filesystem
+     */
+    public synchronized void writeJson(JsonGenerator generator, int maxSamples, Set<String> fields)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("id", id);
+        generator.writeStringField("name", name);
+        if (spec != null && fields.contains("spec")) {
+            generator.writeFieldName("spec");
+            generator.writeTree(spec);
+        }
+        generator.writeArrayFieldStart("stats");
+        int count = Math.min(size, maxSamples);
+        for (int i = count; i > 0; i--) {
+            int slot = (next - i + capacity) % capacity;
+            generator.writeStartObject();
+            generator.writeStringField("timestamp", Instant.ofEpochMilli(timestamps[slot]).toString());
+            if (fields.contains("cpu")) {
+                generator.writeObjectFieldStart("cpu");
+                generator.writeObjectFieldStart("usage");
+                generator.writeNumberField("total", cpuTotal[slot]);
+                generator.writeNumberField("user", cpuUser[slot]);
+                generator.writeNumberField("system", cpuSystem[slot]);
+                generator.writeArrayFieldStart("per_cpu_usage");
+                for (int core = 0; core < cores; core++) {
+                    generator.writeNumber(perCpu[slot * cores + core]);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            if (fields.contains("memory")) {
+                generator.writeObjectFieldStart("memory");
+                generator.writeNumberField("usage", memoryUsage[slot]);
+                generator.writeNumberField("working_set", memoryWorkingSet[slot]);
+                generator.writeEndObject();
+            }
+            if (fields.contains("network")) {
+                generator.writeObjectFieldStart("network");
+                generator.writeNumberField("rx_bytes", rxBytes[slot]);
+                generator.writeNumberField("tx_bytes", txBytes[slot]);
+                generator.writeNumberField("rx_errors", rxErrors[slot]);
+                generator.writeNumberField("tx_errors", txErrors[slot]);
+                generator.writeEndObject();
+            }
+            if (fields.contains("filesystem")) {
+                generator.writeArrayFieldStart("filesystem");
+                generator.writeStartObject();
+                generator.writeNumberField("usage", fsUsage[slot]);
+                generator.writeNumberField("capacity", fsCapacity[slot]);
+                generator.writeEndObject();
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private int previous(int slot) {
+        return (slot - 1 + capacity) % capacity;
+    }
+
+    static long toMillis(String timestamp) {
+        try {
+            // cAdvisor writes the offset of the host
+            return OffsetDateTime.parse(timestamp).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
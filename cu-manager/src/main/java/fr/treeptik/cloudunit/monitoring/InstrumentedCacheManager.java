@@ -0,0 +1,125 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import com.codahale.metrics.Counter;
+
+/**
+ * Counts the hits, misses and puts of the caches of a cache manager, per cache name
+ */
+public class InstrumentedCacheManager implements CacheManager {
+
+    private final CacheManager cacheManager;
+
+    private final ManagerMetrics managerMetrics;
+
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public InstrumentedCacheManager(CacheManager cacheManager, ManagerMetrics managerMetrics) {
+        this.cacheManager = cacheManager;
+        this.managerMetrics = managerMetrics;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache == null) {
+            Cache target = cacheManager.getCache(name);
+            if (target == null) {
+                return null;
+            }
+            cache = caches.computeIfAbsent(name, k -> new InstrumentedCache(target));
+        }
+        return cache;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return cacheManager.getCacheNames();
+    }
+
+    private class InstrumentedCache implements Cache {
+
+        private final Cache cache;
+
+        private final Counter hits;
+
+        private final Counter misses;
+
+        private final Counter puts;
+
+        private InstrumentedCache(Cache cache) {
+            this.cache = cache;
+            hits = managerMetrics.counter("cu_cache_requests_total", "cache", cache.getName(), "result", "hit");
+            misses = managerMetrics.counter("cu_cache_requests_total", "cache", cache.getName(), "result", "miss");
+            puts = managerMetrics.counter("cu_cache_puts_total", "cache", cache.getName());
+        }
+
+        @Override
+        public String getName() {
+            return cache.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return cache.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            return count(cache.get(key));
+        }
+
+        @Override
+        public <T> T get(Object key, Class<T> type) {
+            return count(cache.get(key, type));
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            boolean[] loaded = new boolean[1];
+            T value = cache.get(key, () -> {
+                loaded[0] = true;
+                return valueLoader.call();
+            });
+            (loaded[0] ? misses : hits).inc();
+            return value;
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            puts.inc();
+            cache.put(key, value);
+        }
+
+        @Override
+        public ValueWrapper putIfAbsent(Object key, Object value) {
+            ValueWrapper existing = cache.putIfAbsent(key, value);
+            if (existing == null) {
+                puts.inc();
+            }
+            return existing;
+        }
+
+        @Override
+        public void evict(Object key) {
+            cache.evict(key);
+        }
+
+        @Override
+        public void clear() {
+            cache.clear();
+        }
+
+        private <T> T count(T value) {
+            (value == null ? misses : hits).inc();
+            return value;
+        }
+    }
+}
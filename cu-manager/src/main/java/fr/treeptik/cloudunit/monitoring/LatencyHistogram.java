@@ -0,0 +1,59 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.codahale.metrics.Metric;
+
+/**
+ * Durations counted in fixed buckets, as a Prometheus histogram. Recording only increments
+ * two adders, so the threads recording never wait for each other.
+ */
+public class LatencyHistogram implements Metric {
+
+    // upper bounds in seconds
+    public static final double[] BUCKETS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5,
+            10, 30, 60 };
+
+    private static final long[] BUCKET_NANOS = new long[BUCKETS.length];
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            BUCKET_NANOS[i] = (long) (BUCKETS[i] * 1e9);
+        }
+    }
+
+    // the last one counts the durations above all the bounds
+    private final LongAdder[] counts = new LongAdder[BUCKETS.length + 1];
+
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BUCKET_NANOS.length && nanos > BUCKET_NANOS[bucket]) {
+            bucket++;
+        }
+        counts[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * @return the number of durations of each bucket, not cumulated, the last one being above all the bounds
+     */
+    public long[] getCounts() {
+        long[] values = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            values[i] = counts[i].sum();
+        }
+        return values;
+    }
+
+    public double getSumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+}
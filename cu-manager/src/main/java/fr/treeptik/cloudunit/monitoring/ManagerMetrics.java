@@ -0,0 +1,111 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+
+import org.springframework.stereotype.Component;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Instruments of the manager, registered in the metric registry under their Prometheus
+ * name with their labels, as name{label="value"}.
+ */
+@Component
+public class ManagerMetrics {
+
+    private static final LatencyHistogram NOT_TIMED = new LatencyHistogram();
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    // same metrics as the registry, without the copy made by MetricRegistry.getMetrics()
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * @param labels names and values, alternately
+     */
+    public LatencyHistogram latency(String name, String... labels) {
+        return (LatencyHistogram) metrics.computeIfAbsent(seriesName(name, labels),
+                k -> metricRegistry.register(k, new LatencyHistogram()));
+    }
+
+    /**
+     * @param labels names and values, alternately
+     */
+    public Counter counter(String name, String... labels) {
+        return (Counter) metrics.computeIfAbsent(seriesName(name, labels), k -> metricRegistry.counter(k));
+    }
+
+    /**
+     * @param labels names and values, alternately
+     */
+    public void gauge(String name, Supplier<Number> value, String... labels) {
+        metrics.computeIfAbsent(seriesName(name, labels), k -> metricRegistry.register(k, (Gauge<Number>) value::get));
+    }
+
+    /**
+     * Time the calls of a client : the methods declaring exceptions, which are the remote ones,
+     * each under its name as the endpoint label
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T timed(Class<T> type, T target, String name, String client) {
+        // the histogram of each method, NOT_TIMED for the local ones
+        Map<Method, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            LatencyHistogram histogram = histograms.computeIfAbsent(method,
+                    m -> m.getExceptionTypes().length > 0 && !m.getName().equals("close")
+                            ? latency(name, "client", client, "endpoint", m.getName())
+                            : NOT_TIMED);
+            long start = System.nanoTime();
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (histogram != NOT_TIMED) {
+                    histogram.record(System.nanoTime() - start);
+                }
+            }
+        });
+    }
+
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    private static String seriesName(String name, String... labels) {
+        if (labels.length == 0) {
+            return name;
+        }
+        StringBuilder builder = new StringBuilder(name).append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char character = value.charAt(c);
+                if (character == '\\' || character == '"') {
+                    builder.append('\\').append(character);
+                } else if (character == '\n') {
+                    builder.append("\\n");
+                } else {
+                    builder.append(character);
+                }
+            }
+            builder.append('"');
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,65 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import java.util.Arrays;
+
+/**
+ * Aggregation of the records of a step being filled. Min, max and average are exact ;
+ * the 95th percentile is taken over the 95th percentiles of the records aggregated,
+ * which is the measures themselves in the raw tier.
+ */
+public class MetricBucket {
+
+    private final long start;
+
+    private int count;
+
+    private int records;
+
+    private final float[] min = new float[MetricRecord.METRICS.length];
+
+    private final float[] max = new float[MetricRecord.METRICS.length];
+
+    private final double[] sum = new double[MetricRecord.METRICS.length];
+
+    // p95 of each record, one row per metric
+    private float[][] percentiles = new float[MetricRecord.METRICS.length][8];
+
+    public MetricBucket(long start) {
+        this.start = start;
+        Arrays.fill(min, Float.MAX_VALUE);
+        Arrays.fill(max, -Float.MAX_VALUE);
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public void add(MetricRecord record) {
+        if (records == percentiles[0].length) {
+            for (int i = 0; i < percentiles.length; i++) {
+                percentiles[i] = Arrays.copyOf(percentiles[i], records * 2);
+            }
+        }
+        for (int i = 0; i < MetricRecord.METRICS.length; i++) {
+            min[i] = Math.min(min[i], record.getMin(i));
+            max[i] = Math.max(max[i], record.getMax(i));
+            sum[i] += (double) record.getAvg(i) * record.getCount();
+            percentiles[i][records] = record.getP95(i);
+        }
+        count += record.getCount();
+        records++;
+    }
+
+    public MetricRecord toRecord() {
+        float[] avg = new float[MetricRecord.METRICS.length];
+        float[] p95 = new float[MetricRecord.METRICS.length];
+        for (int i = 0; i < MetricRecord.METRICS.length; i++) {
+            avg[i] = (float) (sum[i] / count);
+            float[] sorted = Arrays.copyOf(percentiles[i], records);
+            Arrays.sort(sorted);
+            // nearest rank
+            p95[i] = sorted[(int) Math.ceil(0.95 * records) - 1];
+        }
+        return new MetricRecord(start, count, min.clone(), max.clone(), avg, p95);
+    }
+}
@@ -0,0 +1,107 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One point of the metrics history : min, max, average and 95th percentile of each metric
+ * over a step. Written as a fixed size record so that a file is read without an index.
+ */
+public class MetricRecord {
+
+    public static final String[] METRICS = { "cpu", "memory", "working_set", "network_rx", "network_tx",
+            "filesystem" };
+
+    // timestamp, count, then min, max, avg, p95 of each metric
+    public static final int SIZE = Long.BYTES + Integer.BYTES + METRICS.length * 4 * Float.BYTES;
+
+    private final long timestamp;
+
+    private final int count;
+
+    private final float[] min;
+
+    private final float[] max;
+
+    private final float[] avg;
+
+    private final float[] p95;
+
+    public MetricRecord(long timestamp, int count, float[] min, float[] max, float[] avg, float[] p95) {
+        this.timestamp = timestamp;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.avg = avg;
+        this.p95 = p95;
+    }
+
+    /**
+     * A single measure, all its aggregations being the value itself
+     */
+    public static MetricRecord of(long timestamp, float[] values) {
+        return new MetricRecord(timestamp, 1, values, values, values, values);
+    }
+
+    public static int indexOf(String metric) {
+        for (int i = 0; i < METRICS.length; i++) {
+            if (METRICS[i].equals(metric)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the number of measures aggregated
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public float getMin(int metric) {
+        return min[metric];
+    }
+
+    public float getMax(int metric) {
+        return max[metric];
+    }
+
+    public float getAvg(int metric) {
+        return avg[metric];
+    }
+
+    public float getP95(int metric) {
+        return p95[metric];
+    }
+
+    public void write(ByteBuffer buffer) {
+        buffer.putLong(timestamp);
+        buffer.putInt(count);
+        for (int i = 0; i < METRICS.length; i++) {
+            buffer.putFloat(min[i]);
+            buffer.putFloat(max[i]);
+            buffer.putFloat(avg[i]);
+            buffer.putFloat(p95[i]);
+        }
+    }
+
+    public static MetricRecord read(ByteBuffer buffer) {
+        long timestamp = buffer.getLong();
+        int count = buffer.getInt();
+        float[] min = new float[METRICS.length];
+        float[] max = new float[METRICS.length];
+        float[] avg = new float[METRICS.length];
+        float[] p95 = new float[METRICS.length];
+        for (int i = 0; i < METRICS.length; i++) {
+            min[i] = buffer.getFloat();
+            max[i] = buffer.getFloat();
+            avg[i] = buffer.getFloat();
+            p95[i] = buffer.getFloat();
+        }
+        return new MetricRecord(timestamp, count, min, max, avg, p95);
+    }
+}
@@ -0,0 +1,223 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Metrics history of a container. Each tier has a directory of append-only files of fixed
+ * size records, named by the start of their period in milliseconds. The cumulative counters
+ * of cAdvisor are turned into rates : cpu in millicores, network in bytes per second.
+ */
+public class MetricSeries {
+
+    private final File directory;
+
+    private final MetricBucket[] buckets = new MetricBucket[MetricTier.values().length];
+
+    // start of the last bucket written, so that late or replayed records are dropped
+    private final long[] lastWritten = new long[MetricTier.values().length];
+
+    private long previousTimestamp;
+
+    private long previousCpu;
+
+    private long previousRx;
+
+    private long previousTx;
+
+    private MetricSeries(File directory) {
+        this.directory = directory;
+        Arrays.fill(lastWritten, Long.MIN_VALUE);
+    }
+
+    /**
+     * Open the history of a container, filling the buckets of the current steps again from
+     * the records of the finer tiers written before a restart
+     */
+    public static MetricSeries open(File directory, long now) throws IOException {
+        MetricSeries series = new MetricSeries(directory);
+        MetricTier[] tiers = MetricTier.values();
+        for (int t = 0; t < tiers.length; t++) {
+            List<MetricRecord> written = series.read(tiers[t], now - tiers[t].getFileMillis(), Long.MAX_VALUE);
+            if (!written.isEmpty()) {
+                series.lastWritten[t] = written.get(written.size() - 1).getTimestamp();
+            }
+        }
+        for (int t = 1; t < tiers.length; t++) {
+            long start = now - now % tiers[t].getStepMillis();
+            if (start <= series.lastWritten[t]) {
+                continue;
+            }
+            for (MetricRecord record : series.read(tiers[t - 1], start, Long.MAX_VALUE)) {
+                if (series.buckets[t] == null) {
+                    series.buckets[t] = new MetricBucket(start);
+                }
+                series.buckets[t].add(record);
+            }
+        }
+        return series;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Add a cAdvisor sample. The first one only gives the counters the rates start from.
+     */
+    public synchronized void add(JsonNode stat) throws IOException {
+        long timestamp = ContainerStats.toMillis(stat.path("timestamp").asText());
+        JsonNode network = stat.path("network");
+        long cpu = stat.path("cpu").path("usage").path("total").asLong();
+        long rx = network.path("rx_bytes").asLong();
+        long tx = network.path("tx_bytes").asLong();
+        long elapsed = timestamp - previousTimestamp;
+        boolean restarted = cpu < previousCpu || rx < previousRx || tx < previousTx;
+        if (previousTimestamp > 0 && elapsed > 0 && !restarted) {
+            long fsUsage = 0;
+            for (JsonNode filesystem : stat.path("filesystem")) {
+                fsUsage += filesystem.path("usage").asLong();
+            }
+            JsonNode memory = stat.path("memory");
+            float[] values = new float[MetricRecord.METRICS.length];
+            values[0] = (cpu - previousCpu) / (elapsed * 1000f);
+            values[1] = memory.path("usage").asLong();
+            values[2] = memory.path("working_set").asLong();
+            values[3] = (rx - previousRx) * 1000f / elapsed;
+            values[4] = (tx - previousTx) * 1000f / elapsed;
+            values[5] = fsUsage;
+            feed(0, MetricRecord.of(timestamp, values));
+        }
+        if (timestamp > previousTimestamp) {
+            previousTimestamp = timestamp;
+            previousCpu = cpu;
+            previousRx = rx;
+            previousTx = tx;
+        }
+    }
+
+    /**
+     * Write the buckets whose step is over, for the containers which stopped sending samples
+     */
+    public synchronized void closeIdle(long now) throws IOException {
+        MetricTier[] tiers = MetricTier.values();
+        for (int t = 0; t < tiers.length; t++) {
+            // a sample may come a little late
+            if (buckets[t] != null
+                    && buckets[t].getStart() + tiers[t].getStepMillis() + MetricTier.RAW.getStepMillis() <= now) {
+                close(t);
+            }
+        }
+    }
+
+    /**
+     * @return the records of a tier from the time, inclusive, to the time, exclusive, oldest first
+     */
+    public List<MetricRecord> read(MetricTier tier, long from, long to) throws IOException {
+        List<MetricRecord> records = new ArrayList<>();
+        for (File file : listFiles(tier)) {
+            long start = Long.parseLong(file.getName());
+            if (start >= to || start + tier.getFileMillis() <= from) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                // a record being appended is not read
+                long complete = channel.size() - channel.size() % MetricRecord.SIZE;
+                ByteBuffer buffer = ByteBuffer.allocate((int) complete);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                }
+                buffer.flip();
+                while (buffer.remaining() >= MetricRecord.SIZE) {
+                    MetricRecord record = MetricRecord.read(buffer);
+                    if (record.getTimestamp() >= from && record.getTimestamp() < to) {
+                        records.add(record);
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Delete the files past the retention of their tier
+     *
+     * @return true if the container has no history left
+     */
+    public synchronized boolean applyRetention(long now) {
+        boolean empty = true;
+        for (MetricTier tier : MetricTier.values()) {
+            for (File file : listFiles(tier)) {
+                if (Long.parseLong(file.getName()) + tier.getFileMillis() < now - tier.getRetentionMillis()) {
+                    file.delete();
+                } else {
+                    empty = false;
+                }
+            }
+        }
+        for (MetricBucket bucket : buckets) {
+            empty &= bucket == null;
+        }
+        return empty;
+    }
+
+    private void feed(int tier, MetricRecord record) throws IOException {
+        long step = MetricTier.values()[tier].getStepMillis();
+        long start = record.getTimestamp() - record.getTimestamp() % step;
+        if (start <= lastWritten[tier]) {
+            return;
+        }
+        if (buckets[tier] != null && buckets[tier].getStart() != start) {
+            close(tier);
+        }
+        if (buckets[tier] == null) {
+            buckets[tier] = new MetricBucket(start);
+        }
+        buckets[tier].add(record);
+    }
+
+    private void close(int tier) throws IOException {
+        MetricRecord record = buckets[tier].toRecord();
+        buckets[tier] = null;
+        append(MetricTier.values()[tier], record);
+        lastWritten[tier] = record.getTimestamp();
+        if (tier + 1 < buckets.length) {
+            feed(tier + 1, record);
+        }
+    }
+
+    private void append(MetricTier tier, MetricRecord record) throws IOException {
+        File tierDirectory = new File(directory, tier.getDirectoryName());
+        if (!tierDirectory.isDirectory() && !tierDirectory.mkdirs()) {
+            throw new IOException("Cannot create " + tierDirectory);
+        }
+        long fileStart = record.getTimestamp() - record.getTimestamp() % tier.getFileMillis();
+        ByteBuffer buffer = ByteBuffer.allocate(MetricRecord.SIZE);
+        record.write(buffer);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(new File(tierDirectory, Long.toString(fileStart)).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private List<File> listFiles(MetricTier tier) {
+        File[] files = new File(directory, tier.getDirectoryName()).listFiles(f -> f.getName().matches("\\d+"));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        List<File> sorted = new ArrayList<>(Arrays.asList(files));
+        sorted.sort(Comparator.comparing(f -> Long.parseLong(f.getName())));
+        return sorted;
+    }
+}
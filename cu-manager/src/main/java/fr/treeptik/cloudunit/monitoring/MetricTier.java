@@ -0,0 +1,56 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolutions of the metrics history, each one fed by the buckets closed in the previous one.
+ * The records of a tier are appended to one file per period.
+ */
+public enum MetricTier {
+
+    RAW(TimeUnit.SECONDS.toMillis(10), TimeUnit.DAYS.toMillis(1), TimeUnit.HOURS.toMillis(6)),
+
+    MINUTE(TimeUnit.MINUTES.toMillis(1), TimeUnit.DAYS.toMillis(30), TimeUnit.DAYS.toMillis(1)),
+
+    HOUR(TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(365), TimeUnit.DAYS.toMillis(30));
+
+    private final long stepMillis;
+
+    private final long retentionMillis;
+
+    private final long fileMillis;
+
+    MetricTier(long stepMillis, long retentionMillis, long fileMillis) {
+        this.stepMillis = stepMillis;
+        this.retentionMillis = retentionMillis;
+        this.fileMillis = fileMillis;
+    }
+
+    public long getStepMillis() {
+        return stepMillis;
+    }
+
+    public long getRetentionMillis() {
+        return retentionMillis;
+    }
+
+    public long getFileMillis() {
+        return fileMillis;
+    }
+
+    public String getDirectoryName() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * @return the finest tier still holding the time and drawing at most maxPoints over the range
+     */
+    public static MetricTier forRange(long from, long to, long now, int maxPoints) {
+        for (MetricTier tier : values()) {
+            if (from >= now - tier.retentionMillis && (to - from) / tier.stepMillis <= maxPoints) {
+                return tier;
+            }
+        }
+        return HOUR;
+    }
+}
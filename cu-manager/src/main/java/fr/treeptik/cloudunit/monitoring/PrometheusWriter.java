@@ -0,0 +1,137 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * Writes the metrics of a registry in the Prometheus text format. The names registered
+ * without labels, as the ones of the libraries, are made valid Prometheus names.
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = { 0.5, 0.75, 0.95, 0.99 };
+
+    private final Writer writer;
+
+    public PrometheusWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public void write(Map<String, Metric> metrics) throws IOException {
+        // the series of a metric must follow each other, under a single TYPE line
+        Map<String, List<Map.Entry<String, Metric>>> families = new LinkedHashMap<>();
+        for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+            int labels = entry.getKey().indexOf('{');
+            String name = sanitize(labels < 0 ? entry.getKey() : entry.getKey().substring(0, labels));
+            families.computeIfAbsent(name, k -> new ArrayList<>()).add(entry);
+        }
+        for (Map.Entry<String, List<Map.Entry<String, Metric>>> family : families.entrySet()) {
+            String name = family.getKey();
+            boolean typed = false;
+            for (Map.Entry<String, Metric> entry : family.getValue()) {
+                int start = entry.getKey().indexOf('{');
+                String labels = start < 0 ? "" : entry.getKey().substring(start + 1, entry.getKey().length() - 1);
+                Metric metric = entry.getValue();
+                Object gaugeValue = metric instanceof Gauge ? ((Gauge<?>) metric).getValue() : null;
+                if (metric instanceof Gauge && !(gaugeValue instanceof Number)) {
+                    continue;
+                }
+                if (!typed) {
+                    writer.append("# TYPE ").append(name).append(' ').append(type(metric)).append('\n');
+                    typed = true;
+                }
+                if (metric instanceof LatencyHistogram) {
+                    writeHistogram(name, labels, (LatencyHistogram) metric);
+                } else if (metric instanceof Gauge) {
+                    writeSample(name, labels, ((Number) gaugeValue).doubleValue());
+                } else if (metric instanceof Counter) {
+                    writeSample(name, labels, ((Counter) metric).getCount());
+                } else if (metric instanceof Meter) {
+                    writeSample(name, labels, ((Meter) metric).getCount());
+                } else if (metric instanceof Timer) {
+                    // in seconds, as the histograms
+                    writeSummary(name, labels, ((Timer) metric).getSnapshot(), 1e-9, ((Timer) metric).getCount());
+                } else if (metric instanceof Histogram) {
+                    writeSummary(name, labels, ((Histogram) metric).getSnapshot(), 1, ((Histogram) metric).getCount());
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    private void writeHistogram(String name, String labels, LatencyHistogram histogram) throws IOException {
+        long[] counts = histogram.getCounts();
+        long cumulated = 0;
+        String separator = labels.isEmpty() ? "" : ",";
+        for (int i = 0; i < LatencyHistogram.BUCKETS.length; i++) {
+            cumulated += counts[i];
+            writeSample(name + "_bucket", labels + separator + "le=\"" + LatencyHistogram.BUCKETS[i] + "\"", cumulated);
+        }
+        cumulated += counts[counts.length - 1];
+        writeSample(name + "_bucket", labels + separator + "le=\"+Inf\"", cumulated);
+        writeSample(name + "_sum", labels, histogram.getSumSeconds());
+        writeSample(name + "_count", labels, cumulated);
+    }
+
+    private void writeSummary(String name, String labels, Snapshot snapshot, double factor, long count)
+            throws IOException {
+        String separator = labels.isEmpty() ? "" : ",";
+        for (double quantile : QUANTILES) {
+            writeSample(name, labels + separator + "quantile=\"" + quantile + "\"",
+                    snapshot.getValue(quantile) * factor);
+        }
+        writeSample(name + "_count", labels, count);
+    }
+
+    private void writeSample(String name, String labels, double value) throws IOException {
+        writer.append(name);
+        if (!labels.isEmpty()) {
+            writer.append('{').append(labels).append('}');
+        }
+        writer.append(' ');
+        if (Double.isInfinite(value)) {
+            writer.append(value > 0 ? "+Inf" : "-Inf");
+        } else if (value == (long) value) {
+            writer.append(Long.toString((long) value));
+        } else {
+            writer.append(Double.toString(value));
+        }
+        writer.append('\n');
+    }
+
+    private static String type(Metric metric) {
+        if (metric instanceof LatencyHistogram) {
+            return "histogram";
+        } else if (metric instanceof Counter || metric instanceof Meter) {
+            return "counter";
+        } else if (metric instanceof Timer || metric instanceof Histogram) {
+            return "summary";
+        }
+        return "gauge";
+    }
+
+    private static String sanitize(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c == ':'
+                    || (i > 0 && c >= '0' && c <= '9');
+            builder.append(valid ? c : '_');
+        }
+        return builder.toString();
+    }
+}
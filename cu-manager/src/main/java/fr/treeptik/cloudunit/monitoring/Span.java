@@ -0,0 +1,103 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A timed call of a trace, with the calls it made. Only modified by the thread making the call.
+ */
+public class Span {
+
+    private final String kind;
+
+    private final String name;
+
+    private final Span parent;
+
+    private final long start;
+
+    private final long startNanos;
+
+    private long durationNanos = -1;
+
+    private String error;
+
+    private List<Span> children;
+
+    Span(String kind, String name, Span parent) {
+        this.kind = kind;
+        this.name = name;
+        this.parent = parent;
+        this.start = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    void end(Throwable throwable) {
+        durationNanos = System.nanoTime() - startNanos;
+        if (throwable != null) {
+            error = throwable.getClass().getSimpleName();
+        }
+    }
+
+    void addChild(Span child) {
+        if (children == null) {
+            children = new ArrayList<>();
+        }
+        children.add(child);
+    }
+
+    Span getParent() {
+        return parent;
+    }
+
+    /**
+     * @return controller, service, dao or docker
+     */
+    public String getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the start in milliseconds
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return the duration in milliseconds, -1 while the call runs
+     */
+    public double getDurationMillis() {
+        return durationNanos < 0 ? -1 : durationNanos / 1e6;
+    }
+
+    /**
+     * @return the simple name of the exception thrown, null if the call succeeded
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return the time not spent in the traced children, in milliseconds
+     */
+    public double getSelfMillis() {
+        if (durationNanos < 0) {
+            return -1;
+        }
+        double self = getDurationMillis();
+        for (Span child : getChildren()) {
+            self -= Math.max(0, child.getDurationMillis());
+        }
+        return self;
+    }
+
+    public List<Span> getChildren() {
+        return children == null ? Collections.emptyList() : children;
+    }
+}
@@ -0,0 +1,67 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A request traced from its controller call, kept in the buffer of the tracer
+ */
+public class Trace {
+
+    private final long id;
+
+    private final String thread;
+
+    private final Span root;
+
+    private final int spanCount;
+
+    private final boolean truncated;
+
+    Trace(long id, String thread, Span root, int spanCount, boolean truncated) {
+        this.id = id;
+        this.thread = thread;
+        this.root = root;
+        this.spanCount = spanCount;
+        this.truncated = truncated;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public String getName() {
+        return root.getName();
+    }
+
+    public long getStart() {
+        return root.getStart();
+    }
+
+    public double getDurationMillis() {
+        return root.getDurationMillis();
+    }
+
+    public String getError() {
+        return root.getError();
+    }
+
+    public int getSpanCount() {
+        return spanCount;
+    }
+
+    /**
+     * @return true if spans were dropped, the trace having more than tracing.max.spans
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @JsonIgnore
+    public Span getRoot() {
+        return root;
+    }
+}
@@ -0,0 +1,149 @@
+package fr.treeptik.cloudunit.monitoring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the traces of the requests, one span per traced call, and keeps the last ones in
+ * memory. The spans are attached to the thread handling the request : the work handed
+ * to other threads is not part of the trace.
+ */
+@Component
+public class Tracer {
+
+    @Value("${tracing.enabled:true}")
+    private boolean enabled;
+
+    // share of the requests traced
+    @Value("${tracing.sample.rate:1.0}")
+    private double sampleRate;
+
+    @Value("${tracing.buffer.size:200}")
+    private int bufferSize;
+
+    @Value("${tracing.max.spans:1000}")
+    private int maxSpans;
+
+    private AtomicReferenceArray<Trace> traces;
+
+    private final AtomicLong lastId = new AtomicLong();
+
+    private final ThreadLocal<Context> contexts = new ThreadLocal<>();
+
+    @PostConstruct
+    public void init() {
+        traces = new AtomicReferenceArray<>(bufferSize);
+    }
+
+    /**
+     * Start a trace, or a span of the current one if the thread is already traced
+     *
+     * @return null if the request is not sampled
+     */
+    public Span startTrace(String kind, String name) {
+        if (contexts.get() != null) {
+            return startSpan(kind, name);
+        }
+        if (!enabled || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return null;
+        }
+        Context context = new Context();
+        context.current = new Span(kind, name, null);
+        context.spans = 1;
+        contexts.set(context);
+        return context.current;
+    }
+
+    public boolean isTracing() {
+        return contexts.get() != null;
+    }
+
+    /**
+     * Start a span of the current trace
+     *
+     * @return null if the thread is not traced
+     */
+    public Span startSpan(String kind, String name) {
+        Context context = contexts.get();
+        if (context == null) {
+            return null;
+        }
+        if (context.spans >= maxSpans) {
+            context.truncated = true;
+            return null;
+        }
+        Span span = new Span(kind, name, context.current);
+        context.current.addChild(span);
+        context.current = span;
+        context.spans++;
+        return span;
+    }
+
+    /**
+     * End a span, and the trace with its root span
+     *
+     * @param span the span started, null does nothing
+     * @param error thrown by the call, null if it succeeded
+     */
+    public void end(Span span, Throwable error) {
+        if (span == null) {
+            return;
+        }
+        span.end(error);
+        Context context = contexts.get();
+        if (context == null) {
+            return;
+        }
+        context.current = span.getParent();
+        if (context.current == null) {
+            contexts.remove();
+            long id = lastId.incrementAndGet();
+            traces.set((int) (id % bufferSize),
+                    new Trace(id, Thread.currentThread().getName(), span, context.spans, context.truncated));
+        }
+    }
+
+    /**
+     * @return the traces kept lasting at least the duration, the most recent first
+     */
+    public List<Trace> getTraces(double minMillis) {
+        List<Trace> result = new ArrayList<>();
+        long last = lastId.get();
+        for (long id = last; id > 0 && id > last - bufferSize; id--) {
+            Trace trace = traces.get((int) (id % bufferSize));
+            // overwritten by a more recent one meanwhile
+            if (trace != null && trace.getId() == id && trace.getDurationMillis() >= minMillis) {
+                result.add(trace);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return null if the trace is not kept anymore
+     */
+    public Trace getTrace(long id) {
+        if (id <= 0) {
+            return null;
+        }
+        Trace trace = traces.get((int) (id % bufferSize));
+        return trace != null && trace.getId() == id ? trace : null;
+    }
+
+    private static class Context {
+
+        private Span current;
+
+        private int spans;
+
+        private boolean truncated;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+package fr.treeptik.cloudunit.schedule.tasks;
+
+import javax.inject.Inject;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import fr.treeptik.cloudunit.service.LogArchiveService;
+
+/**
+ * Moves the logs of the started applications to the archives of the manager
+ */
+@Component
+public class LogArchiveTask {
+
+	@Inject
+	private LogArchiveService logArchiveService;
+
+    /*
+    Schedule default delay : 10 min
+    */
+	@Scheduled(fixedDelayString = "${logs.archive.delay:600000}")
+	public void archive() {
+		logArchiveService.archiveApplications();
+	}
+
+}
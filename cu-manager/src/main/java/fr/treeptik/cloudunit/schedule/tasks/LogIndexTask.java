@@ -0,0 +1,121 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+package fr.treeptik.cloudunit.schedule.tasks;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import fr.treeptik.cloudunit.dto.SourceUnit;
+import fr.treeptik.cloudunit.logs.GatheringStrategy;
+import fr.treeptik.cloudunit.logs.LogChunk;
+import fr.treeptik.cloudunit.model.Application;
+import fr.treeptik.cloudunit.model.Status;
+import fr.treeptik.cloudunit.service.ApplicationService;
+import fr.treeptik.cloudunit.service.FileService;
+import fr.treeptik.cloudunit.service.LogIndexService;
+
+/**
+ * Collects the new log lines of the started applications into the log index.
+ * Each source is read from the cursor of the previous run, so only new lines are transferred.
+ * The cursors are saved with the indexed lines, a restart goes on where the last run stopped.
+ */
+@Component
+public class LogIndexTask {
+
+	private Logger logger = LoggerFactory.getLogger(LogIndexTask.class);
+
+	@Inject
+	private ApplicationService applicationService;
+
+	@Inject
+	private FileService fileService;
+
+	@Inject
+	private LogIndexService logIndexService;
+
+	@Inject
+	private Map<String, GatheringStrategy> gatheringStrategies = new HashMap<>();
+
+	@Value("${logs.index.enabled:true}")
+	private boolean enabled;
+
+	@Value("${logs.index.rows:1000}")
+	private int maxRows;
+
+	/*
+	Schedule default delay : 15 s
+	*/
+	@Scheduled(fixedDelayString = "${logs.index.delay:15000}")
+	public void collect() {
+		if (!enabled) {
+			return;
+		}
+		try {
+			for (Application application : applicationService.findAll()) {
+				if (application.getStatus() != Status.START) {
+					continue;
+				}
+				Map<String, String> containers = new LinkedHashMap<>();
+				containers.put(application.getServer().getName(), application.getServer().getContainerID());
+				application.getModules().forEach(m -> containers.put(m.getName(), m.getContainerID()));
+				Map<String, String> cursors = logIndexService.cursors(application.getName());
+				for (Map.Entry<String, String> container : containers.entrySet()) {
+					collect(application.getName(), container.getKey(), container.getValue(), cursors);
+				}
+			}
+			logIndexService.applyRetention();
+		} catch (Exception e) {
+			logger.error("Error while indexing logs", e);
+		}
+	}
+
+	private void collect(String applicationName, String containerName, String containerId,
+			Map<String, String> cursors) {
+		List<SourceUnit> sources;
+		try {
+			sources = fileService.listLogsFilesByContainer(containerId);
+		} catch (Exception e) {
+			logger.debug("No log source for " + applicationName + "/" + containerId, e);
+			return;
+		}
+		for (SourceUnit source : sources) {
+			String key = applicationName + "/" + containerName + "/" + source.getName();
+			String cursor = cursors.get(containerName + "/" + source.getName());
+			try {
+				GatheringStrategy gatheringStrategy =
+						gatheringStrategies.getOrDefault(source.getName(), gatheringStrategies.get("tail"));
+				LogChunk chunk = gatheringStrategy.gatherSince(containerId, source.getName(), cursor, maxRows);
+				// without cursor the same lines would be indexed at each run
+				if (chunk.getNextCursor() != null && !chunk.getNextCursor().equals(cursor)) {
+					logIndexService.index(applicationName, containerName, source.getName(), chunk.getLogs(),
+							chunk.getNextCursor());
+				}
+			} catch (Exception e) {
+				logger.warn("Cannot index " + key, e);
+			}
+		}
+	}
+}
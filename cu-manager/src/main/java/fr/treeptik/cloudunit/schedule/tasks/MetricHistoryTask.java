@@ -0,0 +1,63 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+
+package fr.treeptik.cloudunit.schedule.tasks;
+
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import fr.treeptik.cloudunit.service.MetricHistoryService;
+
+/**
+ * Writes the steps of the containers which stopped being sampled, and deletes the metrics
+ * past their retention.
+ */
+@Component
+public class MetricHistoryTask {
+
+	private Logger logger = LoggerFactory.getLogger(MetricHistoryTask.class);
+
+	@Inject
+	private MetricHistoryService metricHistoryService;
+
+	/*
+	Schedule default delay : 1 min
+	*/
+	@Scheduled(fixedDelayString = "${metrics.history.delay:60000}")
+	public void flush() {
+		try {
+			metricHistoryService.closeIdle();
+		} catch (Exception e) {
+			logger.error("Error while writing metrics", e);
+		}
+	}
+
+	/*
+	Schedule default delay : 1 h
+	*/
+	@Scheduled(fixedDelayString = "${metrics.history.retention.delay:3600000}")
+	public void applyRetention() {
+		try {
+			metricHistoryService.applyRetention();
+		} catch (Exception e) {
+			logger.error("Error while deleting old metrics", e);
+		}
+	}
+}
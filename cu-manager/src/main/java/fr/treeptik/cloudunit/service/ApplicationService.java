@@ -43,6 +43,8 @@ public interface ApplicationService {
 
 	void setStatus(Application application, Status status) throws ServiceException;
 
+	void setOrderedLifecycle(Application application, Boolean ordered) throws ServiceException;
+
 	Application deploy(MultipartFile file, Application application) throws ServiceException, CheckException;
 
 	Application deploy(String url, Application application) throws ServiceException, CheckException;
@@ -1,6 +1,7 @@
 package fr.treeptik.cloudunit.service;
 
 import fr.treeptik.cloudunit.dto.Command;
+import fr.treeptik.cloudunit.dto.ExecOutputHandler;
 import fr.treeptik.cloudunit.exception.ServiceException;
 
 import java.util.List;
@@ -10,4 +11,7 @@ public interface CommandService {
     List<Command> listCommandByContainer(String applicationName, String containerName) throws ServiceException;
 
     String execCommand(Command command, String containerName, String applicationName) throws ServiceException;
+
+    int execCommand(Command command, String containerName, String applicationName, ExecOutputHandler handler)
+            throws ServiceException;
 }
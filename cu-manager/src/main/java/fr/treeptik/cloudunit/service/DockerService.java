@@ -15,11 +15,18 @@
 
 package fr.treeptik.cloudunit.service;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import com.spotify.docker.client.exceptions.DockerException;
+import fr.treeptik.cloudunit.docker.model.DockerContainer;
+import fr.treeptik.cloudunit.dto.ExecOutputHandler;
 import fr.treeptik.cloudunit.exception.DockerJSONException;
 import fr.treeptik.cloudunit.exception.FatalDockerJSONException;
 import fr.treeptik.cloudunit.exception.ServiceException;
@@ -50,6 +57,10 @@ DockerService {
 
 	String execCommand(String containerName, String command, boolean privileged, boolean detached) throws FatalDockerJSONException;
 
+	int execCommand(String containerName, String command, ExecOutputHandler handler) throws FatalDockerJSONException;
+
+	byte[] execCommandStdout(String containerName, String command) throws FatalDockerJSONException;
+
 	String getContainerId(String containerName) throws FatalDockerJSONException;
 
 	Boolean isRunning(String containerName) throws FatalDockerJSONException;
@@ -70,14 +81,43 @@ DockerService {
 	void sendFileToContainer(String containerId, String localPathFile, String originalName, String destination)
 			throws FatalDockerJSONException;
 
+	void sendStreamToContainer(String containerId, InputStream content, long size, String fileName, String destination)
+			throws FatalDockerJSONException;
+
 	void createModule(String containerName, Module module, String imagePath, User user, List<String> envs,
 			boolean createMainVolume, List<String> volumes) throws DockerJSONException;
 
 	Module startModule(String containerName, Module module) throws DockerJSONException;
 
+	/**
+	 * Start a container on the asynchronous docker driver, the caller is released at once
+	 *
+	 * @return the container inspected once started
+	 */
+	CompletableFuture<DockerContainer> startContainerAsync(String containerName);
+
+	CompletableFuture<Void> stopContainerAsync(String containerName);
+
+	/**
+	 * Update the module from its started container
+	 */
+	Module mapModule(DockerContainer container, Module module) throws DockerJSONException;
+
 	void stopContainer(String containerName) throws DockerJSONException;
 
-	String logs(String container) throws FatalDockerJSONException;
+	String logs(String container, int tail, Integer since, boolean timestamps) throws FatalDockerJSONException;
+
+	/**
+	 * Read the logs of a container since a second, line by line with their timestamp,
+	 * until the handler returns false or the logs end
+	 */
+	void logLines(String container, int since, Predicate<String> handler) throws FatalDockerJSONException;
+
+	void followLogs(String container, int tail, ExecOutputHandler handler, Consumer<Closeable> opened)
+			throws FatalDockerJSONException;
+
+	void followCommand(String containerName, String command, ExecOutputHandler handler, Consumer<Closeable> opened)
+			throws FatalDockerJSONException;
 
 	void pullImage(String imageName) throws FatalDockerJSONException;
 
@@ -86,4 +126,8 @@ DockerService {
 	List<String> listImages() throws ServiceException;
 
 	void exportContainer(String containerName, final OutputStream outputFileStream) throws FatalDockerJSONException, DockerException, InterruptedException, IOException;
+
+	InputStream exportContainer(String containerName) throws DockerException, InterruptedException;
+
+	InputStream archiveFromContainer(String containerName, String path) throws FatalDockerJSONException;
 }
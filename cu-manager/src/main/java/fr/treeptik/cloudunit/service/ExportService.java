@@ -0,0 +1,42 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+package fr.treeptik.cloudunit.service;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import fr.treeptik.cloudunit.dto.ContainerUnit;
+import fr.treeptik.cloudunit.dto.ExportJob;
+import fr.treeptik.cloudunit.exception.CheckException;
+import fr.treeptik.cloudunit.exception.ServiceException;
+import fr.treeptik.cloudunit.model.User;
+
+public interface ExportService {
+
+    ExportJob createJob(User user, String applicationName, boolean parallelGzip);
+
+    ExportJob findJob(User user, String applicationName, String jobId) throws CheckException;
+
+    /**
+     * Write the archive of the containers on an export thread, the caller is released at once
+     *
+     * @return completed exceptionally with a ServiceException if the export fails
+     * @throws CheckException if the job has already been downloaded or too many exports are running
+     */
+    CompletableFuture<Void> exportAsync(ExportJob job, List<ContainerUnit> containers, OutputStream outputStream)
+            throws CheckException;
+}
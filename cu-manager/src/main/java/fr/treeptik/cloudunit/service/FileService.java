@@ -25,6 +25,7 @@ import fr.treeptik.cloudunit.dto.FileUnit;
 import fr.treeptik.cloudunit.dto.SourceUnit;
 import fr.treeptik.cloudunit.exception.CheckException;
 import fr.treeptik.cloudunit.exception.ServiceException;
+import fr.treeptik.cloudunit.logs.LogChunk;
 
 /**
  * Created by nicolas on 20/05/15.
@@ -55,6 +56,9 @@ public interface FileService {
     String tailFile(String containerId, String filename, Integer maxRows)
             throws ServiceException;
 
+    LogChunk tailFileSince(String containerId, String filename, String cursor, Integer maxRows)
+            throws ServiceException, CheckException;
+
     String getLogDirectory(String containerId)
             throws ServiceException;
 }
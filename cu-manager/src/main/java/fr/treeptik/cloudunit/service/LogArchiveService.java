@@ -0,0 +1,44 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+package fr.treeptik.cloudunit.service;
+
+import java.io.OutputStream;
+import java.util.List;
+
+import fr.treeptik.cloudunit.dto.LogArchiveUnit;
+import fr.treeptik.cloudunit.dto.LogSearchResult;
+import fr.treeptik.cloudunit.exception.CheckException;
+import fr.treeptik.cloudunit.exception.ServiceException;
+import fr.treeptik.cloudunit.logs.LogSearchQuery;
+
+public interface LogArchiveService {
+
+    void archiveApplications();
+
+    void archiveContainer(String applicationName, String containerName, boolean all)
+            throws ServiceException, CheckException;
+
+    List<LogArchiveUnit> listArchives(String applicationName, LogSearchQuery query)
+            throws ServiceException, CheckException;
+
+    void download(String applicationName, LogSearchQuery query, OutputStream outputStream)
+            throws ServiceException, CheckException;
+
+    List<LogSearchResult> search(String applicationName, LogSearchQuery query, int limit)
+            throws ServiceException, CheckException;
+
+    void applyQuotas() throws ServiceException;
+}
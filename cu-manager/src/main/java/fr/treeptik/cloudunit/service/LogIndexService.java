@@ -0,0 +1,43 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+package fr.treeptik.cloudunit.service;
+
+import java.util.List;
+import java.util.Map;
+
+import fr.treeptik.cloudunit.dto.LogSearchResult;
+import fr.treeptik.cloudunit.exception.CheckException;
+import fr.treeptik.cloudunit.exception.ServiceException;
+import fr.treeptik.cloudunit.logs.LogSearchQuery;
+
+public interface LogIndexService {
+
+    /**
+     * Index the lines read from a source, along with the cursor where the reading stopped
+     */
+    void index(String applicationName, String container, String source, String logs, String cursor)
+            throws ServiceException, CheckException;
+
+    /**
+     * @return the cursors saved by the last indexing of each source of the application, by "container/source"
+     */
+    Map<String, String> cursors(String applicationName) throws ServiceException, CheckException;
+
+    List<LogSearchResult> search(String applicationName, LogSearchQuery query, int limit)
+            throws ServiceException, CheckException;
+
+    void applyRetention() throws ServiceException;
+}
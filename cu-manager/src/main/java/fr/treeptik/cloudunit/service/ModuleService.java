@@ -19,6 +19,7 @@ import java.util.List;
 
 import org.springframework.web.multipart.MultipartFile;
 
+import fr.treeptik.cloudunit.docker.model.DockerContainer;
 import fr.treeptik.cloudunit.exception.CheckException;
 import fr.treeptik.cloudunit.exception.ServiceException;
 import fr.treeptik.cloudunit.model.Application;
@@ -54,6 +55,16 @@ public interface ModuleService {
 
     Module startModule(String moduleName) throws ServiceException;
 
+    /**
+     * Record the start of a module whose container has just been started
+     */
+    Module moduleStarted(String moduleName, DockerContainer container) throws ServiceException;
+
+    /**
+     * Record the stop of a module whose container has just been stopped
+     */
+    Module moduleStopped(String moduleName) throws ServiceException;
+
     Module create(String imageName, Application application, User user) throws ServiceException, CheckException;
 
     Module publishPort(Integer id, Boolean publishPort, String port, User user) throws ServiceException, CheckException;
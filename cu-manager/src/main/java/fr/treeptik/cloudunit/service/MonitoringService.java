@@ -16,8 +16,10 @@
 package fr.treeptik.cloudunit.service;
 
 import fr.treeptik.cloudunit.model.Metric;
+import org.apache.http.pool.PoolStats;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Created by nicolas on 25/08/2014.
@@ -26,7 +28,11 @@ public interface MonitoringService {
 
     String getJsonFromCAdvisor(String containerId);
 
+    String getJsonFromCAdvisor(List<String> containerNames, int samples, Set<String> fields);
+
     String getJsonMachineFromCAdvisor();
 
     List<Metric> findByServer(String serverName);
+
+    PoolStats getDockerConnectionPoolStats();
 }
\ No newline at end of file
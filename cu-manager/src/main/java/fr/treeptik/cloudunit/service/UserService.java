@@ -50,6 +50,12 @@ public interface UserService {
     User findByLogin(String login)
         throws ServiceException;
 
+    /**
+     * Same as findByLogin, cached for the authenticated users
+     */
+    User findAuthenticatedUser(String login)
+        throws ServiceException;
+
     void deleteAllUsersMessages(User user)
         throws ServiceException;
 
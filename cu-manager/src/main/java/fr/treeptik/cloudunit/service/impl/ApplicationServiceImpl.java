@@ -17,6 +17,7 @@ package fr.treeptik.cloudunit.service.impl;
 
 import fr.treeptik.cloudunit.config.events.ApplicationStartEvent;
 import fr.treeptik.cloudunit.dao.ApplicationDAO;
+import fr.treeptik.cloudunit.docker.model.DockerContainer;
 import fr.treeptik.cloudunit.dto.ContainerUnit;
 import fr.treeptik.cloudunit.enums.RemoteExecAction;
 import fr.treeptik.cloudunit.exception.CheckException;
@@ -24,6 +25,7 @@ import fr.treeptik.cloudunit.exception.ServiceException;
 import fr.treeptik.cloudunit.model.*;
 import fr.treeptik.cloudunit.service.*;
 import fr.treeptik.cloudunit.utils.AuthentificationUtils;
+import fr.treeptik.cloudunit.utils.MessageUtils;
 import fr.treeptik.cloudunit.utils.NamingUtils;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
@@ -44,6 +46,13 @@ import java.io.File;
 import java.net.URL;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -79,6 +88,20 @@ public class ApplicationServiceImpl implements ApplicationService {
     private String domainSuffix;
     @Value("${cloudunit.instance.name}")
     private String cuInstanceName;
+    /**
+     * Modules are started before the server and stopped after it,
+     * else all the containers of an application are handled at once.
+     * Default for the applications which do not choose.
+     */
+    @Value("${application.lifecycle.ordered:true}")
+    private boolean orderedLifecycle;
+    /**
+     * Time given to all the modules of an application to start or stop
+     */
+    @Value("${application.lifecycle.timeout.seconds:300}")
+    private long lifecycleTimeout;
+    @Inject
+    private MessageService messageService;
 
     private List<String> imageNames;
 
@@ -256,20 +279,47 @@ public class ApplicationServiceImpl implements ApplicationService {
         }
     }
 
+    @Override
+    @Transactional
+    public void setOrderedLifecycle(Application application, Boolean ordered) throws ServiceException {
+        try {
+            Application _application = applicationDAO.findOne(application.getId());
+            _application.setOrderedLifecycle(ordered);
+            application.setOrderedLifecycle(ordered);
+            applicationDAO.saveAndFlush(_application);
+        } catch (PersistenceException e) {
+            throw new ServiceException(e.getLocalizedMessage(), e);
+        }
+    }
+
+    private boolean isOrderedLifecycle(Application application) {
+        return application.getOrderedLifecycle() != null ? application.getOrderedLifecycle() : orderedLifecycle;
+    }
+
+    /**
+     * The module containers are started at once on the asynchronous docker driver,
+     * their modules are then updated one after the other in the transaction of the caller.
+     * A module failing or not started in time fails the start.
+     */
     @Override
     @Transactional
     public Application start(Application application) throws ServiceException {
         try {
             logger.debug("start : Methods parameters : " + application);
-            application.getModules().stream().forEach(m -> {
-                try {
-                    moduleService.startModule(m.getName());
-                } catch (ServiceException e) {
-                    e.printStackTrace();
-                }
-            });
+            long start = System.currentTimeMillis();
+            Map<String, Long> durations = new ConcurrentHashMap<>();
+            Map<String, CompletableFuture<DockerContainer>> modules = onModules(application,
+                    dockerService::startContainerAsync, durations);
             Server server = application.getServer();
-            server = serverService.startServer(server);
+            if (isOrderedLifecycle(application)) {
+                // the server may need its modules to boot
+                modulesStarted(await(modules));
+                timed(server.getName(), durations, () -> serverService.startServer(server));
+            } else {
+                timed(server.getName(), durations, () -> serverService.startServer(server));
+                modulesStarted(await(modules));
+            }
+            writeTimingMessage(application, "START", durations, System.currentTimeMillis() - start);
             logger.info("ApplicationService : Application successfully started ");
         } catch (PersistenceException e) {
             throw new ServiceException(e.getLocalizedMessage(), e);
@@ -281,15 +331,22 @@ public class ApplicationServiceImpl implements ApplicationService {
     @Transactional
     public Application stop(Application application) throws ServiceException {
         try {
+            long start = System.currentTimeMillis();
+            Map<String, Long> durations = new ConcurrentHashMap<>();
             Server server = application.getServer();
-            serverService.stopServer(server);
-            application.getModules().stream().forEach(m -> {
-                try {
-                    moduleService.stopModule(m.getName());
-                } catch (ServiceException e) {
-                    logger.error(application.toString(), e);
-                }
-            });
+            Map<String, CompletableFuture<Void>> modules;
+            if (isOrderedLifecycle(application)) {
+                // the server is stopped first so that it does not lose its modules while running
+                timed(server.getName(), durations, () -> serverService.stopServer(server));
+                modules = onModules(application, dockerService::stopContainerAsync, durations);
+            } else {
+                modules = onModules(application, dockerService::stopContainerAsync, durations);
+                timed(server.getName(), durations, () -> serverService.stopServer(server));
+            }
+            for (String name : await(modules).keySet()) {
+                moduleService.moduleStopped(name);
+            }
+            writeTimingMessage(application, "STOP", durations, System.currentTimeMillis() - start);
             logger.info("ApplicationService : Application successfully stopped ");
         } catch (PersistenceException e) {
             throw new ServiceException(e.getLocalizedMessage(), e);
@@ -297,6 +354,83 @@ public class ApplicationServiceImpl implements ApplicationService {
         return application;
     }
 
+    private void modulesStarted(Map<String, DockerContainer> containers) throws ServiceException {
+        for (Map.Entry<String, DockerContainer> entry : containers.entrySet()) {
+            moduleService.moduleStarted(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Launch the docker action on all the modules of the application at once
+     */
+    private <T> Map<String, CompletableFuture<T>> onModules(Application application,
+                                                           Function<String, CompletableFuture<T>> action,
+                                                           Map<String, Long> durations) {
+        Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (Module module : application.getModules()) {
+            String name = module.getName();
+            long start = System.currentTimeMillis();
+            futures.put(name, action.apply(name)
+                    .whenComplete((result, e) -> durations.put(name, System.currentTimeMillis() - start)));
+        }
+        return futures;
+    }
+
+    /**
+     * Wait for all the modules within the lifecycle timeout.
+     * Every module is waited for before the failures are reported together.
+     */
+    private <T> Map<String, T> await(Map<String, CompletableFuture<T>> futures) throws ServiceException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(lifecycleTimeout);
+        Map<String, T> results = new LinkedHashMap<>();
+        Map<String, Throwable> failures = new TreeMap<>();
+        for (Map.Entry<String, CompletableFuture<T>> entry : futures.entrySet()) {
+            try {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                results.put(entry.getKey(), entry.getValue().get(remaining, TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                // releases the waiters only, the docker call itself ends on its own
+                entry.getValue().cancel(false);
+                failures.put(entry.getKey(), e);
+            } catch (ExecutionException e) {
+                failures.put(entry.getKey(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceException("Interrupted while waiting for the modules", e);
+            }
+        }
+        if (!failures.isEmpty()) {
+            failures.forEach((name, e) -> logger.error("[" + name + "] " + e.getMessage(), e));
+            throw new ServiceException("Modules failed or timed out : " + failures.keySet(),
+                    failures.values().iterator().next());
+        }
+        return results;
+    }
+
+    private <T> T timed(String containerName, Map<String, Long> durations, Callable<T> action)
+            throws ServiceException {
+        long start = System.currentTimeMillis();
+        try {
+            return action.call();
+        } catch (ServiceException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServiceException(e.getLocalizedMessage(), e);
+        } finally {
+            durations.put(containerName, System.currentTimeMillis() - start);
+        }
+    }
+
+    private void writeTimingMessage(Application application, String type, Map<String, Long> durations,
+                                    long totalMillis) {
+        try {
+            messageService.create(MessageUtils.writeApplicationTimingMessage(application.getUser(), application,
+                    type, new TreeMap<>(durations), totalMillis));
+        } catch (ServiceException e) {
+            logger.error(application.toString(), e);
+        }
+    }
+
     /**
      * Method useful for Logs and Monitoring Management
      *
@@ -15,6 +15,7 @@ import org.springframework.stereotype.Service;
 
 import fr.treeptik.cloudunit.dto.Command;
 import fr.treeptik.cloudunit.dto.ContainerUnit;
+import fr.treeptik.cloudunit.dto.ExecOutputHandler;
 import fr.treeptik.cloudunit.dto.FileUnit;
 import fr.treeptik.cloudunit.enums.RemoteExecAction;
 import fr.treeptik.cloudunit.exception.ServiceException;
@@ -83,24 +84,11 @@ public class CommandServiceImpl implements CommandService {
 
 	@Override
 	public String execCommand(Command command, String containerName, String applicationName) throws ServiceException {
-		if (command.getName() == null)
-			throw new ServiceException("The filename is empty");
-
-		if (containerName == null)
-			throw new ServiceException("The container name is empty");
+		checkCommand(command, containerName);
 
 		String output =  null;
 		try {
-			List<ContainerUnit> containerUnits = applicationService.listContainers(applicationName);
-			String containerId = containerUnits.stream().filter(v -> v.getName().equals(containerName)).findFirst().get().getId();
-
-			String customScriptPathFiles = dockerService.getEnv(containerName, "CU_SCRIPTS") + "/custom_scripts/";
-			List<FileUnit> fileUnits = fileService.listByContainerIdAndPath(containerId,customScriptPathFiles);
-			String commandLine = fileUnits.stream().filter(v -> v.getName().equals(command.getName())).findFirst().get().getBreadcrump();
-			commandLine = commandLine + " " + command.getArguments().stream().map(v -> v + " ").collect(Collectors.joining());
-
-			// Warning : do not forget * at the end of the command
-			dockerService.execCommand(containerName, RemoteExecAction.CHMOD_PLUSX.getCommand() + " " + customScriptPathFiles + "*", true);
+			String commandLine = prepareCommandLine(command, containerName, applicationName);
 
 			// Execute the raw commad through the chosen file with its arguments
 			output = dockerService.execCommand(containerName, commandLine);
@@ -115,6 +103,48 @@ public class CommandServiceImpl implements CommandService {
 		return output;
 	}
 
+	@Override
+	public int execCommand(Command command, String containerName, String applicationName, ExecOutputHandler handler)
+			throws ServiceException {
+		checkCommand(command, containerName);
+		try {
+			String commandLine = prepareCommandLine(command, containerName, applicationName);
+			return dockerService.execCommand(containerName, commandLine, handler);
+		} catch (Exception e) {
+			StringBuilder msgError = new StringBuilder(128);
+			msgError.append(command);
+			msgError.append(",").append(containerName);
+			msgError.append(",").append(applicationName);
+			throw new ServiceException(msgError.toString(), e);
+		}
+	}
+
+	private void checkCommand(Command command, String containerName) throws ServiceException {
+		if (command.getName() == null)
+			throw new ServiceException("The filename is empty");
+
+		if (containerName == null)
+			throw new ServiceException("The container name is empty");
+	}
+
+	/**
+	 * Find the script of the command into the container and make it executable
+	 */
+	private String prepareCommandLine(Command command, String containerName, String applicationName)
+			throws ServiceException {
+		List<ContainerUnit> containerUnits = applicationService.listContainers(applicationName);
+		String containerId = containerUnits.stream().filter(v -> v.getName().equals(containerName)).findFirst().get().getId();
+
+		String customScriptPathFiles = dockerService.getEnv(containerName, "CU_SCRIPTS") + "/custom_scripts/";
+		List<FileUnit> fileUnits = fileService.listByContainerIdAndPath(containerId,customScriptPathFiles);
+		String commandLine = fileUnits.stream().filter(v -> v.getName().equals(command.getName())).findFirst().get().getBreadcrump();
+		commandLine = commandLine + " " + command.getArguments().stream().map(v -> v + " ").collect(Collectors.joining());
+
+		// Warning : do not forget * at the end of the command
+		dockerService.execCommand(containerName, RemoteExecAction.CHMOD_PLUSX.getCommand() + " " + customScriptPathFiles + "*", true);
+		return commandLine;
+	}
+
 	public Command fileUnitToCommand(FileUnit fileUnit, Integer number, List<String> names) {
 		Command command = new Command(fileUnit.getName(), number, names);
 		return command;
@@ -1,6 +1,11 @@
 package fr.treeptik.cloudunit.service.impl;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -9,6 +14,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
@@ -27,14 +38,16 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.LogMessage;
 import com.spotify.docker.client.LogStream;
-import com.spotify.docker.client.exceptions.ContainerNotFoundException;
 import com.spotify.docker.client.exceptions.DockerException;
 import com.spotify.docker.client.messages.Container;
-import com.spotify.docker.client.messages.ContainerInfo;
 
+import fr.treeptik.cloudunit.docker.builders.ContainerBuilder;
 import fr.treeptik.cloudunit.docker.core.DockerCloudUnitClient;
 import fr.treeptik.cloudunit.docker.model.DockerContainer;
+import fr.treeptik.cloudunit.docker.model.State;
+import fr.treeptik.cloudunit.dto.ExecOutputHandler;
 import fr.treeptik.cloudunit.enums.RemoteExecAction;
 import fr.treeptik.cloudunit.exception.DockerJSONException;
 import fr.treeptik.cloudunit.exception.FatalDockerJSONException;
@@ -42,6 +55,7 @@ import fr.treeptik.cloudunit.exception.ServiceException;
 import fr.treeptik.cloudunit.model.Module;
 import fr.treeptik.cloudunit.model.Server;
 import fr.treeptik.cloudunit.model.User;
+import fr.treeptik.cloudunit.monitoring.ManagerMetrics;
 import fr.treeptik.cloudunit.service.DockerService;
 import fr.treeptik.cloudunit.utils.ContainerMapper;
 import fr.treeptik.cloudunit.utils.ContainerUtils;
@@ -69,9 +83,17 @@ public class DockerServiceImpl implements DockerService {
     @Inject
     private DockerCloudUnitClient dockerCloudUnitClient;
 
+    /**
+     * Containers whose commands have to run as root
+     */
+    private final Set<String> privilegedContainers = ConcurrentHashMap.newKeySet();
+
     @Inject
     private DockerConfiguration dockerConfiguration;
 
+    @Inject
+    private ManagerMetrics managerMetrics;
+
     @PostConstruct
     public void init() {
         domain = NamingUtils.getCloudUnitDomain(domainSuffix);
@@ -127,6 +149,7 @@ public class DockerServiceImpl implements DockerService {
     public void removeContainer(String containerName, boolean removeVolume) throws DockerJSONException {
         DockerContainer container = ContainerUtils.newStartInstance(containerName, null, null, false);
         dockerCloudUnitClient.removeContainer(container);
+        privilegedContainers.remove(containerName);
         if (removeVolume) {
             dockerCloudUnitClient.removeVolume(containerName);
         }
@@ -142,24 +165,29 @@ public class DockerServiceImpl implements DockerService {
         IOUtils.copy(dockerClient.exportContainer(containerName), outputFileStream);
     }
 
+    @Override
+    public InputStream exportContainer(String containerName) throws DockerException, InterruptedException {
+        return dockerClient.exportContainer(containerName);
+    }
+
+    /**
+     * @return the tar of the path, to be closed by the caller
+     */
+    @Override
+    public InputStream archiveFromContainer(String containerName, String path) throws FatalDockerJSONException {
+        try {
+            return dockerClient.archiveContainer(containerName, path);
+        } catch (DockerException | InterruptedException e) {
+            throw new FatalDockerJSONException("containerName=" + containerName + ", path=" + path, e);
+        }
+    }
+
     @Override
     public String execCommand(String containerName, String command, boolean privileged, boolean detached)
             throws FatalDockerJSONException {
-        final String[] commands = { "bash", "-c", command };
-        String execId = null;
+        long start = System.nanoTime();
         try {
-            if (privileged) {
-                execId = dockerClient.execCreate(containerName, commands,
-                        com.spotify.docker.client.DockerClient.ExecCreateParam.detach(detached),
-                        com.spotify.docker.client.DockerClient.ExecCreateParam.attachStdout(),
-                        com.spotify.docker.client.DockerClient.ExecCreateParam.attachStderr(),
-                        com.spotify.docker.client.DockerClient.ExecCreateParam.user("root")).id();
-            } else {
-                execId = dockerClient.execCreate(containerName, commands,
-                        com.spotify.docker.client.DockerClient.ExecCreateParam.detach(detached),
-                        com.spotify.docker.client.DockerClient.ExecCreateParam.attachStdout(),
-                        com.spotify.docker.client.DockerClient.ExecCreateParam.attachStderr()).id();
-            }
+            String execId = execCreate(containerName, command, privileged, detached);
             try (final LogStream stream = dockerClient.execStart(execId)) {
                 final String output = stream.readFully();
                 logger.debug(output);
@@ -170,31 +198,187 @@ public class DockerServiceImpl implements DockerService {
             msgError.append("containerName:[").append(containerName).append("]");
             msgError.append(", command:[").append(command).append("]");
             throw new FatalDockerJSONException(msgError.toString(), e);
+        } finally {
+            recordExec(command, start);
         }
     }
 
     /**
      * Execute a shell conmmad into a container. Return the output as String
      *
+     * Once a container denied a command, its next commands are executed as root.
+     * A command is never executed twice.
+     *
      * @param containerName
      * @param command
      * @return
      */
     @Override
     public String execCommand(String containerName, String command) throws FatalDockerJSONException {
-        String output = execCommand(containerName, command, false);
-        if (output.contains("Permission denied")) {
-            logger.warn("[" + containerName + "] exec command in privileged mode : " + command);
-            output = execCommand(containerName, command, true);
+        StringBuilder output = new StringBuilder();
+        runOnce(containerName, command, (isStderr, text) -> output.append(text));
+        logger.debug(output.toString());
+        return output.toString();
+    }
+
+    /**
+     * Execute a shell command into a container and give its output to the handler as it arrives.
+     * The command runs as root if the container is already known to need it.
+     *
+     * @return the exit code of the command, or -1 if the daemon does not know it
+     */
+    @Override
+    public int execCommand(String containerName, String command, ExecOutputHandler handler)
+            throws FatalDockerJSONException {
+        return runOnce(containerName, command, handler).exitCode;
+    }
+
+    /**
+     * Run the command as root if the container already denied one, else remember its denial for the next ones
+     */
+    private ExecResult runOnce(String containerName, String command, ExecOutputHandler handler)
+            throws FatalDockerJSONException {
+        ExecResult result = runExec(containerName, command, privilegedContainers.contains(containerName), handler);
+        if (result.denied && privilegedContainers.add(containerName)) {
+            logger.warn("[" + containerName + "] exec commands in privileged mode from now on, denied : " + command);
+        }
+        return result;
+    }
+
+    /**
+     * Execute a shell command into a container and return its standard output as read, without decoding it.
+     * The standard error is only logged, and the command is never executed again as root.
+     */
+    @Override
+    public byte[] execCommandStdout(String containerName, String command) throws FatalDockerJSONException {
+        long start = System.nanoTime();
+        try {
+            String execId = execCreate(containerName, command, false, false);
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            try (final LogStream stream = dockerClient.execStart(execId)) {
+                while (stream.hasNext()) {
+                    LogMessage message = stream.next();
+                    ByteBuffer content = message.content();
+                    if (message.stream() == LogMessage.Stream.STDOUT) {
+                        byte[] bytes = new byte[content.remaining()];
+                        content.get(bytes);
+                        stdout.write(bytes, 0, bytes.length);
+                    } else if (logger.isDebugEnabled()) {
+                        logger.debug("[" + containerName + "] " + StandardCharsets.UTF_8.decode(content));
+                    }
+                }
+            }
+            return stdout.toByteArray();
+        } catch (DockerException | InterruptedException e) {
+            StringBuilder msgError = new StringBuilder();
+            msgError.append("containerName:[").append(containerName).append("]");
+            msgError.append(", command:[").append(command).append("]");
+            throw new FatalDockerJSONException(msgError.toString(), e);
+        } finally {
+            recordExec(command, start);
+        }
+    }
+
+    /**
+     * Run the command once. It is denied when it failed and complained about permissions on stderr,
+     * the same words in its regular output, a log file being read for instance, do not count.
+     */
+    private ExecResult runExec(String containerName, String command, boolean privileged, ExecOutputHandler handler)
+            throws FatalDockerJSONException {
+        long start = System.nanoTime();
+        try {
+            String execId = execCreate(containerName, command, privileged, false);
+            boolean[] permissionDenied = { false };
+            try (final LogStream stream = dockerClient.execStart(execId)) {
+                forwardFrames(stream, (isStderr, text) -> {
+                    if (isStderr && text.contains("Permission denied")) {
+                        permissionDenied[0] = true;
+                    }
+                    handler.onOutput(isStderr, text);
+                });
+            }
+            Integer exitCode = dockerClient.execInspect(execId).exitCode();
+            ExecResult result = new ExecResult();
+            result.exitCode = exitCode == null ? -1 : exitCode;
+            result.denied = !privileged && permissionDenied[0] && result.exitCode != 0;
+            return result;
+        } catch (DockerException | InterruptedException | IOException e) {
+            StringBuilder msgError = new StringBuilder();
+            msgError.append("containerName:[").append(containerName).append("]");
+            msgError.append(", command:[").append(command).append("]");
+            throw new FatalDockerJSONException(msgError.toString(), e);
+        } finally {
+            recordExec(command, start);
+        }
+    }
+
+    private static class ExecResult {
+        private int exitCode;
+        private boolean denied;
+    }
+
+    private void recordExec(String command, long start) {
+        RemoteExecAction action = RemoteExecAction.fromCommand(command);
+        managerMetrics.latency("cu_docker_exec_seconds", "action", action == null ? "shell" : action.name())
+                .record(System.nanoTime() - start);
+    }
+
+    private void forwardFrames(LogStream stream, ExecOutputHandler handler) throws IOException {
+        final Utf8FrameDecoder stdout = new Utf8FrameDecoder();
+        final Utf8FrameDecoder stderr = new Utf8FrameDecoder();
+        while (stream.hasNext()) {
+            LogMessage message = stream.next();
+            boolean isStderr = message.stream() == LogMessage.Stream.STDERR;
+            handler.onOutput(isStderr, (isStderr ? stderr : stdout).decode(message.content()));
+        }
+    }
+
+    private String execCreate(String containerName, String command, boolean privileged, boolean detached)
+            throws DockerException, InterruptedException {
+        final String[] commands = { "bash", "-c", command };
+        if (privileged) {
+            return dockerClient.execCreate(containerName, commands,
+                    com.spotify.docker.client.DockerClient.ExecCreateParam.detach(detached),
+                    com.spotify.docker.client.DockerClient.ExecCreateParam.attachStdout(),
+                    com.spotify.docker.client.DockerClient.ExecCreateParam.attachStderr(),
+                    com.spotify.docker.client.DockerClient.ExecCreateParam.user("root")).id();
+        }
+        return dockerClient.execCreate(containerName, commands,
+                com.spotify.docker.client.DockerClient.ExecCreateParam.detach(detached),
+                com.spotify.docker.client.DockerClient.ExecCreateParam.attachStdout(),
+                com.spotify.docker.client.DockerClient.ExecCreateParam.attachStderr()).id();
+    }
+
+    /**
+     * Decodes the frames of one stream, keeping a multi-byte character split between two frames
+     */
+    private static class Utf8FrameDecoder {
+
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private ByteBuffer remaining = ByteBuffer.allocate(0);
+
+        String decode(ByteBuffer content) {
+            ByteBuffer input = content;
+            if (remaining.hasRemaining()) {
+                input = ByteBuffer.allocate(remaining.remaining() + content.remaining());
+                input.put(remaining).put(content).flip();
+            }
+            CharBuffer output = CharBuffer.allocate((int) (input.remaining() * decoder.maxCharsPerByte()) + 1);
+            decoder.decode(input, output, false);
+            remaining = ByteBuffer.allocate(input.remaining());
+            remaining.put(input).flip();
+            output.flip();
+            return output.toString();
         }
-        return output;
     }
 
     @Override
     public Boolean isRunning(String containerName) throws FatalDockerJSONException {
         try {
-            final ContainerInfo info = dockerClient.inspectContainer("containerID");
-            return info.state().running();
+            return Boolean.TRUE.equals(inspect(containerName).getState().getRunning());
         } catch (Exception e) {
             StringBuilder msgError = new StringBuilder();
             msgError.append("containerName=").append(containerName);
@@ -220,10 +404,10 @@ public class DockerServiceImpl implements DockerService {
     @Override
     public Boolean isStoppedGracefully(String containerName) throws FatalDockerJSONException {
         try {
-            final ContainerInfo info = dockerClient.inspectContainer(containerName);
-            boolean exited = info.state().status().equalsIgnoreCase("Exited");
-            if (info.state().exitCode() != 0) {
-                logger.warn("The container may be brutally stopped. Its exit code is : " + info.state().exitCode());
+            final State state = inspect(containerName).getState();
+            boolean exited = "exited".equalsIgnoreCase(state.getStatus());
+            if (state.getExitCode() != null && state.getExitCode() != 0) {
+                logger.warn("The container may be brutally stopped. Its exit code is : " + state.getExitCode());
             }
             return exited;
         } catch (Exception e) {
@@ -249,8 +433,7 @@ public class DockerServiceImpl implements DockerService {
     @Cacheable(value = "monitoring", key = "#containerName")
     public String getContainerId(String containerName) throws FatalDockerJSONException {
         try {
-            final ContainerInfo info = dockerClient.inspectContainer(containerName);
-            return info.id();
+            return inspect(containerName).getId();
         } catch (Exception e) {
             StringBuilder msgError = new StringBuilder();
             msgError.append("containerName=").append(containerName);
@@ -261,8 +444,7 @@ public class DockerServiceImpl implements DockerService {
     @Override
     public String getContainerNameFromId(String id) throws FatalDockerJSONException {
         try {
-            final ContainerInfo info = dockerClient.inspectContainer(id);
-            return info.name();
+            return inspect(id).getName();
         } catch (Exception e) {
             StringBuilder msgError = new StringBuilder();
             msgError.append("id=").append(id);
@@ -274,11 +456,11 @@ public class DockerServiceImpl implements DockerService {
     @Cacheable(value = "env", key = "{#containerName,#variable}")
     public String getEnv(String containerName, String variable) throws FatalDockerJSONException {
         try {
-            Optional<String> value = dockerClient.inspectContainer(containerName).config().env().stream()
+            Optional<String> value = inspect(containerName).getConfig().getEnv().stream()
                     .filter(e -> e.startsWith(variable)).map(s -> s.substring(s.indexOf("=") + 1)).findFirst();
             logger.info("VARIABLE=" + value);
             return (value.orElseThrow(() -> new ServiceException(variable + " is missing into DOCKERFILE.")));
-        } catch (ContainerNotFoundException e) {
+        } catch (DockerJSONException e) {
             throw new FatalDockerJSONException(e.getLocalizedMessage(), e);
         } catch (Exception e) {
             StringBuilder msgError = new StringBuilder();
@@ -288,6 +470,13 @@ public class DockerServiceImpl implements DockerService {
         }
     }
 
+    /**
+     * Inspect a container through the client cache, which is kept up to date by the Docker events
+     */
+    private DockerContainer inspect(String nameOrId) throws DockerJSONException {
+        return dockerCloudUnitClient.findContainer(ContainerBuilder.aContainer().withName(nameOrId).build());
+    }
+
     @Override
     public void addEnv(String containerId, String key, String value) throws FatalDockerJSONException {
         try {
@@ -338,6 +527,20 @@ public class DockerServiceImpl implements DockerService {
         }
     }
 
+    @Override
+    public void sendStreamToContainer(String containerId, InputStream content, long size, String fileName,
+            String destination) throws FatalDockerJSONException {
+        try {
+            dockerCloudUnitClient.putArchive(containerId, destination,
+                    out -> FilesUtils.writeSingleEntryTar(out, fileName, size, content));
+        } catch (Exception e) {
+            StringBuilder msgError = new StringBuilder();
+            msgError.append("containerId=").append(containerId);
+            msgError.append("fileName=").append(fileName);
+            throw new FatalDockerJSONException(msgError.toString(), e);
+        }
+    }
+
     @Override
     public void createModule(String containerName, Module module, String imagePath, User user, List<String> envs,
             boolean createMainVolume, List<String> volumes) throws DockerJSONException {
@@ -367,21 +570,136 @@ public class DockerServiceImpl implements DockerService {
                 null);
         dockerCloudUnitClient.startContainer(container);
         container = dockerCloudUnitClient.findContainer(container);
-        module = containerMapper.mapDockerContainerToModule(container, module,
+        return mapModule(container, module);
+    }
+
+    @Override
+    public CompletableFuture<DockerContainer> startContainerAsync(String containerName) {
+        DockerContainer container = ContainerUtils.newStartInstance(containerName, null, null, null);
+        return dockerCloudUnitClient.startContainerAsync(container)
+                .thenCompose(response -> dockerCloudUnitClient.findContainerAsync(container));
+    }
+
+    @Override
+    public CompletableFuture<Void> stopContainerAsync(String containerName) {
+        DockerContainer container = ContainerUtils.newStartInstance(containerName, null, null, false);
+        return dockerCloudUnitClient.stopContainerAsync(container).thenApply(response -> null);
+    }
+
+    @Override
+    public Module mapModule(DockerContainer container, Module module) throws DockerJSONException {
+        return containerMapper.mapDockerContainerToModule(container, module,
                 getEnv(container.getName(), "CU_MODULE_PORT"));
-        return module;
     }
 
+    /**
+     * Read the last lines of the stdout and stderr of a container. The tail and since bounds
+     * are applied by docker, so only the requested lines are transferred and decoded.
+     *
+     * @param tail       maximum number of lines
+     * @param since      unix timestamp of the oldest line, or null
+     * @param timestamps prefix each line with its RFC3339 timestamp
+     */
+    @Override
+    public String logs(String container, int tail, Integer since, boolean timestamps) throws FatalDockerJSONException {
+        List<DockerClient.LogsParam> params = new ArrayList<>();
+        params.add(DockerClient.LogsParam.stdout());
+        params.add(DockerClient.LogsParam.stderr());
+        params.add(DockerClient.LogsParam.tail(tail));
+        if (since != null) {
+            params.add(DockerClient.LogsParam.since(since));
+        }
+        if (timestamps) {
+            params.add(DockerClient.LogsParam.timestamps());
+        }
+        try (LogStream stream = dockerClient.logs(container, params.toArray(new DockerClient.LogsParam[params.size()]))) {
+            StringBuilder logs = new StringBuilder(Math.min(tail, 1024) * 128);
+            forwardFrames(stream, (isStderr, text) -> logs.append(text));
+            return logs.toString();
+        } catch (DockerException | InterruptedException | IOException e) {
+            throw new FatalDockerJSONException("container=" + container + ", tail=" + tail + ", since=" + since, e);
+        }
+    }
+
+    /**
+     * The stream is closed as soon as the handler has enough, the rest of the logs is not transferred
+     */
+    @Override
+    public void logLines(String container, int since, Predicate<String> handler) throws FatalDockerJSONException {
+        try (LogStream stream = dockerClient.logs(container, DockerClient.LogsParam.stdout(),
+                DockerClient.LogsParam.stderr(), DockerClient.LogsParam.since(since),
+                DockerClient.LogsParam.timestamps())) {
+            final Utf8FrameDecoder stdout = new Utf8FrameDecoder();
+            final Utf8FrameDecoder stderr = new Utf8FrameDecoder();
+            StringBuilder line = new StringBuilder();
+            while (stream.hasNext()) {
+                LogMessage message = stream.next();
+                String text = (message.stream() == LogMessage.Stream.STDERR ? stderr : stdout).decode(message.content());
+                int start = 0;
+                int end;
+                while ((end = text.indexOf('\n', start)) >= 0) {
+                    line.append(text, start, end);
+                    if (!handler.test(line.toString())) {
+                        return;
+                    }
+                    line.setLength(0);
+                    start = end + 1;
+                }
+                line.append(text, start, text.length());
+            }
+            if (line.length() > 0) {
+                handler.test(line.toString());
+            }
+        } catch (DockerException | InterruptedException e) {
+            throw new FatalDockerJSONException("container=" + container + ", since=" + since, e);
+        }
+    }
+
+    /**
+     * Follow the stdout and stderr of a container, blocking until the container stops,
+     * the handler throws an exception or the handle given to opened is closed
+     */
     @Override
-    public String logs(String container) throws DockerJSONException {
+    public void followLogs(String container, int tail, ExecOutputHandler handler, Consumer<Closeable> opened)
+            throws FatalDockerJSONException {
+        try (LogStream stream = dockerClient.logs(container, DockerClient.LogsParam.follow(),
+                DockerClient.LogsParam.stdout(), DockerClient.LogsParam.stderr(), DockerClient.LogsParam.tail(tail))) {
+            opened.accept(stream::close);
+            forwardFrames(stream, handler);
+        } catch (DockerException | InterruptedException | IOException e) {
+            throw new FatalDockerJSONException("container=" + container, e);
+        }
+    }
+
+    /**
+     * Execute a command running until it is stopped, tail -F for instance, and give its output to the handler.
+     * Closing the handle given to opened kills the command in the container and closes its output :
+     * the shell records its pid then becomes the command.
+     */
+    @Override
+    public void followCommand(String containerName, String command, ExecOutputHandler handler,
+                              Consumer<Closeable> opened) throws FatalDockerJSONException {
+        String pidFile = "/tmp/cu-follow-" + UUID.randomUUID() + ".pid";
+        // the pid file may not be written yet when the command is stopped right after its start
+        String kill = "for i in 1 2 3 4 5; do [ -f " + pidFile + " ] && break; sleep 1; done; "
+                + "kill $(cat " + pidFile + ") 2>/dev/null; rm -f " + pidFile;
         try {
-            LogStream stream = dockerClient.logs(container, DockerClient.LogsParam.stdout(), DockerClient.LogsParam.stderr());
-            String logs = stream.readFully();
-            if (logger.isDebugEnabled()) { logger.debug(logs); }
-            return logs;
-        } catch (Exception e) {
-            logger.error(container, e);
-            return null;
+            String execId = execCreate(containerName, "echo $$ > " + pidFile + "; exec " + command, false, false);
+            try (LogStream stream = dockerClient.execStart(execId)) {
+                opened.accept(() -> {
+                    try {
+                        execCommand(containerName, kill, true);
+                    } finally {
+                        stream.close();
+                    }
+                });
+                forwardFrames(stream, handler);
+            }
+        } catch (DockerException | InterruptedException | IOException e) {
+            StringBuilder msgError = new StringBuilder();
+            msgError.append("containerName:[").append(containerName).append("]");
+            msgError.append(", command:[").append(command).append("]");
+            throw new FatalDockerJSONException(msgError.toString(), e);
         }
     }
 
@@ -60,7 +60,7 @@ public class EnvironmentServiceImpl implements EnvironmentService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "env", allEntries = true)
+    @CacheEvict(value = "env", key = "#containerName")
     public EnvironmentVariable save(User user, EnvironmentVariable environment, String applicationName,
             String containerName) throws ServiceException {
         checkEnvironmentVariableConsistence(environment, containerName);
@@ -92,7 +92,7 @@ public class EnvironmentServiceImpl implements EnvironmentService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "env", allEntries = true)
+    @CacheEvict(value = "env", key = "#containerName")
     public void save(User user, List<EnvironmentVariable> environments, String applicationName, String containerName)
             throws ServiceException {
         environments.stream().forEach(e -> checkEnvironmentVariableConsistence(e, containerName));
@@ -145,7 +145,7 @@ public class EnvironmentServiceImpl implements EnvironmentService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "env", allEntries = true)
+    @CacheEvict(value = "env", key = "#containerName")
     public void delete(User user, int id, String applicationName, String containerName) throws ServiceException {
         Server server = null;
         Application application = null;
@@ -178,7 +178,7 @@ public class EnvironmentServiceImpl implements EnvironmentService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "env", allEntries = true)
+    @CacheEvict(value = "env", key = "#containerName")
     public void delete(User user, List<EnvironmentVariable> envs, String applicationName, String containerName)
             throws ServiceException {
         Server server = null;
@@ -210,7 +210,7 @@ public class EnvironmentServiceImpl implements EnvironmentService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "env", allEntries = true)
+    @CacheEvict(value = "env", key = "#containerName")
     public EnvironmentVariable update(User user, EnvironmentVariable environmentVariable, String applicationName,
             String containerName, Integer id) throws ServiceException {
         checkEnvironmentVariableConsistence(environmentVariable, containerName);
@@ -0,0 +1,200 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+package fr.treeptik.cloudunit.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.spotify.docker.client.exceptions.DockerException;
+
+import fr.treeptik.cloudunit.dto.ContainerUnit;
+import fr.treeptik.cloudunit.dto.ExportJob;
+import fr.treeptik.cloudunit.exception.CheckException;
+import fr.treeptik.cloudunit.exception.ServiceException;
+import fr.treeptik.cloudunit.model.User;
+import fr.treeptik.cloudunit.service.DockerService;
+import fr.treeptik.cloudunit.service.ExportService;
+import fr.treeptik.cloudunit.utils.FilesUtils;
+import fr.treeptik.cloudunit.utils.ParallelGzipOutputStream;
+
+/**
+ * Streams the export of all the containers of an application as one tar.gz,
+ * each container being a directory of the archive. The exports run on their own
+ * bounded pool, so that a download does not hold a request thread.
+ */
+@Service
+public class ExportServiceImpl implements ExportService {
+
+    private Logger logger = LoggerFactory.getLogger(ExportServiceImpl.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Inject
+    private DockerService dockerService;
+
+    @Value("${export.gzip.threads:4}")
+    private int gzipThreads;
+
+    @Value("${export.job.ttl.minutes:60}")
+    private long jobTtlMinutes;
+
+    @Value("${export.threads:4}")
+    private int exportThreads;
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    private ExecutorService gzipExecutor;
+
+    private ExecutorService exportExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        gzipExecutor = Executors.newFixedThreadPool(gzipThreads, r -> {
+            Thread thread = new Thread(r, "export-gzip-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger exportCounter = new AtomicInteger();
+        // no queue : an export beyond the pool is refused rather than left waiting
+        exportExecutor = new ThreadPoolExecutor(exportThreads, exportThreads, 0L, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "export-" + exportCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        exportExecutor.shutdownNow();
+        gzipExecutor.shutdownNow();
+    }
+
+    @Override
+    public ExportJob createJob(User user, String applicationName, boolean parallelGzip) {
+        purgeExpiredJobs();
+        ExportJob job = new ExportJob(UUID.randomUUID().toString(), applicationName, user.getLogin(), parallelGzip);
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    @Override
+    public ExportJob findJob(User user, String applicationName, String jobId) throws CheckException {
+        ExportJob job = jobs.get(jobId);
+        if (job == null || !job.getUserLogin().equals(user.getLogin())
+                || !job.getApplicationName().equals(applicationName)) {
+            throw new CheckException("Unknown export : " + jobId);
+        }
+        return job;
+    }
+
+    @Override
+    public CompletableFuture<Void> exportAsync(ExportJob job, List<ContainerUnit> containers,
+            OutputStream outputStream) throws CheckException {
+        synchronized (job) {
+            if (job.getStatus() != ExportJob.Status.PENDING) {
+                throw new CheckException("This export has already been downloaded : " + job.getId());
+            }
+            job.setStatus(ExportJob.Status.RUNNING);
+        }
+        try {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    export(job, containers, outputStream);
+                } catch (ServiceException e) {
+                    throw new CompletionException(e);
+                }
+            }, exportExecutor);
+        } catch (RejectedExecutionException e) {
+            job.setStatus(ExportJob.Status.PENDING);
+            throw new CheckException("Too many exports are running, please retry later");
+        }
+    }
+
+    private void export(ExportJob job, List<ContainerUnit> containers, OutputStream outputStream)
+            throws ServiceException {
+        long start = System.currentTimeMillis();
+        CountingOutputStream counting = new CountingOutputStream(outputStream);
+        OutputStream gzip = null;
+        try {
+            gzip = job.isParallelGzip()
+                    ? new ParallelGzipOutputStream(counting, gzipExecutor, gzipThreads * 2)
+                    : new GzipCompressorOutputStream(new BufferedOutputStream(counting, BUFFER_SIZE));
+            TarArchiveOutputStream tOut = new TarArchiveOutputStream(gzip);
+            tOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tOut.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            for (ContainerUnit container : containers) {
+                try (InputStream export = dockerService.exportContainer(container.getName())) {
+                    int entries = FilesUtils.appendTar(tOut, export, container.getName() + "/");
+                    logger.debug("[" + job.getId() + "] " + container.getName() + " : " + entries + " entries");
+                }
+                job.setBytesWritten(counting.getByteCount());
+            }
+            // only a complete archive gets its end of tar and gzip trailer
+            tOut.close();
+            job.setBytesWritten(counting.getByteCount());
+            job.setStatus(ExportJob.Status.DONE);
+            logger.info("[" + job.getId() + "] export of " + job.getApplicationName() + " : "
+                    + job.getBytesWritten() + " bytes in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException | DockerException | InterruptedException e) {
+            // the archive is left truncated, so that the client cannot take it for a complete one
+            if (gzip instanceof ParallelGzipOutputStream) {
+                ((ParallelGzipOutputStream) gzip).abort();
+            }
+            job.setBytesWritten(counting.getByteCount());
+            job.setStatus(ExportJob.Status.FAILED);
+            throw new ServiceException("Error during the export of " + job.getApplicationName(), e);
+        }
+    }
+
+    /**
+     * The jobs done or failed are kept until then, so that their status can be read
+     */
+    private void purgeExpiredJobs() {
+        long limit = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(jobTtlMinutes);
+        jobs.values().removeIf(j -> j.getStatus() != ExportJob.Status.RUNNING
+                && j.getCreationDate().getTime() < limit);
+    }
+
+}
@@ -17,21 +17,34 @@ package fr.treeptik.cloudunit.service.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import fr.treeptik.cloudunit.config.events.ContainerEvent;
 import fr.treeptik.cloudunit.dto.FileUnit;
 import fr.treeptik.cloudunit.dto.SourceUnit;
 import fr.treeptik.cloudunit.enums.RemoteExecAction;
@@ -40,6 +53,8 @@ import fr.treeptik.cloudunit.exception.FatalDockerJSONException;
 import fr.treeptik.cloudunit.exception.ServiceException;
 import fr.treeptik.cloudunit.filters.explorer.ExplorerFactory;
 import fr.treeptik.cloudunit.filters.explorer.ExplorerFilter;
+import fr.treeptik.cloudunit.logs.LogChunk;
+import fr.treeptik.cloudunit.logs.LogCursor;
 import fr.treeptik.cloudunit.service.DockerService;
 import fr.treeptik.cloudunit.service.FileService;
 import fr.treeptik.cloudunit.utils.AlphaNumericsCharactersCheckUtils;
@@ -62,6 +77,24 @@ public class FileServiceImpl implements FileService {
 	@Value("${docker.endpoint.mode}")
 	private String dockerEndpointMode;
 
+	/**
+	 * Maximum number of bytes read from a log file by a single call
+	 */
+	@Value("${logs.cursor.max.bytes:1048576}")
+	private long logsMaxBytes;
+
+	private static final int TAIL_WINDOW_BYTES_PER_ROW = 2048;
+
+	@Inject
+	@Named("getAsyncExecutor")
+	private Executor executor;
+
+	@Value("${logs.sources.refresh.seconds:30}")
+	private long sourcesRefreshSeconds;
+
+	// log files by container
+	private final Map<String, LogSources> logSources = new ConcurrentHashMap<>();
+
 	/**
 	 * File Explorer Feature
 	 * <p>
@@ -96,21 +129,61 @@ public class FileServiceImpl implements FileService {
 	/**
 	 * Logs Display Feature
 	 * <p>
-	 * List the files into the Log directory
+	 * List the files into the Log directory, most recently modified first. The list is
+	 * cached by container : once older than the refresh delay it is still returned while
+	 * a new one is loaded in the background. Container events and log rotations evict it.
 	 *
 	 * @param containerId
 	 * @return
 	 * @throws ServiceException
 	 */
 	public List<SourceUnit> listLogsFilesByContainer(String containerId) throws ServiceException {
+		LogSources sources = logSources.get(containerId);
+		if (sources == null) {
+			sources = loadLogSources(containerId);
+			logSources.put(containerId, sources);
+		} else if (sources.isOlderThan(TimeUnit.SECONDS.toMillis(sourcesRefreshSeconds))
+				&& sources.refreshing.compareAndSet(false, true)) {
+			executor.execute(() -> refreshLogSources(containerId));
+		}
+		// callers may add a default source to the list
+		return new ArrayList<>(sources.files);
+	}
+
+	@EventListener
+	public void onContainerEvent(ContainerEvent containerEvent) {
+		String containerName = containerEvent.getContainerName();
+		String fullId = containerEvent.getContainerId();
+		logSources.entrySet().removeIf(e -> e.getKey().equals(containerName)
+				|| containerName.equals(e.getValue().containerName)
+				|| (fullId != null && fullId.startsWith(e.getKey())));
+	}
+
+	private void refreshLogSources(String containerId) {
+		try {
+			logSources.put(containerId, loadLogSources(containerId));
+		} catch (Exception e) {
+			logger.warn("Cannot refresh the log sources of " + containerId, e);
+			logSources.remove(containerId);
+		}
+	}
+
+	private LogSources loadLogSources(String containerId) throws ServiceException {
 		List<SourceUnit> files = new ArrayList<>();
+		String containerName = null;
 		try {
 			String logDirectory = getLogDirectory(containerId);
+			if (logDirectory == null) {
+				return new LogSources(null, files);
+			}
 			// if logs directory is stdout, we don't need to search the files list
-			if (logDirectory.equalsIgnoreCase("stdout")) { files.add(new SourceUnit("stdout")); return files; }
+			if (logDirectory.equalsIgnoreCase("stdout")) {
+				files.add(new SourceUnit("stdout"));
+				return new LogSources(null, files);
+			}
 
-			String containerName = dockerService.getContainerNameFromId(containerId);
-			final String command = "find " + logDirectory + " -type f ! -size 0 ";
+			containerName = dockerService.getContainerNameFromId(containerId);
+			final String command = "find " + logDirectory + " -type f ! -size 0 -exec stat -c '%s %Y %n' {} +";
 			String execOutput = dockerService.execCommand(containerName, command);
 			if (execOutput != null
 					&& execOutput.contains("cannot access") == false) {
@@ -119,16 +192,36 @@ public class FileServiceImpl implements FileService {
 				}
 				StringTokenizer lignes = new StringTokenizer(execOutput, "\n");
 				while (lignes.hasMoreTokens()) {
-					String name = lignes.nextToken();
-					name = name.substring(name.lastIndexOf("/") + 1);
-					SourceUnit sourceUnit = new SourceUnit(name);
-					files.add(sourceUnit);
+					SourceUnit sourceUnit = toSourceUnit(lignes.nextToken());
+					if (sourceUnit != null) {
+						files.add(sourceUnit);
+					}
 				}
 			}
+			files.sort(Comparator.comparing(SourceUnit::getLastModified,
+					Comparator.nullsLast(Comparator.reverseOrder())));
 		} catch (FatalDockerJSONException e) {
 			throw new ServiceException("Error in listByContainerIdAndPath", e);
 		}
-		return files;
+		return new LogSources(containerName, files);
+	}
+
+	/**
+	 * @param line "size mtime path" as written by stat
+	 * @return null if the line is an error message
+	 */
+	private SourceUnit toSourceUnit(String line) {
+		String[] fields = line.split(" ", 3);
+		String name = line.substring(line.lastIndexOf("/") + 1);
+		if (fields.length == 3) {
+			try {
+				return new SourceUnit(name, Long.valueOf(fields[0]),
+						TimeUnit.SECONDS.toMillis(Long.parseLong(fields[1])));
+			} catch (NumberFormatException e) {
+				// not written by stat
+			}
+		}
+		return line.startsWith("/") ? new SourceUnit(name) : null;
 	}
 
 	/**
@@ -164,6 +257,117 @@ public class FileServiceImpl implements FileService {
 		return execOutput;
 	}
 
+	/**
+	 * Read a log file from a cursor, with a single exec reading only the new bytes.
+	 * Without cursor the last rows are read. If the inode changed or the file shrank,
+	 * the file was rotated or truncated and the new one is read from its start.
+	 *
+	 * @param containerId
+	 * @param filename
+	 * @param cursor the cursor returned by the previous call, or null
+	 * @param maxRows
+	 * @return
+	 * @throws ServiceException
+	 */
+	@Override
+	public LogChunk tailFileSince(String containerId, String filename, String cursor, Integer maxRows)
+			throws ServiceException, CheckException {
+		if (!filename.matches("[\\w.\\-]+")) {
+			throw new CheckException("Invalid log file : " + filename);
+		}
+		LogCursor from = LogCursor.parse(cursor);
+		String command = null;
+		try {
+			String logDir = getLogDirectory(containerId);
+			if (!logDir.endsWith("/")) {
+				logDir = logDir + "/";
+			}
+			StringBuilder script = new StringBuilder(512);
+			script.append("f='").append(logDir).append(filename).append("'; ");
+			script.append("set -- $(stat -L -c '%i %s' \"$f\" 2>/dev/null); [ -z \"$1\" ] && exit 1; i=$1; s=$2; ");
+			if (from == null) {
+				// the last rows are searched in a window at the end of the file, as tail would
+				script.append("w=").append((long) maxRows * TAIL_WINDOW_BYTES_PER_ROW).append("; [ $s -lt $w ] && w=$s; ");
+				script.append("echo \"$i $s\"; tail -c +$((s-w+1)) \"$f\" | head -c $w | tail -n ").append(maxRows);
+			} else {
+				script.append("o=").append(from.getOffset()).append("; ");
+				script.append("if [ \"$i\" != \"").append(from.getInode()).append("\" ] || [ $s -lt $o ]; then o=0; fi; ");
+				script.append("n=$((s-o)); [ $n -gt ").append(logsMaxBytes).append(" ] && n=").append(logsMaxBytes).append("; ");
+				script.append("echo \"$i $((o+n))\"; tail -c +$((o+1)) \"$f\" | head -c $n");
+			}
+			command = script.toString();
+			byte[] execOutput = dockerService.execCommandStdout(containerId, command);
+			LogChunk chunk = toLogChunk(execOutput, cursor);
+			if (from != null && chunk.getNextCursor() != null
+					&& LogCursor.parse(chunk.getNextCursor()).getInode() != from.getInode()) {
+				// the file was rotated, the list of files has changed
+				logSources.remove(containerId);
+			}
+			return chunk;
+		} catch (FatalDockerJSONException e) {
+			StringBuilder builder = new StringBuilder(256);
+			builder.append(command);
+			builder.append(", containerId=").append(containerId);
+			builder.append(",file=").append(filename);
+			builder.append(",cursor=").append(cursor);
+			throw new ServiceException(builder.toString(), e);
+		}
+	}
+
+	/**
+	 * The first line of the output is "inode offset", the logs follow. A last line
+	 * without end of line may still be written : it is left for the next call.
+	 * The output is handled as bytes so that the offset stays the one of the file.
+	 */
+	private LogChunk toLogChunk(byte[] execOutput, String cursor) {
+		int headerEnd = indexOf(execOutput, (byte) '\n', 0, execOutput.length);
+		if (headerEnd < 0) {
+			return new LogChunk("", cursor);
+		}
+		String[] header = new String(execOutput, 0, headerEnd, StandardCharsets.US_ASCII).trim().split(" ");
+		long inode;
+		long offset;
+		try {
+			inode = Long.parseLong(header[0]);
+			offset = Long.parseLong(header[1]);
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			logger.warn("Unexpected output while reading logs : " + new String(execOutput, StandardCharsets.UTF_8));
+			return new LogChunk("", cursor);
+		}
+		int logsStart = headerEnd + 1;
+		int logsEnd = execOutput.length;
+		int lastLineStart = lastIndexOf(execOutput, (byte) '\n', logsStart, logsEnd) + 1;
+		if (lastLineStart == 0) {
+			lastLineStart = logsStart;
+		}
+		int partialBytes = logsEnd - lastLineStart;
+		// a line longer than the limit would never be read entirely, it is sent as is
+		if (partialBytes > 0 && partialBytes < logsMaxBytes && partialBytes <= offset) {
+			logsEnd = lastLineStart;
+			offset -= partialBytes;
+		}
+		String logs = new String(execOutput, logsStart, logsEnd - logsStart, StandardCharsets.UTF_8);
+		return new LogChunk(logs, new LogCursor(inode, offset).toString());
+	}
+
+	private static int indexOf(byte[] bytes, byte b, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (bytes[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int lastIndexOf(byte[] bytes, byte b, int from, int to) {
+		for (int i = to - 1; i >= from; i--) {
+			if (bytes[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
 	/**
 	 * File Explorer Feature
 	 * <p>
@@ -256,33 +460,54 @@ public class FileServiceImpl implements FileService {
 	 */
 	@Override
 	public void sendFileToContainer(String containerId, String destination, String filename, String url) throws ServiceException, CheckException {
-		File file = null;
-		File createTempHomeDirPerUsage = null;
+		filename = AlphaNumericsCharactersCheckUtils.deAccent(filename);
+		filename = filename.replace(" ", "_");
 		try {
-			File homeDirectory = org.apache.commons.io.FileUtils.getUserDirectory();
-			createTempHomeDirPerUsage = new File(
-					homeDirectory.getAbsolutePath() + "/tmp" + System.currentTimeMillis());
-			if (createTempHomeDirPerUsage.mkdirs()) {
-				filename = AlphaNumericsCharactersCheckUtils.deAccent(filename);
-				filename = filename.replace(" ", "_");
-				file = new File(createTempHomeDirPerUsage.getAbsolutePath() + "/" + filename);
-				FileUtils.copyURLToFile(new URL(url), file);
-				dockerService.sendFileToContainer(containerId, file.getParent(), filename, destination);
-				if (destination.contains("/opt/cloudunit")) {
-					dockerService.execCommand(containerId, RemoteExecAction.CHANGE_CU_RIGHTS.getCommand(), true);
+			URLConnection connection = new URL(url).openConnection();
+			long size = connection.getContentLengthLong();
+			try (InputStream content = connection.getInputStream()) {
+				if (size >= 0) {
+					// the download is piped into the tar sent to docker, nothing touches the disk
+					dockerService.sendStreamToContainer(containerId, content, size, filename, destination);
+				} else {
+					// a tar entry needs its size upfront
+					sendFileToContainer(containerId, destination, filename, content);
 				}
 			}
+			if (destination.contains("/opt/cloudunit")) {
+				dockerService.execCommand(containerId, RemoteExecAction.CHANGE_CU_RIGHTS.getCommand(), true);
+			}
 		} catch (Exception e) {
 			StringBuilder msgError = new StringBuilder(512);
 			msgError.append(",").append("containerId=").append(containerId);
-			msgError.append(",").append("file=").append(file);
+			msgError.append(",").append("url=").append(url);
 			msgError.append(",").append("destFile=").append(destination);
 			throw new ServiceException("error in send file into the container : " + msgError, e);
+		}
+
+	}
+
+	/**
+	 * Stage a download of unknown length on disk before sending it
+	 */
+	private void sendFileToContainer(String containerId, String destination, String filename, InputStream content)
+			throws IOException, FatalDockerJSONException {
+		File file = null;
+		File createTempHomeDirPerUsage = null;
+		try {
+			File homeDirectory = org.apache.commons.io.FileUtils.getUserDirectory();
+			createTempHomeDirPerUsage = new File(
+					homeDirectory.getAbsolutePath() + "/tmp" + System.currentTimeMillis());
+			if (!createTempHomeDirPerUsage.mkdirs()) {
+				throw new IOException("Cannot create : " + createTempHomeDirPerUsage.getAbsolutePath());
+			}
+			file = new File(createTempHomeDirPerUsage.getAbsolutePath() + "/" + filename);
+			FileUtils.copyInputStreamToFile(content, file);
+			dockerService.sendFileToContainer(containerId, file.getParent(), filename, destination);
 		} finally {
 			if (file != null) { file.delete(); }
 			if (createTempHomeDirPerUsage != null) { createTempHomeDirPerUsage.delete(); }
 		}
-
 	}
 
 		/**
@@ -381,4 +606,24 @@ public class FileServiceImpl implements FileService {
 		return location;
 	}
 
+	private static class LogSources {
+
+		private final String containerName;
+
+		private final List<SourceUnit> files;
+
+		private final long loadedAt = System.currentTimeMillis();
+
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		LogSources(String containerName, List<SourceUnit> files) {
+			this.containerName = containerName;
+			this.files = Collections.unmodifiableList(files);
+		}
+
+		boolean isOlderThan(long millis) {
+			return System.currentTimeMillis() - loadedAt > millis;
+		}
+	}
+
 }
@@ -3,7 +3,7 @@ package fr.treeptik.cloudunit.service.impl;
 import fr.treeptik.cloudunit.config.events.DatabaseConnectionFailEvent;
 import fr.treeptik.cloudunit.config.events.UnexpectedContainerStatusEvent;
 import fr.treeptik.cloudunit.docker.core.DockerCloudUnitClient;
-import fr.treeptik.cloudunit.docker.model.State;
+import fr.treeptik.cloudunit.docker.model.ContainerSummary;
 import fr.treeptik.cloudunit.exception.ServiceException;
 import fr.treeptik.cloudunit.model.Application;
 import fr.treeptik.cloudunit.model.Server;
@@ -12,14 +12,15 @@ import fr.treeptik.cloudunit.service.ApplicationService;
 import fr.treeptik.cloudunit.service.HealthCheckService;
 import fr.treeptik.cloudunit.service.ModuleService;
 import fr.treeptik.cloudunit.service.ServerService;
-import fr.treeptik.cloudunit.utils.ContainerUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by guillaume on 05/10/16.
@@ -44,17 +45,25 @@ public class HealthCheckServiceImpl implements HealthCheckService {
     @Inject
     private ApplicationEventPublisher publisher;
 
+    /**
+     * Label set on every container created by CloudUnit, used to restrict the snapshot
+     */
+    @Value("${healthcheck.label:traefik.backend}")
+    private String containerLabel;
+
     @Override
     public void checkAndRebootApplications(){
         try {
             List<Application> applications = applicationService.findAll();
+            // a single call for all the containers, instead of one inspect per container
+            Map<String, ContainerSummary> containers = dockerCloudUnitClient.findContainerSummaries(containerLabel);
             applications.stream().filter(a-> a.getStatus().equals(Status.START)).forEach(a->{
-                checkNotStartedModules(a);
-                checkNotStartedServer(a);
+                checkNotStartedModules(a, containers);
+                checkNotStartedServer(a, containers);
             });
             applications.stream().filter(a-> a.getStatus().equals(Status.STOP)).forEach(a->{
-                checkNotStoppedModules(a);
-                checkNotStoppedServer(a);
+                checkNotStoppedModules(a, containers);
+                checkNotStoppedServer(a, containers);
             });
 
         } catch (ServiceException e) {
@@ -66,12 +75,14 @@ public class HealthCheckServiceImpl implements HealthCheckService {
 
     }
 
-    private void checkNotStartedModules(Application a) {
+    private void checkNotStartedModules(Application a, Map<String, ContainerSummary> containers) {
         a.getModules().stream().forEach(m-> {
-            final State moduleState = dockerCloudUnitClient.findContainer(
-                    ContainerUtils.newStartInstance(m.getName(), null, null, false))
-                    .getState();
-            if(!moduleState.getRunning()){
+            final ContainerSummary moduleContainer = containers.get(m.getName());
+            if (moduleContainer == null) {
+                logger.warn("Module container is missing : " + m.getName());
+                return;
+            }
+            if(!moduleContainer.isRunning()){
                 logger.warn("Module container is not started... Trying to restart it." );
                 publisher.publishEvent(
                         new UnexpectedContainerStatusEvent(String.format("This module is stopped but should be started : %s", m.getName())));
@@ -84,12 +95,14 @@ public class HealthCheckServiceImpl implements HealthCheckService {
             }
         });
     }
-    private void checkNotStoppedModules(Application a) {
+    private void checkNotStoppedModules(Application a, Map<String, ContainerSummary> containers) {
         a.getModules().stream().forEach(m-> {
-            final State moduleState = dockerCloudUnitClient.findContainer(
-                    ContainerUtils.newStartInstance(m.getName(), null, null, false))
-                    .getState();
-            if(moduleState.getRunning()){
+            final ContainerSummary moduleContainer = containers.get(m.getName());
+            if (moduleContainer == null) {
+                logger.warn("Module container is missing : " + m.getName());
+                return;
+            }
+            if(moduleContainer.isRunning()){
                 logger.warn("Module container is not stopped... Trying to stop it." );
                 publisher.publishEvent(
                         new UnexpectedContainerStatusEvent(String.format("This module is started but should be stopped : %s", m.getName())));
@@ -103,11 +116,13 @@ public class HealthCheckServiceImpl implements HealthCheckService {
         });
     }
 
-    private void checkNotStartedServer(Application a) {
-        final State serverState = dockerCloudUnitClient.findContainer(
-                ContainerUtils.newStartInstance(a.getServer().getName(), null, null, false))
-                .getState();
-        if(!serverState.getRunning()){
+    private void checkNotStartedServer(Application a, Map<String, ContainerSummary> containers) {
+        final ContainerSummary serverContainer = containers.get(a.getServer().getName());
+        if (serverContainer == null) {
+            logger.warn("Server container is missing : " + a.getServer().getName());
+            return;
+        }
+        if(!serverContainer.isRunning()){
            logger.warn("Server container is not started... Trying to restart it." );
             publisher.publishEvent(
                     new UnexpectedContainerStatusEvent(String.format("This server is stopped but should be started : %s", a.getServer().getName())));
@@ -122,12 +137,14 @@ public class HealthCheckServiceImpl implements HealthCheckService {
        }
     }
 
-    private void checkNotStoppedServer(Application a) {
-        final State serverState = dockerCloudUnitClient.findContainer(
-                ContainerUtils.newStartInstance(a.getServer().getName(), null, null, false))
-                .getState();
+    private void checkNotStoppedServer(Application a, Map<String, ContainerSummary> containers) {
+        final ContainerSummary serverContainer = containers.get(a.getServer().getName());
+        if (serverContainer == null) {
+            logger.warn("Server container is missing : " + a.getServer().getName());
+            return;
+        }
 
-        if(serverState.getRunning()){
+        if(serverContainer.isRunning()){
             logger.warn("Server container is not stopped... Trying to stop it." );
             publisher.publishEvent(
                     new UnexpectedContainerStatusEvent(String.format("This server is started but should be stopped : %s", a.getServer().getName())));
@@ -0,0 +1,404 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+package fr.treeptik.cloudunit.service.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.inject.Inject;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import fr.treeptik.cloudunit.dto.LogArchiveUnit;
+import fr.treeptik.cloudunit.dto.LogSearchResult;
+import fr.treeptik.cloudunit.exception.CheckException;
+import fr.treeptik.cloudunit.exception.FatalDockerJSONException;
+import fr.treeptik.cloudunit.exception.ServiceException;
+import fr.treeptik.cloudunit.logs.LogSearchQuery;
+import fr.treeptik.cloudunit.model.Application;
+import fr.treeptik.cloudunit.model.Status;
+import fr.treeptik.cloudunit.service.ApplicationService;
+import fr.treeptik.cloudunit.service.DockerService;
+import fr.treeptik.cloudunit.service.FileService;
+import fr.treeptik.cloudunit.service.LogArchiveService;
+
+/**
+ * Moves the log files out of the containers into gzip segments on the manager.
+ * <p>
+ * Files idle for a while are moved out of the log directory, active files above a size
+ * are copied then truncated, so that the server keeps writing into the same file. The
+ * segments are pulled with the archive API and stored as
+ * {@code <application>/<container>/<source>/<from>-<to>.gz}, where "to" is the last
+ * modification of the segment and "from" the end of the previous one. Concatenated gzip
+ * files are a valid gzip file, so downloads are the segments sent as they are.
+ */
+@Service
+public class LogArchiveServiceImpl implements LogArchiveService {
+
+    private Logger logger = LoggerFactory.getLogger(LogArchiveServiceImpl.class);
+
+    private static final String STAGING_DIRECTORY = "/tmp/cu-log-archive";
+
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("(\\d+)-(\\d+)\\.gz");
+
+    private static final Pattern STAGED_PATTERN = Pattern.compile("(.+)\\.\\d+");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Inject
+    private ApplicationService applicationService;
+
+    @Inject
+    private DockerService dockerService;
+
+    @Inject
+    private FileService fileService;
+
+    @Value("${logs.archive.directory:${java.io.tmpdir}/cloudunit-logs-archive}")
+    private String directory;
+
+    @Value("${logs.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${logs.archive.idle.minutes:1440}")
+    private long idleMinutes;
+
+    @Value("${logs.archive.rotate.megabytes:10}")
+    private long rotateMegabytes;
+
+    @Value("${logs.archive.retention.days:30}")
+    private long retentionDays;
+
+    @Value("${logs.archive.max.megabytes:512}")
+    private long maxMegabytes;
+
+    // one archiving at a time per container, they share its staging directory
+    private final Map<String, ReentrantLock> containerLocks = new ConcurrentHashMap<>();
+
+    @Override
+    public void archiveApplications() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            for (Application application : applicationService.findAll()) {
+                if (application.getStatus() != Status.START) {
+                    continue;
+                }
+                List<String> containers = new ArrayList<>();
+                containers.add(application.getServer().getName());
+                application.getModules().forEach(m -> containers.add(m.getName()));
+                for (String containerName : containers) {
+                    try {
+                        archiveContainer(application.getName(), containerName, false);
+                    } catch (Exception e) {
+                        logger.warn("Cannot archive the logs of " + containerName, e);
+                    }
+                }
+            }
+            applyQuotas();
+        } catch (Exception e) {
+            logger.error("Error while archiving logs", e);
+        }
+    }
+
+    /**
+     * The scheduled run and the archiving before a stop may overlap : the staging directory of
+     * the container is pulled then removed, so they are run one after the other.
+     *
+     * @param all archive every file, whatever its size and age, before the container stops
+     */
+    @Override
+    public void archiveContainer(String applicationName, String containerName, boolean all)
+            throws ServiceException, CheckException {
+        if (!enabled) {
+            return;
+        }
+        checkName(applicationName);
+        checkName(containerName);
+        String logDirectory = fileService.getLogDirectory(containerName);
+        // the standard output stays in docker
+        if (logDirectory == null || logDirectory.equalsIgnoreCase("stdout")) {
+            return;
+        }
+        ReentrantLock lock = containerLocks.computeIfAbsent(containerName, name -> new ReentrantLock());
+        lock.lock();
+        try {
+            dockerService.execCommand(containerName, rotateCommand(logDirectory, all));
+            try (InputStream tar = dockerService.archiveFromContainer(containerName, STAGING_DIRECTORY)) {
+                store(applicationName, containerName, tar);
+            }
+            dockerService.execCommand(containerName, "rm -rf " + STAGING_DIRECTORY);
+        } catch (FatalDockerJSONException | IOException e) {
+            // the staged files are kept and pulled by the next run
+            throw new ServiceException("Cannot archive the logs of " + containerName, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<LogArchiveUnit> listArchives(String applicationName, LogSearchQuery query)
+            throws ServiceException, CheckException {
+        checkName(applicationName);
+        List<LogArchiveUnit> archives = new ArrayList<>();
+        for (Segment segment : findSegments(applicationName, query)) {
+            archives.add(new LogArchiveUnit(segment.container, segment.source, segment.from, segment.to,
+                    segment.file.length()));
+        }
+        return archives;
+    }
+
+    /**
+     * Write the segments as one gzip stream, oldest first
+     */
+    @Override
+    public void download(String applicationName, LogSearchQuery query, OutputStream outputStream)
+            throws ServiceException, CheckException {
+        checkName(applicationName);
+        List<Segment> segments = findSegments(applicationName, query);
+        segments.sort(Comparator.comparingLong(s -> s.to));
+        try {
+            for (Segment segment : segments) {
+                Files.copy(segment.file.toPath(), outputStream);
+            }
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new ServiceException("Cannot download the logs of " + applicationName, e);
+        }
+    }
+
+    /**
+     * Scan the segments, the most recent first. The lines found get the time of their segment.
+     */
+    @Override
+    public List<LogSearchResult> search(String applicationName, LogSearchQuery query, int limit)
+            throws ServiceException, CheckException {
+        checkName(applicationName);
+        List<LogSearchResult> results = new ArrayList<>();
+        for (Segment segment : findSegments(applicationName, query)) {
+            if (results.size() >= limit) {
+                break;
+            }
+            // only the last matches of a segment are kept
+            Deque<String> matches = new ArrayDeque<>();
+            int remaining = limit - results.size();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(segment.file), BUFFER_SIZE), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (matches(line, query.getTerms())) {
+                        if (matches.size() == remaining) {
+                            matches.pollFirst();
+                        }
+                        matches.addLast(line);
+                    }
+                }
+            } catch (IOException e) {
+                throw new ServiceException("Cannot read " + segment.file, e);
+            }
+            for (Iterator<String> it = matches.descendingIterator(); it.hasNext();) {
+                results.add(new LogSearchResult(segment.to, segment.container, segment.source, it.next()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Delete the segments older than the retention, then the oldest ones while an
+     * application uses more than its quota
+     */
+    @Override
+    public synchronized void applyQuotas() throws ServiceException {
+        File[] applications = new File(directory).listFiles(File::isDirectory);
+        if (applications == null) {
+            return;
+        }
+        long oldest = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+        long maxBytes = maxMegabytes * 1024 * 1024;
+        for (File application : applications) {
+            long size = 0;
+            for (Segment segment : findSegments(application.getName(), new LogSearchQuery(null, null, null, null, null))) {
+                size += segment.file.length();
+                if (segment.to < oldest || size > maxBytes) {
+                    if (!segment.file.delete()) {
+                        logger.warn("Cannot delete " + segment.file);
+                    }
+                }
+            }
+        }
+    }
+
+    private String rotateCommand(String logDirectory, boolean all) {
+        StringBuilder command = new StringBuilder(512);
+        command.append("s=").append(STAGING_DIRECTORY).append("; mkdir -p $s; t=$(date +%s); ");
+        command.append("find '").append(logDirectory).append("' -type f ! -size 0 | while read -r f; do ");
+        command.append("n=$s/$(basename \"$f\").$t; ");
+        if (all) {
+            command.append("mv \"$f\" \"$n\"; ");
+        } else {
+            command.append("if [ -z \"$(find \"$f\" -mmin -").append(idleMinutes).append(")\" ]; then mv \"$f\" \"$n\"; ");
+            command.append("elif [ $(stat -c %s \"$f\") -gt ").append(rotateMegabytes * 1024 * 1024).append(" ]; ");
+            command.append("then cp -p \"$f\" \"$n\" && : > \"$f\"; fi; ");
+        }
+        command.append("done");
+        return command.toString();
+    }
+
+    private void store(String applicationName, String containerName, InputStream tar) throws IOException {
+        TarArchiveInputStream tarIn = new TarArchiveInputStream(tar);
+        TarArchiveEntry entry;
+        while ((entry = tarIn.getNextTarEntry()) != null) {
+            if (!entry.isFile()) {
+                continue;
+            }
+            String name = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+            Matcher staged = STAGED_PATTERN.matcher(name);
+            String source = (staged.matches() ? staged.group(1) : name).replaceAll("[^\\w.\\-]", "_");
+            File sourceDirectory = new File(new File(new File(directory, applicationName), containerName), source);
+            if (!sourceDirectory.isDirectory() && !sourceDirectory.mkdirs()) {
+                throw new IOException("Cannot create " + sourceDirectory);
+            }
+            long from = lastSegmentEnd(sourceDirectory);
+            long to = Math.max(entry.getModTime().getTime(), from + 1);
+            File tmp = new File(sourceDirectory, name + ".tmp");
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(tmp), BUFFER_SIZE)) {
+                IOUtils.copyLarge(tarIn, out);
+            }
+            Files.move(tmp.toPath(), new File(sourceDirectory, from + "-" + to + ".gz").toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private long lastSegmentEnd(File sourceDirectory) {
+        long end = 0;
+        String[] names = sourceDirectory.list();
+        if (names != null) {
+            for (String name : names) {
+                Matcher matcher = SEGMENT_PATTERN.matcher(name);
+                if (matcher.matches()) {
+                    end = Math.max(end, Long.parseLong(matcher.group(2)));
+                }
+            }
+        }
+        return end;
+    }
+
+    /**
+     * @return the segments matching the container, source and time range, the most recent first
+     */
+    private List<Segment> findSegments(String applicationName, LogSearchQuery query) {
+        List<Segment> segments = new ArrayList<>();
+        File[] containers = new File(directory, applicationName).listFiles(File::isDirectory);
+        if (containers == null) {
+            return segments;
+        }
+        for (File container : containers) {
+            if (query.getContainer() != null && !query.getContainer().equals(container.getName())) {
+                continue;
+            }
+            File[] sources = container.listFiles(File::isDirectory);
+            for (File source : sources == null ? new File[0] : sources) {
+                if (query.getSource() != null && !query.getSource().equals(source.getName())) {
+                    continue;
+                }
+                File[] files = source.listFiles();
+                for (File file : files == null ? new File[0] : files) {
+                    Matcher matcher = SEGMENT_PATTERN.matcher(file.getName());
+                    if (!matcher.matches()) {
+                        continue;
+                    }
+                    Segment segment = new Segment(file, container.getName(), source.getName(),
+                            Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)));
+                    if (segment.to >= query.getFrom() && segment.from < query.getTo()) {
+                        segments.add(segment);
+                    }
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong((Segment s) -> s.to).reversed());
+        return segments;
+    }
+
+    private boolean matches(String line, List<String> terms) {
+        if (terms.isEmpty()) {
+            return true;
+        }
+        String lowerCase = line.toLowerCase();
+        for (String term : terms) {
+            if (!lowerCase.contains(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkName(String name) throws CheckException {
+        if (name == null || !name.matches("\\w[\\w.\\-]*")) {
+            throw new CheckException("Invalid name : " + name);
+        }
+    }
+
+    private static class Segment {
+
+        private final File file;
+
+        private final String container;
+
+        private final String source;
+
+        private final long from;
+
+        private final long to;
+
+        Segment(File file, String container, String source, long from, long to) {
+            this.file = file;
+            this.container = container;
+            this.source = source;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
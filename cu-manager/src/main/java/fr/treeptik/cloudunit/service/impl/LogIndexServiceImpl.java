@@ -0,0 +1,299 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+package fr.treeptik.cloudunit.service.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import fr.treeptik.cloudunit.dto.LogSearchResult;
+import fr.treeptik.cloudunit.exception.CheckException;
+import fr.treeptik.cloudunit.exception.ServiceException;
+import fr.treeptik.cloudunit.logs.LogIndexPartition;
+import fr.treeptik.cloudunit.logs.LogSearchQuery;
+import fr.treeptik.cloudunit.service.LogIndexService;
+
+/**
+ * Full-text index of the logs collected from the containers. Each application has a
+ * directory with one partition per hour, so that a time range only opens the hours it
+ * covers and retention only deletes whole directories.
+ */
+@Service
+public class LogIndexServiceImpl implements LogIndexService {
+
+    private Logger logger = LoggerFactory.getLogger(LogIndexServiceImpl.class);
+
+    private static final DateTimeFormatter PARTITION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHH");
+
+    private static final long PARTITION_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Value("${logs.index.directory:${java.io.tmpdir}/cloudunit-logs-index}")
+    private String directory;
+
+    @Value("${logs.index.retention.hours:72}")
+    private long retentionHours;
+
+    @Value("${logs.index.max.megabytes:256}")
+    private long maxMegabytes;
+
+    @Value("${logs.index.cached.partitions:24}")
+    private int cachedPartitions;
+
+    // partition of the current hour, by application
+    private final Map<String, LogIndexPartition> activePartitions = new ConcurrentHashMap<>();
+
+    // sealed partitions recently searched
+    private Map<File, LogIndexPartition> sealedPartitions;
+
+    @PostConstruct
+    public void init() {
+        sealedPartitions = Collections.synchronizedMap(new LinkedHashMap<File, LogIndexPartition>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, LogIndexPartition> eldest) {
+                return size() > cachedPartitions;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // the partitions of the current hour are indexed again from their data file at restart
+        for (LogIndexPartition partition : activePartitions.values()) {
+            try {
+                partition.close();
+            } catch (IOException e) {
+                logger.warn("Cannot close " + partition.getDirectory(), e);
+            }
+        }
+    }
+
+    @Override
+    public void index(String applicationName, String container, String source, String logs, String cursor)
+            throws ServiceException, CheckException {
+        checkName(applicationName);
+        if ((logs == null || logs.isEmpty()) && cursor == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            LogIndexPartition partition = activePartition(applicationName, now);
+            int start = 0;
+            while (logs != null && start < logs.length()) {
+                int end = logs.indexOf('\n', start);
+                if (end < 0) {
+                    end = logs.length();
+                }
+                int lineEnd = end > start && logs.charAt(end - 1) == '\r' ? end - 1 : end;
+                if (lineEnd > start) {
+                    partition.append(now, container, source, logs.substring(start, lineEnd));
+                }
+                start = end + 1;
+            }
+            if (cursor != null) {
+                partition.putCursor(container, source, cursor);
+            }
+            partition.flush();
+        } catch (IOException e) {
+            throw new ServiceException("Cannot index logs of " + applicationName + "/" + container + "/" + source, e);
+        }
+    }
+
+    @Override
+    public Map<String, String> cursors(String applicationName) throws ServiceException, CheckException {
+        checkName(applicationName);
+        LogIndexPartition active = activePartitions.get(applicationName);
+        if (active != null) {
+            return active.getCursors();
+        }
+        try {
+            return savedCursors(applicationName);
+        } catch (IOException e) {
+            throw new ServiceException("Cannot read the log cursors of " + applicationName, e);
+        }
+    }
+
+    /**
+     * @return the cursors of the most recent partition having some
+     */
+    private Map<String, String> savedCursors(String applicationName) throws IOException {
+        for (File partitionDirectory : listPartitions(applicationName)) {
+            Map<String, String> cursors = LogIndexPartition.readCursors(partitionDirectory);
+            if (!cursors.isEmpty()) {
+                return cursors;
+            }
+        }
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public List<LogSearchResult> search(String applicationName, LogSearchQuery query, int limit)
+            throws ServiceException, CheckException {
+        checkName(applicationName);
+        List<LogSearchResult> results = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        try {
+            for (File partitionDirectory : listPartitions(applicationName)) {
+                long start = partitionStart(partitionDirectory);
+                if (start >= query.getTo() || start + PARTITION_MILLIS <= query.getFrom()) {
+                    continue;
+                }
+                LogIndexPartition partition = partition(applicationName, partitionDirectory, now);
+                results.addAll(partition.search(query, limit - results.size()));
+                if (results.size() >= limit) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new ServiceException("Cannot search logs of " + applicationName, e);
+        }
+        return results;
+    }
+
+    /**
+     * Delete the partitions older than the retention, then the oldest ones while
+     * an application uses more than its disk quota
+     */
+    @Override
+    public synchronized void applyRetention() throws ServiceException {
+        File[] applications = new File(directory).listFiles(File::isDirectory);
+        if (applications == null) {
+            return;
+        }
+        long oldest = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours);
+        long maxBytes = maxMegabytes * 1024 * 1024;
+        for (File application : applications) {
+            LogIndexPartition active = activePartitions.get(application.getName());
+            long size = 0;
+            for (File partitionDirectory : listPartitions(application.getName())) {
+                if (active != null && active.getDirectory().equals(partitionDirectory)) {
+                    size += active.sizeOnDisk();
+                    continue;
+                }
+                size += FileUtils.sizeOfDirectory(partitionDirectory);
+                if (partitionStart(partitionDirectory) + PARTITION_MILLIS < oldest || size > maxBytes) {
+                    sealedPartitions.remove(partitionDirectory);
+                    try {
+                        FileUtils.deleteDirectory(partitionDirectory);
+                    } catch (IOException e) {
+                        throw new ServiceException("Cannot delete " + partitionDirectory, e);
+                    }
+                }
+            }
+            String[] remaining = application.list();
+            if (active == null && remaining != null && remaining.length == 0) {
+                application.delete();
+            }
+        }
+    }
+
+    private synchronized LogIndexPartition activePartition(String applicationName, long now) throws IOException {
+        File partitionDirectory = partitionDirectory(applicationName, now);
+        LogIndexPartition partition = activePartitions.get(applicationName);
+        if (partition != null && partition.getDirectory().equals(partitionDirectory)) {
+            return partition;
+        }
+        Map<String, String> previousCursors;
+        if (partition != null) {
+            partition.seal();
+            sealedPartitions.put(partition.getDirectory(), partition);
+            previousCursors = partition.getCursors();
+        } else {
+            // first partition since the start of the manager
+            previousCursors = savedCursors(applicationName);
+        }
+        partition = LogIndexPartition.open(partitionDirectory);
+        partition.inheritCursors(previousCursors);
+        activePartitions.put(applicationName, partition);
+        return partition;
+    }
+
+    private synchronized LogIndexPartition partition(String applicationName, File partitionDirectory, long now)
+            throws IOException {
+        if (partitionDirectory.equals(partitionDirectory(applicationName, now))) {
+            return activePartition(applicationName, now);
+        }
+        LogIndexPartition partition = activePartitions.get(applicationName);
+        if (partition != null && partition.getDirectory().equals(partitionDirectory)) {
+            // the previous hour, still open until the next lines are indexed
+            return partition;
+        }
+        partition = sealedPartitions.get(partitionDirectory);
+        if (partition == null) {
+            partition = LogIndexPartition.open(partitionDirectory);
+            // a past hour left unsealed by a restart
+            partition.seal();
+            sealedPartitions.put(partitionDirectory, partition);
+        }
+        return partition;
+    }
+
+    /**
+     * @return the partitions of an application, most recent first
+     */
+    private List<File> listPartitions(String applicationName) {
+        File[] partitions = new File(directory, applicationName)
+                .listFiles(f -> f.isDirectory() && f.getName().matches("\\d{10}"));
+        if (partitions == null) {
+            return Collections.emptyList();
+        }
+        List<File> sorted = Arrays.asList(partitions);
+        sorted.sort(Comparator.comparing(File::getName).reversed());
+        return sorted;
+    }
+
+    private File partitionDirectory(String applicationName, long time) {
+        String name = LocalDateTime.ofEpochSecond(time / 1000, 0, ZoneOffset.UTC).format(PARTITION_FORMAT);
+        return new File(new File(directory, applicationName), name);
+    }
+
+    private long partitionStart(File partitionDirectory) {
+        try {
+            return LocalDateTime.parse(partitionDirectory.getName(), PARTITION_FORMAT)
+                    .toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    private void checkName(String applicationName) throws CheckException {
+        if (applicationName == null || !applicationName.matches("\\w[\\w.\\-]*")) {
+            throw new CheckException("Invalid application name : " + applicationName);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+
+package fr.treeptik.cloudunit.service.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import fr.treeptik.cloudunit.dto.MetricPointResource;
+import fr.treeptik.cloudunit.exception.CheckException;
+import fr.treeptik.cloudunit.exception.ServiceException;
+import fr.treeptik.cloudunit.monitoring.CAdvisorSampler;
+import fr.treeptik.cloudunit.monitoring.MetricRecord;
+import fr.treeptik.cloudunit.monitoring.MetricSeries;
+import fr.treeptik.cloudunit.monitoring.MetricTier;
+import fr.treeptik.cloudunit.service.MetricHistoryService;
+
+/**
+ * History of the metrics sampled from cAdvisor, kept on the manager in one directory per
+ * container : raw 10 s points for a day, 1 minute rollups for 30 days and 1 hour rollups
+ * for a year.
+ */
+@Service
+public class MetricHistoryServiceImpl implements MetricHistoryService {
+
+    private Logger logger = LoggerFactory.getLogger(MetricHistoryServiceImpl.class);
+
+    @Inject
+    private CAdvisorSampler cAdvisorSampler;
+
+    @Value("${metrics.history.enabled:true}")
+    private boolean enabled;
+
+    @Value("${metrics.history.directory:${java.io.tmpdir}/cloudunit-metrics}")
+    private String directory;
+
+    @Value("${metrics.history.max.points:1000}")
+    private int maxPoints;
+
+    // by container name
+    private final Map<String, MetricSeries> series = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        cAdvisorSampler.addListener("history", (containerStats, stat) -> {
+            try {
+                series(containerStats.getName()).add(stat);
+            } catch (IOException | CheckException e) {
+                logger.warn("Cannot record the metrics of " + containerStats.getName(), e);
+            }
+        });
+    }
+
+    /**
+     * The step is chosen from the range : the finest tier still holding the start of the
+     * range, with at most metrics.history.max.points points
+     */
+    @Override
+    public List<MetricPointResource> findHistory(String containerName, String metric, Long from, Long to)
+            throws ServiceException, CheckException {
+        int index = MetricRecord.indexOf(metric);
+        if (index < 0) {
+            throw new CheckException("Unknown metric : " + metric);
+        }
+        long now = System.currentTimeMillis();
+        long end = to == null ? now : to;
+        long start = from == null ? end - TimeUnit.HOURS.toMillis(1) : from;
+        if (start >= end) {
+            throw new CheckException("The start of the range must be before its end");
+        }
+        MetricTier tier = MetricTier.forRange(start, end, now, maxPoints);
+        try {
+            return readOnly(containerName).read(tier, start, end).stream()
+                    .map(r -> new MetricPointResource(r.getTimestamp(), r.getCount(), r.getMin(index),
+                            r.getMax(index), r.getAvg(index), r.getP95(index)))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new ServiceException("Cannot read the metrics of " + containerName, e);
+        }
+    }
+
+    @Override
+    public void closeIdle() throws ServiceException {
+        long now = System.currentTimeMillis();
+        for (MetricSeries containerSeries : series.values()) {
+            try {
+                containerSeries.closeIdle(now);
+            } catch (IOException e) {
+                throw new ServiceException("Cannot write the metrics of " + containerSeries.getDirectory(), e);
+            }
+        }
+    }
+
+    @Override
+    public void applyRetention() throws ServiceException {
+        File[] containers = new File(directory).listFiles(File::isDirectory);
+        if (containers == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File container : containers) {
+            try {
+                if (readOnly(container.getName()).applyRetention(now)) {
+                    series.remove(container.getName());
+                    // the empty tier directories, then the container one
+                    File[] tiers = container.listFiles();
+                    if (tiers != null) {
+                        for (File tier : tiers) {
+                            tier.delete();
+                        }
+                    }
+                    container.delete();
+                }
+            } catch (IOException | CheckException e) {
+                throw new ServiceException("Cannot apply the retention of " + container, e);
+            }
+        }
+    }
+
+    /**
+     * @return the series of a container being sampled, or its files only
+     */
+    private MetricSeries readOnly(String containerName) throws IOException, CheckException {
+        checkName(containerName);
+        MetricSeries containerSeries = series.get(containerName);
+        if (containerSeries == null) {
+            containerSeries = MetricSeries.open(new File(directory, containerName), System.currentTimeMillis());
+        }
+        return containerSeries;
+    }
+
+    private MetricSeries series(String containerName) throws IOException, CheckException {
+        checkName(containerName);
+        MetricSeries containerSeries = series.get(containerName);
+        if (containerSeries == null) {
+            synchronized (series) {
+                containerSeries = series.get(containerName);
+                if (containerSeries == null) {
+                    containerSeries = MetricSeries.open(new File(directory, containerName), System.currentTimeMillis());
+                    series.put(containerName, containerSeries);
+                }
+            }
+        }
+        return containerSeries;
+    }
+
+    private void checkName(String containerName) throws CheckException {
+        if (containerName == null || !containerName.matches("\\w[\\w.\\-]*")) {
+            throw new CheckException("Invalid container name : " + containerName);
+        }
+    }
+}
@@ -41,6 +41,7 @@ import fr.treeptik.cloudunit.config.events.ModuleStartEvent;
 import fr.treeptik.cloudunit.config.events.ModuleStopEvent;
 import fr.treeptik.cloudunit.dao.ModuleDAO;
 import fr.treeptik.cloudunit.dao.PortDAO;
+import fr.treeptik.cloudunit.docker.model.DockerContainer;
 import fr.treeptik.cloudunit.dto.Hook;
 import fr.treeptik.cloudunit.enums.ModuleEnvironmentRole;
 import fr.treeptik.cloudunit.enums.RemoteExecAction;
@@ -275,6 +276,30 @@ public class ModuleServiceImpl implements ModuleService {
         try {
             module = findByName(moduleName);
             module = dockerService.startModule(moduleName, module);
+        } catch (PersistenceException e) {
+            logger.error("ModuleService Error : fail to start Module" + moduleName);
+            throw new ServiceException(e.getLocalizedMessage(), e);
+        }
+        return afterStart(module);
+    }
+
+    @Override
+    @Transactional
+    public Module moduleStarted(String moduleName, DockerContainer container) throws ServiceException {
+        Module module = null;
+        try {
+            module = findByName(moduleName);
+            module = dockerService.mapModule(container, module);
+        } catch (PersistenceException e) {
+            logger.error("ModuleService Error : fail to start Module" + moduleName);
+            throw new ServiceException(e.getLocalizedMessage(), e);
+        }
+        return afterStart(module);
+    }
+
+    private Module afterStart(Module module) throws ServiceException {
+        String moduleName = module.getName();
+        try {
             applicationEventPublisher.publishEvent(new ModuleStartEvent(module));
             if (!module.isInitialized()) {
                 module.setInitialized(true);
@@ -306,6 +331,20 @@ public class ModuleServiceImpl implements ModuleService {
         return module;
     }
 
+    @Override
+    @Transactional
+    public Module moduleStopped(String moduleName) throws ServiceException {
+        Module module = null;
+        try {
+            module = findByName(moduleName);
+            applicationEventPublisher.publishEvent(new ModuleStopEvent(module));
+        } catch (DataAccessException e) {
+            logger.error("[" + moduleName + "] Fail to stop Module : " + moduleName);
+            throw new ServiceException(e.getLocalizedMessage(), e);
+        }
+        return module;
+    }
+
     @Override
     public Module findById(Integer id) throws ServiceException {
         try {
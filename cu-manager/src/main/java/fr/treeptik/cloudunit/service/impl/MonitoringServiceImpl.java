@@ -15,22 +15,32 @@
 
 package fr.treeptik.cloudunit.service.impl;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.http.pool.PoolStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import fr.treeptik.cloudunit.dao.MetricDAO;
+import fr.treeptik.cloudunit.docker.core.DockerCloudUnitClient;
 import fr.treeptik.cloudunit.model.Metric;
+import fr.treeptik.cloudunit.monitoring.CAdvisorSampler;
+import fr.treeptik.cloudunit.monitoring.ContainerStats;
+import fr.treeptik.cloudunit.service.DockerService;
 import fr.treeptik.cloudunit.service.MonitoringService;
 
 /**
@@ -44,56 +54,107 @@ public class MonitoringServiceImpl implements MonitoringService {
 	@Inject
 	private MetricDAO metricDAO;
 
-	@Value("${cadvisor.url}")
-	private String cAdvisorURL;
+	@Inject
+	private DockerCloudUnitClient dockerCloudUnitClient;
+
+	@Inject
+	private CAdvisorSampler cAdvisorSampler;
+
+	@Inject
+	private DockerService dockerService;
+
+	@Inject
+	@Named("getAsyncExecutor")
+	private Executor executor;
+
+	// the dashboard draws the last minute
+	@Value("${cadvisor.serve.samples:60}")
+	private int maxSamples;
 
 	@Value("${cloudunit.instance.name}")
 	private String cuInstanceName;
 
 	@Override
 	public String getJsonFromCAdvisor(String containerId) {
-		String result = "";
-		try {
-			CloseableHttpClient httpclient = HttpClients.createDefault();
-			HttpGet httpget = new HttpGet(cAdvisorURL + "/api/v1.3/containers/docker/" + containerId);
-			CloseableHttpResponse response = httpclient.execute(httpget);
-			try {
-				result = EntityUtils.toString(response.getEntity());
-				if (logger.isDebugEnabled()) {
-					logger.debug(result);
+		ContainerStats containerStats = cAdvisorSampler.getStats(containerId);
+		if (containerStats == null || containerStats.size() == 0) {
+			// not sampled yet, or sampling disabled
+			return cAdvisorSampler.get("/api/v1.3/containers/docker/" + containerId);
+		}
+		StringWriter writer = new StringWriter();
+		try (JsonGenerator generator = cAdvisorSampler.getObjectMapper().getFactory().createGenerator(writer)) {
+			containerStats.writeJson(generator, maxSamples);
+		} catch (IOException e) {
+			logger.error(containerId, e);
+			return "";
+		}
+		return writer.toString();
+	}
+
+	/**
+	 * Samples of several containers in one object keyed by container name. The containers not
+	 * sampled yet are resolved and fetched from cAdvisor in parallel.
+	 */
+	@Override
+	public String getJsonFromCAdvisor(List<String> containerNames, int samples, Set<String> fields) {
+		Map<String, CompletableFuture<ContainerStats>> resolved = new LinkedHashMap<>();
+		for (String containerName : containerNames) {
+			ContainerStats containerStats = cAdvisorSampler.getStatsByName(containerName);
+			if (containerStats != null && containerStats.size() > 0) {
+				resolved.put(containerName, CompletableFuture.completedFuture(containerStats));
+			} else {
+				resolved.put(containerName, CompletableFuture.supplyAsync(() -> fetchStats(containerName), executor));
+			}
+		}
+		StringWriter writer = new StringWriter();
+		try (JsonGenerator generator = cAdvisorSampler.getObjectMapper().getFactory().createGenerator(writer)) {
+			generator.writeStartObject();
+			for (Map.Entry<String, CompletableFuture<ContainerStats>> entry : resolved.entrySet()) {
+				ContainerStats containerStats = entry.getValue().join();
+				if (containerStats != null) {
+					generator.writeFieldName(entry.getKey());
+					containerStats.writeJson(generator, Math.min(samples, maxSamples), fields);
 				}
-			} finally {
-				response.close();
 			}
-		} catch (Exception e) {
-			logger.error(containerId, e);
+			generator.writeEndObject();
+		} catch (IOException e) {
+			logger.error(containerNames.toString(), e);
+			return "";
 		}
-		return result;
+		return writer.toString();
 	}
 
 	@Override
 	public String getJsonMachineFromCAdvisor() {
-		String result = "";
+		return cAdvisorSampler.getMachine();
+	}
+
+	private ContainerStats fetchStats(String containerName) {
 		try {
-			CloseableHttpClient httpclient = HttpClients.createDefault();
-			HttpGet httpget = new HttpGet(cAdvisorURL + "/api/v1.3/machine");
-			CloseableHttpResponse response = httpclient.execute(httpget);
-			try {
-				result = EntityUtils.toString(response.getEntity());
-				if (logger.isDebugEnabled()) {
-					logger.debug(result);
-				}
-			} finally {
-				response.close();
+			String containerId = dockerService.getContainerId(containerName);
+			String json = cAdvisorSampler.get("/api/v1.3/containers/docker/" + containerId);
+			if (json.isEmpty()) {
+				return null;
 			}
+			JsonNode container = cAdvisorSampler.getObjectMapper().readTree(json);
+			JsonNode stats = container.path("stats");
+			ContainerStats containerStats = new ContainerStats(containerId, containerName, Math.max(1, stats.size()));
+			containerStats.setSpec(container.path("spec"));
+			stats.forEach(containerStats::add);
+			return containerStats;
 		} catch (Exception e) {
-			logger.error("" + e);
+			logger.warn("No metrics for " + containerName, e);
+			return null;
 		}
-		return result;
 	}
 
 	@Override
 	public List<Metric> findByServer(String serverName) {
 		return metricDAO.findAllByServer(serverName);
 	}
+
+	@Override
+	public PoolStats getDockerConnectionPoolStats() {
+		return dockerCloudUnitClient.getConnectionPoolStats();
+	}
 }
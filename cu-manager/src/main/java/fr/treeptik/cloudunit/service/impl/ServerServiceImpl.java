@@ -56,6 +56,7 @@ import fr.treeptik.cloudunit.model.VolumeAssociation;
 import fr.treeptik.cloudunit.model.VolumeAssociationId;
 import fr.treeptik.cloudunit.service.DockerService;
 import fr.treeptik.cloudunit.service.EnvironmentService;
+import fr.treeptik.cloudunit.service.LogArchiveService;
 import fr.treeptik.cloudunit.service.ServerService;
 import fr.treeptik.cloudunit.service.VolumeAssociationService;
 import fr.treeptik.cloudunit.service.VolumeService;
@@ -93,6 +94,9 @@ public class ServerServiceImpl implements ServerService {
 	
 	@Inject
 	private EnvironmentService environmentService;
+
+	@Inject
+	private LogArchiveService logArchiveService;
 	
     @Inject
     private DockerClient dockerClient;
@@ -304,6 +308,11 @@ public class ServerServiceImpl implements ServerService {
 	@Transactional
 	public Server stopServer(Server server) throws ServiceException {
 		try {
+			try {
+				logArchiveService.archiveContainer(server.getApplication().getName(), server.getName(), true);
+			} catch (ServiceException | CheckException e) {
+				logger.error("Logs of " + server.getName() + " not archived before cleaning", e);
+			}
 			dockerService.execCommand(server.getName(), RemoteExecAction.CLEAN_LOGS.getCommand());
 			dockerService.stopContainer(server.getName());
 			applicationEventPublisher.publishEvent(new ServerStopEvent(server));
@@ -350,7 +359,7 @@ public class ServerServiceImpl implements ServerService {
 		}
 	}
 
-	@CacheEvict(value = "env", allEntries = true)
+	@CacheEvict(value = "env", key = "#server.name")
 	@Transactional
 	public Server update(Server server, String jvmMemory, String options, boolean restorePreviousEnv)
 			throws ServiceException {
@@ -419,7 +428,7 @@ public class ServerServiceImpl implements ServerService {
 
 	@Override
 	@Transactional
-	@CacheEvict(value = "env", allEntries = true)
+	@CacheEvict(value = "env", key = "#volumeAssociationDTO.containerName")
 	public void addVolume(Application application, VolumeAssociationDTO volumeAssociationDTO)
 			throws ServiceException, CheckException {
 		checkVolumeFormat(volumeAssociationDTO);
@@ -461,7 +470,7 @@ public class ServerServiceImpl implements ServerService {
 
 	@Override
 	@Transactional
-	@CacheEvict(value = "env", allEntries = true)
+	@CacheEvict(value = "env", key = "#containerName")
 	public void removeVolume(String containerName, String volumeName) throws ServiceException {
 		Server server = null;
 		try {
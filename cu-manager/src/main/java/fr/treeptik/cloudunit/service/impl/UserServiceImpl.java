@@ -26,6 +26,8 @@ import javax.persistence.PersistenceException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
@@ -147,6 +149,7 @@ public class UserServiceImpl
 
     @Override
     @Transactional
+    @CacheEvict(value = "users", key = "#user.login")
     public void activationAccount(User user)
             throws ServiceException {
         try {
@@ -168,6 +171,7 @@ public class UserServiceImpl
 
     @Override
     @Transactional
+    @CacheEvict(value = "users", key = "#user.login")
     public User update(User user)
             throws ServiceException {
 
@@ -189,6 +193,7 @@ public class UserServiceImpl
 
     @Override
     @Transactional
+    @CacheEvict(value = "users", key = "#user.login")
     public void remove(User user)
             throws ServiceException, CheckException {
         try {
@@ -269,8 +274,16 @@ public class UserServiceImpl
         }
     }
 
+    @Override
+    @Cacheable(value = "users", key = "#login", unless = "#result == null")
+    public User findAuthenticatedUser(String login)
+            throws ServiceException {
+        return findByLogin(login);
+    }
+
     @Transactional
     @Override
+    @CacheEvict(value = "users", key = "#user.login")
     public void changePassword(User user, String newPassword)
             throws ServiceException {
 
@@ -308,6 +321,7 @@ public class UserServiceImpl
 
     @Override
     @Transactional
+    @CacheEvict(value = "users", key = "#login")
     public void changeUserRights(String login, String roleValue)
             throws ServiceException, CheckException {
 
@@ -23,6 +23,8 @@ import org.springframework.context.MessageSource;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import fr.treeptik.cloudunit.exception.CheckException;
 import fr.treeptik.cloudunit.exception.ServiceException;
@@ -34,15 +36,32 @@ import fr.treeptik.cloudunit.service.UserService;
 @Component
 public class AuthentificationUtils {
 
+	private static final String USER_ATTRIBUTE = AuthentificationUtils.class.getName() + ".user";
+
 	@Inject
 	private UserService userService;
 
 	@Inject
 	private MessageSource messageSource;
 
+	/**
+	 * The user is loaded once per request, the controller and the aspects sharing it,
+	 * and cached across the requests until it is updated
+	 */
 	public User getAuthentificatedUser() throws ServiceException {
 		Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-		return userService.findByLogin(auth.getName());
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes != null) {
+			User user = (User) attributes.getAttribute(USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+			if (user != null && user.getLogin().equals(auth.getName())) {
+				return user;
+			}
+		}
+		User user = userService.findAuthenticatedUser(auth.getName());
+		if (attributes != null && user != null) {
+			attributes.setAttribute(USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+		}
+		return user;
 	}
 
 	public void allowUser(User user) throws ServiceException {
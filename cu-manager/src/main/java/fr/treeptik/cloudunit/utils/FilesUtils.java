@@ -39,6 +39,8 @@ public class FilesUtils {
 
 	public static String[] notAllowed = { ".docker", "init-service-ok" };
 
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
 	public static Boolean isNotAuthorizedExtension(String filename) {
 		if (filename != null) {
 			filename = filename.trim();
@@ -193,4 +195,65 @@ public class FilesUtils {
 			}
 		}
 	}
+
+	/**
+	 * Write a tar archive made of a single file read from the stream, without buffering it.
+	 * The output stream is finished but not closed.
+	 *
+	 * @param out
+	 * @param entryName
+	 * @param size the exact number of bytes of the content
+	 * @param content
+	 * @throws IOException
+	 */
+	public static void writeSingleEntryTar(OutputStream out, String entryName, long size, InputStream content)
+			throws IOException {
+		TarArchiveOutputStream tOut = new TarArchiveOutputStream(out);
+		tOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+		tOut.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+		TarArchiveEntry tarEntry = new TarArchiveEntry(entryName);
+		tarEntry.setSize(size);
+		tOut.putArchiveEntry(tarEntry);
+		IOUtils.copyLarge(content, tOut, new byte[STREAM_BUFFER_SIZE]);
+		tOut.closeArchiveEntry();
+		tOut.finish();
+	}
+
+	/**
+	 * Copy all the entries of a tar stream into another tar under a prefix, without
+	 * unpacking them : each header already carries the size of its entry.
+	 *
+	 * @param tOut
+	 * @param tar
+	 * @param prefix directory the entries are moved into, ending with a slash
+	 * @return the number of entries copied
+	 * @throws IOException
+	 */
+	public static int appendTar(TarArchiveOutputStream tOut, InputStream tar, String prefix) throws IOException {
+		TarArchiveInputStream tIn = new TarArchiveInputStream(tar);
+		byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+		int entries = 0;
+		TarArchiveEntry entry;
+		while ((entry = tIn.getNextTarEntry()) != null) {
+			TarArchiveEntry copy = new TarArchiveEntry(prefix + entry.getName(), entry.getLinkFlag());
+			copy.setSize(entry.getSize());
+			copy.setMode(entry.getMode());
+			copy.setModTime(entry.getModTime());
+			copy.setUserId(entry.getUserId());
+			copy.setGroupId(entry.getGroupId());
+			copy.setUserName(entry.getUserName());
+			copy.setGroupName(entry.getGroupName());
+			copy.setDevMajor(entry.getDevMajor());
+			copy.setDevMinor(entry.getDevMinor());
+			// hard links point inside the archive, symbolic links inside the container
+			copy.setLinkName(entry.isLink() ? prefix + entry.getLinkName() : entry.getLinkName());
+			tOut.putArchiveEntry(copy);
+			if (entry.getSize() > 0) {
+				IOUtils.copyLarge(tIn, tOut, buffer);
+			}
+			tOut.closeArchiveEntry();
+			entries++;
+		}
+		return entries;
+	}
 }
@@ -19,6 +19,8 @@ import fr.treeptik.cloudunit.model.*;
 import org.springframework.context.MessageSource;
 
 import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class MessageUtils {
 
@@ -193,6 +195,24 @@ public class MessageUtils {
         return message;
     }
 
+    /**
+     * @param durations time taken by each container, in milliseconds, in the order they were handled
+     */
+    public static Message writeApplicationTimingMessage(User user, Application application, String type,
+                                                        Map<String, Long> durations, long totalMillis) {
+        Message message = new Message();
+        String action = "START".equals(type) ? "started" : "stopped";
+        String details = durations.entrySet().stream()
+            .map(e -> e.getKey() + " : " + e.getValue() + " ms")
+            .collect(Collectors.joining(", "));
+        message.setEvent("The application " + application.getDisplayName() + " was " + action
+            + " in " + totalMillis + " ms (" + details + ")");
+        message.setType(Message.INFO);
+        message.setApplicationName(application.getName());
+        message.setAuthor(user);
+        return message;
+    }
+
     public static Message writeDeploymentMessage(User user,
                                                  Deployment deployment, String type) {
         Message message = new Message();
@@ -0,0 +1,167 @@
+/*
+ * LICENCE : CloudUnit is available under the GNU Affero General Public License : https://gnu.org/licenses/agpl.html
+ * but CloudUnit is licensed too under a standard commercial license.
+ * Please contact our sales team if you would like to discuss the specifics of our Enterprise license.
+ * If you are not sure whether the AGPL is right for you,
+ * you can always test our software under the AGPL and inspect the source code before you contact us
+ * about purchasing a commercial license.
+ *
+ * LEGAL TERMS : "CloudUnit" is a registered trademark of Treeptik and can't be used to endorse
+ * or promote products derived from this project without prior written permission from Treeptik.
+ * Products or services derived from this software may not be called "CloudUnit"
+ * nor may "Treeptik" or similar confusing terms appear in their names without prior written permission.
+ * For any questions, contact us : contact@treeptik.fr
+ */
+
+package fr.treeptik.cloudunit.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip output stream compressing fixed size blocks on several threads, like pigz.
+ *
+ * Each block is written as an independent gzip member, in order. A multi-member
+ * file is a valid gzip file, read as a whole by gzip, tar and commons-compress.
+ * At most maxPendingBlocks blocks are held in memory.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+	private final OutputStream out;
+
+	private final ExecutorService executor;
+
+	private final int blockSize;
+
+	private final int maxPendingBlocks;
+
+	private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+	private byte[] block;
+
+	private int count;
+
+	private boolean closed;
+
+	public ParallelGzipOutputStream(OutputStream out, ExecutorService executor, int maxPendingBlocks) {
+		this(out, executor, DEFAULT_BLOCK_SIZE, maxPendingBlocks);
+	}
+
+	public ParallelGzipOutputStream(OutputStream out, ExecutorService executor, int blockSize, int maxPendingBlocks) {
+		this.out = out;
+		this.executor = executor;
+		this.blockSize = blockSize;
+		this.maxPendingBlocks = Math.max(1, maxPendingBlocks);
+		this.block = new byte[blockSize];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		block[count++] = (byte) b;
+		if (count == blockSize) {
+			submitBlock();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			int chunk = Math.min(len, blockSize - count);
+			System.arraycopy(b, off, block, count, chunk);
+			count += chunk;
+			off += chunk;
+			len -= chunk;
+			if (count == blockSize) {
+				submitBlock();
+			}
+		}
+	}
+
+	/**
+	 * Compress and write everything received so far
+	 */
+	public void finish() throws IOException {
+		submitBlock();
+		while (!pending.isEmpty()) {
+			writeFirstBlock();
+		}
+	}
+
+	/**
+	 * Write the blocks already compressed. The block being filled is not compressed before
+	 * it is full, a gzip member per flush would defeat the compression.
+	 */
+	@Override
+	public void flush() throws IOException {
+		while (!pending.isEmpty() && pending.peek().isDone()) {
+			writeFirstBlock();
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			finish();
+		} finally {
+			pending.forEach(f -> f.cancel(true));
+			out.close();
+		}
+	}
+
+	/**
+	 * Drop the blocks not written yet, without closing the underlying stream
+	 */
+	public void abort() {
+		closed = true;
+		pending.forEach(f -> f.cancel(true));
+		pending.clear();
+	}
+
+	private void submitBlock() throws IOException {
+		if (count == 0) {
+			return;
+		}
+		final byte[] data = block;
+		final int length = count;
+		pending.add(executor.submit(() -> compress(data, length)));
+		block = new byte[blockSize];
+		count = 0;
+		while (pending.size() > maxPendingBlocks) {
+			writeFirstBlock();
+		}
+	}
+
+	private void writeFirstBlock() throws IOException {
+		try {
+			out.write(pending.poll().get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compressing", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Error while compressing", e.getCause());
+		}
+	}
+
+	private static byte[] compress(byte[] data, int length) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 2);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(bytes, 64 * 1024)) {
+			gzip.write(data, 0, length);
+		}
+		return bytes.toByteArray();
+	}
+
+}
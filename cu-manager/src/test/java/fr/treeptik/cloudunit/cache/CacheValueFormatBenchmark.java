@@ -0,0 +1,48 @@
+package fr.treeptik.cloudunit.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import fr.treeptik.cloudunit.cache.CacheValueFormatTest.Variable;
+
+/**
+ * Payload size and throughput of the cache formats against the Java serialization,
+ * for the values CloudUnit caches. Not a unit test, run it by hand :
+ * {@code java -cp <test classpath> fr.treeptik.cloudunit.cache.CacheValueFormatBenchmark [iterations]}
+ */
+public class CacheValueFormatBenchmark {
+
+    private static final String CONTAINER_ID = "3f4c2a1b9d8e7f6a5b4c3d2e1f0a9b8c7d6e5f4a3b2c1d0e9f8a7b6c5d4e3f2a";
+
+    private static final int DEFAULT_ITERATIONS = 20000;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        List<Variable> variables = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            variables.add(new Variable("CU_VARIABLE_" + i, "/opt/cloudunit/value/" + i));
+        }
+        run(CacheValueFormat.JDK, CONTAINER_ID, iterations);
+        run(CacheValueFormat.STRING, CONTAINER_ID, iterations);
+        run(CacheValueFormat.JDK, variables, iterations);
+        run(CacheValueFormat.SMILE, variables, iterations);
+    }
+
+    private static void run(CacheValueFormat format, Object value, int iterations) {
+        RedisSerializer<Object> serializer = format.createSerializer();
+        byte[] bytes = serializer.serialize(value);
+        // warm up
+        for (int i = 0; i < iterations; i++) {
+            serializer.deserialize(serializer.serialize(value));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            serializer.deserialize(serializer.serialize(value));
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%-6s %-16s %5d bytes %9d round trips/s", format,
+                value.getClass().getSimpleName(), bytes.length, iterations * 1000000000L / elapsed));
+    }
+}
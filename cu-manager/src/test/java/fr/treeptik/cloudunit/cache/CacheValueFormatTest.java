@@ -0,0 +1,121 @@
+package fr.treeptik.cloudunit.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips of the cache formats, and their payload size against the
+ * Java serialization for the values CloudUnit caches. The throughput is
+ * measured by {@link CacheValueFormatBenchmark}, out of the unit suite.
+ */
+public class CacheValueFormatTest {
+
+    private static final String CONTAINER_ID = "3f4c2a1b9d8e7f6a5b4c3d2e1f0a9b8c7d6e5f4a3b2c1d0e9f8a7b6c5d4e3f2a";
+
+    @Test
+    public void stringRoundTrip() {
+        RedisSerializer<Object> serializer = CacheValueFormat.STRING.createSerializer();
+        assertEquals(CONTAINER_ID, serializer.deserialize(serializer.serialize(CONTAINER_ID)));
+        assertEquals("", serializer.deserialize(serializer.serialize("")));
+        assertNull(serializer.deserialize(serializer.serialize(null)));
+    }
+
+    @Test
+    public void smileRoundTrip() {
+        RedisSerializer<Object> serializer = CacheValueFormat.SMILE.createSerializer();
+        List<Variable> variables = variables();
+        assertEquals(variables, serializer.deserialize(serializer.serialize(variables)));
+    }
+
+    @Test(expected = SerializationException.class)
+    public void stringRefusesJdkValues() {
+        byte[] bytes = CacheValueFormat.JDK.createSerializer().serialize(CONTAINER_ID);
+        CacheValueFormat.STRING.createSerializer().deserialize(bytes);
+    }
+
+    @Test(expected = SerializationException.class)
+    public void jdkRefusesStringValues() {
+        byte[] bytes = CacheValueFormat.STRING.createSerializer().serialize(CONTAINER_ID);
+        CacheValueFormat.JDK.createSerializer().deserialize(bytes);
+    }
+
+    @Test(expected = SerializationException.class)
+    public void smileRefusesJdkValues() {
+        byte[] bytes = CacheValueFormat.JDK.createSerializer().serialize(variables());
+        CacheValueFormat.SMILE.createSerializer().deserialize(bytes);
+    }
+
+    @Test
+    public void compactFormatsAreSmaller() {
+        assertTrue(size(CacheValueFormat.STRING, CONTAINER_ID) < size(CacheValueFormat.JDK, CONTAINER_ID));
+        assertTrue(size(CacheValueFormat.SMILE, variables()) < size(CacheValueFormat.JDK, variables()));
+    }
+
+    private int size(CacheValueFormat format, Object value) {
+        return format.createSerializer().serialize(value).length;
+    }
+
+    private static List<Variable> variables() {
+        List<Variable> variables = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            variables.add(new Variable("CU_VARIABLE_" + i, "/opt/cloudunit/value/" + i));
+        }
+        return variables;
+    }
+
+    public static class Variable implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String key;
+
+        private String value;
+
+        public Variable() {
+        }
+
+        public Variable(String key, String value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Variable)) {
+                return false;
+            }
+            Variable other = (Variable) o;
+            return key.equals(other.key) && value.equals(other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() * 31 + value.hashCode();
+        }
+    }
+}
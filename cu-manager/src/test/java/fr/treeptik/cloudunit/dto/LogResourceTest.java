@@ -42,4 +42,52 @@ public class LogResourceTest {
         logResources = LogResourceFactory.fromOutput(output);
         Assert.assertEquals("Output should contains 0 CU env", 0, logResources.size());
     }
+
+    @Test
+    public void decodeNewestFirst() {
+        String output = "Line1\n" +
+                "Line2\n" +
+                "Line3\n";
+        List<LogResource> logResources = LogResourceFactory.fromOutput(output);
+        Assert.assertEquals("Line3", logResources.get(0).getMessage());
+        Assert.assertEquals("Line1", logResources.get(2).getMessage());
+    }
+
+    @Test
+    public void decodeStructuredFields() {
+        String output = "20-Sep-2016 10:15:30.123 INFO [main] org.apache.catalina.startup.Catalina.start Server startup\n" +
+                "10:15:30,123 WARN  [org.jboss.as] (Controller Boot Thread) WFLYSRV0025: started\n" +
+                "2016-09-20 10:15:30.123 ERROR 12345 --- [           main] o.s.b.SpringApplication      : failed\n" +
+                "java.lang.IllegalStateException: boom\n" +
+                "\tat fr.treeptik.Foo.bar(Foo.java:1)\n";
+        List<LogResource> logResources = LogResourceFactory.fromOutput(output);
+        Assert.assertEquals(5, logResources.size());
+
+        LogResource stackTrace = logResources.get(0);
+        Assert.assertEquals("ERROR", stackTrace.getLevel());
+        Assert.assertNull(stackTrace.getTimestamp());
+
+        LogResource springBoot = logResources.get(2);
+        Assert.assertEquals("2016-09-20 10:15:30.123", springBoot.getTimestamp());
+        Assert.assertEquals("ERROR", springBoot.getLevel());
+        Assert.assertEquals("o.s.b.SpringApplication", springBoot.getLogger());
+
+        LogResource wildfly = logResources.get(3);
+        Assert.assertEquals("10:15:30,123", wildfly.getTimestamp());
+        Assert.assertEquals("WARN", wildfly.getLevel());
+        Assert.assertEquals("org.jboss.as", wildfly.getLogger());
+
+        LogResource tomcat = logResources.get(4);
+        Assert.assertEquals("20-Sep-2016 10:15:30.123", tomcat.getTimestamp());
+        Assert.assertEquals("INFO", tomcat.getLevel());
+        Assert.assertEquals("org.apache.catalina.startup.Catalina.start", tomcat.getLogger());
+    }
+
+    @Test
+    public void decodeWithoutKnownFormat() {
+        LogResource logResource = LogResourceFactory.fromLine("stdout", "Hello world");
+        Assert.assertNull(logResource.getTimestamp());
+        Assert.assertNull(logResource.getLevel());
+        Assert.assertNull(logResource.getLogger());
+    }
 }